@@ -1,9 +1,21 @@
 package com.owsb;
 
+import com.owsb.model.ReorderEngine;
+import com.owsb.model.TransactionJournal;
 import com.owsb.view.LoginScreen;
 
 public class OWSB {
     public static void main(String[] args) {
+        // Finish any sale that was interrupted before the data files were updated
+        TransactionJournal.recover();
+        
+        // Draft purchase requisitions for items that drop to their reorder level when started
+        // with -Dowsb.reorder.requester=<user id>
+        String requester = System.getProperty("owsb.reorder.requester");
+        if (requester != null && !requester.isEmpty()) {
+            ReorderEngine.setAutoDraftRequester(requester);
+        }
+        
         // Set system look and feel
         try {
             javax.swing.UIManager.setLookAndFeel(javax.swing.UIManager.getSystemLookAndFeelClassName());
@@ -0,0 +1,41 @@
+package com.owsb.analytics;
+
+import com.owsb.model.StockAdjustment;
+import java.util.*;
+
+/**
+ * Stock adjustment aggregates for reports, computed in parallel.
+ * The date range is read through the adjustment date index, so a
+ * month-end report only loads that month's records. The records are split
+ * into pieces that are totalled on the common ForkJoinPool into per-piece
+ * maps, which are merged at the end. Quantities are net: ADD counts up and
+ * SUBTRACT counts down. Date ranges are inclusive.
+ */
+public final class AdjustmentAnalytics {
+    private AdjustmentAnalytics() {
+    }
+
+    // Net quantity per item code
+    public static Map<String, Long> netQuantityByItem(Date startDate, Date endDate) {
+        List<StockAdjustment> adjustments = StockAdjustment.getAdjustmentsByDateRange(startDate, endDate);
+        Map<String, Long> totals = ParallelAggregator.<Map<String, Long>>aggregate(adjustments.size(),
+            HashMap::new,
+            (partial, from, to) -> {
+                for (StockAdjustment adjustment : adjustments.subList(from, to)) {
+                    partial.merge(adjustment.getItemCode(), (long) signedQuantity(adjustment), Long::sum);
+                }
+            },
+            ParallelAggregator::sum);
+        return new TreeMap<>(totals);
+    }
+
+    private static int signedQuantity(StockAdjustment adjustment) {
+        if ("ADD".equals(adjustment.getAdjustmentType())) {
+            return adjustment.getQuantity();
+        }
+        if ("SUBTRACT".equals(adjustment.getAdjustmentType())) {
+            return -adjustment.getQuantity();
+        }
+        return 0;
+    }
+}
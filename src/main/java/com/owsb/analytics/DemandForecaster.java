@@ -0,0 +1,339 @@
+package com.owsb.analytics;
+
+import com.owsb.io.DateCodec;
+import com.owsb.model.Item;
+import com.owsb.model.SalesColumnStore;
+import com.owsb.model.SupplierPerformance;
+import java.util.*;
+
+/**
+ * Daily demand forecasts per item from the sales history, used to suggest
+ * reorder points and order quantities.
+ * Each item's daily quantities over the last HISTORY_DAYS complete days are
+ * fitted with additive Holt-Winters smoothing with a weekly season; the
+ * smoothing weights are picked from a small grid by one-step-ahead error.
+ * Items are fitted in parallel on the common ForkJoinPool, each from its
+ * own rows of the columnar sales store, so no series is shared between
+ * threads.
+ * <p>
+ * After a fit, each new complete day is added to the models with one
+ * smoothing step per item instead of fitting again; the weights are chosen
+ * afresh once a week, which also picks up sales that were edited or deleted.
+ */
+public final class DemandForecaster {
+    // Complete days of history fitted, and the weekly season length
+    private static final int HISTORY_DAYS = 182;
+    private static final int SEASON = 7;
+    // Days a model is stepped forward before it is fitted again
+    private static final int REFIT_DAYS = 7;
+    // Defaults for suggestions: supplier lead time and the days until the next order
+    public static final int DEFAULT_LEAD_DAYS = 7;
+    // Suppliers' lead times are planned at this quantile of their past deliveries
+    private static final double LEAD_TIME_QUANTILE = 0.9;
+    private static final int REVIEW_DAYS = 7;
+    // One-sided 95% service level
+    private static final double SAFETY_FACTOR = 1.65;
+
+    private static final double[] ALPHAS = {0.05, 0.2, 0.5};
+    private static final double[] BETAS = {0.0, 0.05};
+    private static final double[] GAMMAS = {0.05, 0.3};
+
+    private static Map<String, Model> models = null;
+    private static int fittedThrough = Integer.MIN_VALUE; // last epoch day in the models
+    private static int fittedOn = Integer.MIN_VALUE;      // last complete day at the last full fit
+
+    private DemandForecaster() {
+    }
+
+    /**
+     * A suggested reorder point and order quantity for one item.
+     */
+    public static final class Suggestion {
+        private final String itemCode;
+        private final double dailyDemand;
+        private final int leadTimeDays;
+        private final int reorderPoint;
+        private final int orderQuantity;
+
+        Suggestion(String itemCode, double dailyDemand, int leadTimeDays, int reorderPoint, int orderQuantity) {
+            this.itemCode = itemCode;
+            this.dailyDemand = dailyDemand;
+            this.leadTimeDays = leadTimeDays;
+            this.reorderPoint = reorderPoint;
+            this.orderQuantity = orderQuantity;
+        }
+
+        public String getItemCode() {
+            return itemCode;
+        }
+
+        // Average forecast demand per day over the lead time
+        public double getDailyDemand() {
+            return dailyDemand;
+        }
+
+        public int getLeadTimeDays() {
+            return leadTimeDays;
+        }
+
+        // Stock at which to order: forecast demand over the lead time plus safety stock
+        public int getReorderPoint() {
+            return reorderPoint;
+        }
+
+        // Quantity that covers the lead time and the next review period, given the current stock
+        public int getOrderQuantity() {
+            return orderQuantity;
+        }
+    }
+
+    // Suggestion for one item with its supplier's lead time, or null if the item is not in the catalog
+    public static Suggestion suggest(String itemCode) {
+        Item item = Item.getItemByCode(itemCode);
+        return item != null ? suggest(item, leadTimeDays(item)) : null;
+    }
+
+    // Suggestion for one item and supplier lead time
+    public static synchronized Suggestion suggest(Item item, int leadTimeDays) {
+        Model model = modelsUpToDate().get(item.getItemCode());
+        return suggestion(item, model, Math.max(1, leadTimeDays));
+    }
+
+    // Suggestions for every catalog item with its supplier's lead time, in catalog order
+    public static synchronized List<Suggestion> suggestAll() {
+        Map<String, Model> current = modelsUpToDate();
+        List<Suggestion> suggestions = new ArrayList<>();
+        for (Item item : Item.getAllItems()) {
+            suggestions.add(suggestion(item, current.get(item.getItemCode()), leadTimeDays(item)));
+        }
+        return suggestions;
+    }
+
+    // Forecast demand for the next days after the last complete day, or zeros for items without sales
+    public static synchronized double[] forecast(String itemCode, int days) {
+        Model model = modelsUpToDate().get(itemCode);
+        double[] forecast = new double[days];
+        if (model != null) {
+            for (int h = 1; h <= days; h++) {
+                forecast[h - 1] = model.forecast(h);
+            }
+        }
+        return forecast;
+    }
+
+    // The 90th percentile of the supplier's past lead times, or the default for suppliers with few deliveries
+    private static int leadTimeDays(Item item) {
+        return SupplierPerformance.leadTimeDays(item.getSupplierId(), LEAD_TIME_QUANTILE, DEFAULT_LEAD_DAYS);
+    }
+
+    private static Suggestion suggestion(Item item, Model model, int leadTimeDays) {
+        double leadDemand = 0;
+        double cycleDemand = 0;
+        double error = 0;
+        if (model != null) {
+            for (int h = 1; h <= leadTimeDays + REVIEW_DAYS; h++) {
+                double demand = model.forecast(h);
+                cycleDemand += demand;
+                if (h <= leadTimeDays) {
+                    leadDemand += demand;
+                }
+            }
+            error = model.error();
+        }
+
+        double safetyStock = SAFETY_FACTOR * error * Math.sqrt(leadTimeDays);
+        int reorderPoint = (int) Math.ceil(leadDemand + safetyStock);
+        int target = (int) Math.ceil(cycleDemand + safetyStock);
+        int orderQuantity = Math.max(0, target - item.getCurrentStock());
+        return new Suggestion(item.getItemCode(), leadDemand / leadTimeDays, leadTimeDays,
+                              reorderPoint, orderQuantity);
+    }
+
+    // Fit, or step the models forward to the last complete day
+    private static synchronized Map<String, Model> modelsUpToDate() {
+        int lastCompleteDay = DateCodec.fromDate(new Date()) - 1;
+        if (models == null || lastCompleteDay - fittedOn >= REFIT_DAYS || lastCompleteDay < fittedThrough) {
+            models = fit(SalesColumnStore.current(), lastCompleteDay);
+            fittedThrough = lastCompleteDay;
+            fittedOn = lastCompleteDay;
+        } else if (lastCompleteDay > fittedThrough) {
+            SalesColumnStore store = SalesColumnStore.current();
+            for (int day = fittedThrough + 1; day <= lastCompleteDay; day++) {
+                step(store, day);
+            }
+            fittedThrough = lastCompleteDay;
+        }
+        return models;
+    }
+
+    // Add one day's quantities to every model; items first sold that day start a new model
+    private static void step(SalesColumnStore store, int day) {
+        long[] quantities = store.quantityByItem(day, day);
+        Set<String> sold = new HashSet<>();
+        for (int item = 0; item < quantities.length; item++) {
+            if (quantities[item] != 0) {
+                String itemCode = store.itemCode(item);
+                sold.add(itemCode);
+                Model model = models.get(itemCode);
+                if (model != null) {
+                    model.update(quantities[item]);
+                } else {
+                    models.put(itemCode, Model.fit(new double[] {quantities[item]}));
+                }
+            }
+        }
+        for (Map.Entry<String, Model> entry : models.entrySet()) {
+            if (!sold.contains(entry.getKey())) {
+                entry.getValue().update(0);
+            }
+        }
+    }
+
+    /**
+     * Fit a model for every item sold during the HISTORY_DAYS days up to
+     * lastDay. Rows are first grouped by item with a counting sort, then
+     * each item's daily series is built and fitted independently.
+     */
+    static Map<String, Model> fit(SalesColumnStore store, int lastDay) {
+        int firstDay = lastDay - HISTORY_DAYS + 1;
+        int items = store.itemCount();
+
+        // Row numbers grouped by item: rows of item i are rows[starts[i]] to rows[starts[i + 1] - 1]
+        int[] starts = new int[items + 1];
+        for (int row = 0; row < store.size(); row++) {
+            int day = store.epochDay(row);
+            if (day >= firstDay && day <= lastDay) {
+                starts[store.itemId(row) + 1]++;
+            }
+        }
+        for (int i = 0; i < items; i++) {
+            starts[i + 1] += starts[i];
+        }
+        int[] rows = new int[starts[items]];
+        int[] next = Arrays.copyOf(starts, items);
+        for (int row = 0; row < store.size(); row++) {
+            int day = store.epochDay(row);
+            if (day >= firstDay && day <= lastDay) {
+                rows[next[store.itemId(row)]++] = row;
+            }
+        }
+
+        Map<String, Model> fitted = ParallelAggregator.<Map<String, Model>>aggregate(items, HashMap::new,
+            (partial, from, to) -> {
+                double[] series = new double[HISTORY_DAYS];
+                for (int item = from; item < to; item++) {
+                    if (starts[item] == starts[item + 1]) {
+                        continue;
+                    }
+                    // The series starts on the item's first sale in the window
+                    Arrays.fill(series, 0);
+                    int start = HISTORY_DAYS;
+                    for (int i = starts[item]; i < starts[item + 1]; i++) {
+                        int offset = store.epochDay(rows[i]) - firstDay;
+                        series[offset] += store.quantity(rows[i]);
+                        start = Math.min(start, offset);
+                    }
+                    partial.put(store.itemCode(item), Model.fit(Arrays.copyOfRange(series, start, HISTORY_DAYS)));
+                }
+            },
+            (a, b) -> {
+                a.putAll(b);
+                return a;
+            });
+        return fitted;
+    }
+
+    /**
+     * Additive Holt-Winters state for one item: level, trend and one seasonal
+     * term per weekday, plus the running one-step error.
+     */
+    static final class Model {
+        private final double alpha;
+        private final double beta;
+        private final double gamma;
+        private double level;
+        private double trend;
+        private final double[] season = new double[SEASON];
+        private int phase;          // position in the season of the next day
+        private double squaredError;
+        private int errors;
+
+        private Model(double alpha, double beta, double gamma) {
+            this.alpha = alpha;
+            this.beta = beta;
+            this.gamma = gamma;
+        }
+
+        // The model with the smallest one-step error over the series, among the weight grid
+        static Model fit(double[] series) {
+            Model best = null;
+            if (series.length < 2 * SEASON) {
+                // Too short for a season: a flat forecast at the mean
+                best = new Model(ALPHAS[1], 0, 0);
+                best.start(series, series.length, false);
+                return best;
+            }
+            for (double alpha : ALPHAS) {
+                for (double beta : BETAS) {
+                    for (double gamma : GAMMAS) {
+                        Model model = new Model(alpha, beta, gamma);
+                        model.start(series, SEASON, true);
+                        for (int t = SEASON; t < series.length; t++) {
+                            model.update(series[t]);
+                        }
+                        if (best == null || model.squaredError < best.squaredError) {
+                            best = model;
+                        }
+                    }
+                }
+            }
+            return best;
+        }
+
+        // Initial state from the first days of the series, seeding the season from them if asked
+        private void start(double[] series, int days, boolean seedSeason) {
+            double sum = 0;
+            for (int t = 0; t < days; t++) {
+                sum += series[t];
+            }
+            level = days > 0 ? sum / days : 0;
+            trend = 0;
+            if (seedSeason) {
+                for (int t = 0; t < SEASON; t++) {
+                    season[t] = series[t] - level;
+                }
+            } else {
+                // No season: the spread around the mean stands in for the one-step error
+                for (int t = 0; t < days; t++) {
+                    squaredError += (series[t] - level) * (series[t] - level);
+                }
+                errors = days;
+            }
+            phase = days % SEASON;
+        }
+
+        // One smoothing step with the next day's demand
+        void update(double demand) {
+            double seasonal = season[phase];
+            double error = demand - (level + trend + seasonal);
+            squaredError += error * error;
+            errors++;
+
+            double previousLevel = level;
+            level = alpha * (demand - seasonal) + (1 - alpha) * (level + trend);
+            trend = beta * (level - previousLevel) + (1 - beta) * trend;
+            season[phase] = gamma * (demand - level) + (1 - gamma) * seasonal;
+            phase = (phase + 1) % SEASON;
+        }
+
+        // Demand forecast h days after the last day seen, never negative
+        double forecast(int h) {
+            return Math.max(0, level + h * trend + season[(phase + h - 1) % SEASON]);
+        }
+
+        // Root mean square one-step error
+        double error() {
+            return errors > 0 ? Math.sqrt(squaredError / errors) : 0;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.owsb.analytics;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * Runs an aggregation over a range of records in parallel on the common
+ * ForkJoinPool.
+ * The range [0, size) is split in halves until the pieces are small enough;
+ * each piece is folded into its own partial result, so no state is shared
+ * between threads, and the partials are merged pairwise as the halves
+ * complete. Ranges that fit in one piece run directly on the calling thread.
+ */
+public final class ParallelAggregator {
+    // Smallest piece worth handing to another thread
+    private static final int MIN_CHUNK = 16 * 1024;
+    // Pieces per pool thread, so threads that finish early can steal work
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private ParallelAggregator() {
+    }
+
+    /**
+     * Adds the records [from, to) to a partial result.
+     */
+    public interface Folder<P> {
+        void fold(P partial, int from, int to);
+    }
+
+    /**
+     * Aggregate records [0, size): every piece starts from a new partial,
+     * is folded, and the partials are combined with merge (which may
+     * update and return its first argument).
+     */
+    public static <P> P aggregate(int size, Supplier<P> newPartial, Folder<P> folder, BinaryOperator<P> merge) {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int chunk = Math.max(MIN_CHUNK, size / (pool.getParallelism() * CHUNKS_PER_THREAD));
+        if (size <= chunk) {
+            P partial = newPartial.get();
+            folder.fold(partial, 0, size);
+            return partial;
+        }
+        return pool.invoke(new Piece<>(0, size, chunk, newPartial, folder, merge));
+    }
+
+    // Add b into a element by element; for merging array partials
+    public static long[] sum(long[] a, long[] b) {
+        for (int i = 0; i < a.length; i++) {
+            a[i] += b[i];
+        }
+        return a;
+    }
+
+    // Add the totals of b into a; for merging map partials
+    public static <K> Map<K, Long> sum(Map<K, Long> a, Map<K, Long> b) {
+        for (Map.Entry<K, Long> entry : b.entrySet()) {
+            a.merge(entry.getKey(), entry.getValue(), Long::sum);
+        }
+        return a;
+    }
+
+    private static final class Piece<P> extends RecursiveTask<P> {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int chunk;
+        private final Supplier<P> newPartial;
+        private final Folder<P> folder;
+        private final BinaryOperator<P> merge;
+
+        Piece(int from, int to, int chunk, Supplier<P> newPartial, Folder<P> folder, BinaryOperator<P> merge) {
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+            this.newPartial = newPartial;
+            this.folder = folder;
+            this.merge = merge;
+        }
+
+        @Override
+        protected P compute() {
+            if (to - from <= chunk) {
+                P partial = newPartial.get();
+                folder.fold(partial, from, to);
+                return partial;
+            }
+            int middle = (from + to) >>> 1;
+            Piece<P> left = new Piece<>(from, middle, chunk, newPartial, folder, merge);
+            Piece<P> right = new Piece<>(middle, to, chunk, newPartial, folder, merge);
+            left.fork();
+            P rightResult = right.compute();
+            return merge.apply(left.join(), rightResult);
+        }
+    }
+}
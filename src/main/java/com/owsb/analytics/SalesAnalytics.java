@@ -0,0 +1,98 @@
+package com.owsb.analytics;
+
+import com.owsb.io.DateCodec;
+import com.owsb.model.Item;
+import com.owsb.model.SalesColumnStore;
+import java.util.*;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Sales aggregates for reports, computed in parallel over the columnar
+ * sales store.
+ * The store's rows are split into pieces that are summed on the common
+ * ForkJoinPool into per-piece arrays indexed by category, user or day,
+ * and the arrays are added up at the end. Money is in cents and date
+ * ranges are inclusive.
+ */
+public final class SalesAnalytics {
+    private static final String UNCATEGORIZED = "Uncategorized";
+
+    private SalesAnalytics() {
+    }
+
+    // Revenue in cents per item category; items no longer in the catalog count as Uncategorized
+    public static Map<String, Long> revenueCentsByCategory(Date startDate, Date endDate) {
+        Map<String, String> categoryByCode = new HashMap<>();
+        for (Item item : Item.getAllItems()) {
+            if (item.getCategory() != null && !item.getCategory().isEmpty()) {
+                categoryByCode.put(item.getItemCode(), item.getCategory());
+            }
+        }
+
+        // Number the categories once, so the rows are summed straight into per-category slots
+        SalesColumnStore store = SalesColumnStore.current();
+        List<String> categories = new ArrayList<>();
+        Map<String, Integer> categoryIds = new HashMap<>();
+        int[] categoryOfItem = new int[store.itemCount()];
+        for (int item = 0; item < categoryOfItem.length; item++) {
+            String category = categoryByCode.getOrDefault(store.itemCode(item), UNCATEGORIZED);
+            categoryOfItem[item] = categoryIds.computeIfAbsent(category, name -> {
+                categories.add(name);
+                return categories.size() - 1;
+            });
+        }
+
+        long[] amounts = amountsBy(store, categories.size(), row -> categoryOfItem[store.itemId(row)],
+            startDate, endDate);
+        Map<String, Long> revenue = new TreeMap<>();
+        for (int category = 0; category < amounts.length; category++) {
+            if (amounts[category] != 0) {
+                revenue.put(categories.get(category), amounts[category]);
+            }
+        }
+        return revenue;
+    }
+
+    // Revenue in cents per user id of whoever recorded the sales
+    public static Map<String, Long> revenueCentsByRecorder(Date startDate, Date endDate) {
+        SalesColumnStore store = SalesColumnStore.current();
+        long[] amounts = amountsBy(store, store.userCount(), store::recordedById, startDate, endDate);
+        Map<String, Long> revenue = new TreeMap<>();
+        for (int user = 0; user < amounts.length; user++) {
+            if (amounts[user] != 0) {
+                revenue.put(store.userId(user), amounts[user]);
+            }
+        }
+        return revenue;
+    }
+
+    // Revenue in cents per day from startDate to endDate; index 0 is startDate
+    public static long[] revenueCentsByDay(Date startDate, Date endDate) {
+        SalesColumnStore store = SalesColumnStore.current();
+        int fromDay = DateCodec.fromDate(startDate);
+        int days = Math.max(0, DateCodec.fromDate(endDate) - fromDay + 1);
+        return amountsBy(store, days, row -> store.epochDay(row) - fromDay, startDate, endDate);
+    }
+
+    // Sales amount in cents per group of the rows in the range, summed in parallel
+    private static long[] amountsBy(SalesColumnStore store, int groups, IntUnaryOperator groupOf,
+                                    Date startDate, Date endDate) {
+        int fromDay = DateCodec.fromDate(startDate);
+        int toDay = DateCodec.fromDate(endDate);
+        if (groups == 0 || fromDay > toDay) {
+            return new long[groups];
+        }
+
+        return ParallelAggregator.aggregate(store.size(),
+            () -> new long[groups],
+            (partial, from, to) -> {
+                for (int row = from; row < to; row++) {
+                    int day = store.epochDay(row);
+                    if (day >= fromDay && day <= toDay) {
+                        partial[groupOf.applyAsInt(row)] += store.amountCents(row);
+                    }
+                }
+            },
+            ParallelAggregator::sum);
+    }
+}
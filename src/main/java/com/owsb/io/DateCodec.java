@@ -0,0 +1,191 @@
+package com.owsb.io;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * Converts between yyyy-MM-dd text, epoch days (days since 1970-01-01) and
+ * {@link Date}s at local midnight, which is what the data files store.
+ * Unlike a shared SimpleDateFormat it keeps no mutable state, so it is safe
+ * to use from any thread. The calendar arithmetic is the proleptic
+ * Gregorian "days from civil" algorithm.
+ */
+public final class DateCodec {
+    // Last epoch day converted to a Date, since consecutive records usually share a date
+    private static volatile CachedDay lastDay = new CachedDay(Integer.MIN_VALUE, 0L, null);
+
+    private static final class CachedDay {
+        final int epochDay;
+        final long millis;
+        final ZoneId zone;
+
+        CachedDay(int epochDay, long millis, ZoneId zone) {
+            this.epochDay = epochDay;
+            this.millis = millis;
+            this.zone = zone;
+        }
+    }
+
+    private DateCodec() {
+    }
+
+    // Parse yyyy-MM-dd (month and day may also have a single digit)
+    public static int parseEpochDay(CharSequence text) {
+        int length = text.length();
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = text.charAt(i);
+        }
+        return parseEpochDay(chars, 0, length);
+    }
+
+    // Parse yyyy-MM-dd from chars[start, end)
+    public static int parseEpochDay(char[] chars, int start, int end) {
+        int i = start;
+        int year = 0;
+        int yearDigits = 0;
+        while (i < end && chars[i] != '-') {
+            year = year * 10 + digit(chars, i, start, end);
+            yearDigits++;
+            i++;
+        }
+        i++;
+        int month = 0;
+        int monthDigits = 0;
+        while (i < end && chars[i] != '-') {
+            month = month * 10 + digit(chars, i, start, end);
+            monthDigits++;
+            i++;
+        }
+        i++;
+        int day = 0;
+        int dayDigits = 0;
+        while (i < end) {
+            day = day * 10 + digit(chars, i, start, end);
+            dayDigits++;
+            i++;
+        }
+
+        if (yearDigits == 0 || yearDigits > 4 || monthDigits == 0 || monthDigits > 2
+                || dayDigits == 0 || dayDigits > 2 || month < 1 || month > 12 || day < 1) {
+            throw invalid(chars, start, end);
+        }
+        // Days past the end of the month roll over, as with a lenient SimpleDateFormat
+        return epochDay(year, month, 1) + day - 1;
+    }
+
+    // Days since 1970-01-01 of a calendar date
+    public static int epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    // Format an epoch day as yyyy-MM-dd
+    public static String format(int epochDay) {
+        StringBuilder sb = new StringBuilder(10);
+        appendTo(sb, epochDay);
+        return sb.toString();
+    }
+
+    // Format a Date (in local time) as yyyy-MM-dd
+    public static String format(Date date) {
+        return format(fromDate(date));
+    }
+
+    // Append an epoch day as yyyy-MM-dd
+    public static void appendTo(StringBuilder sb, int epochDay) {
+        int[] civil = toCivil(epochDay);
+        int year = civil[0];
+        int month = civil[1];
+        int day = civil[2];
+
+        appendYearMonth(sb, year, month);
+        sb.append('-');
+        if (day < 10) {
+            sb.append('0');
+        }
+        sb.append(day);
+    }
+
+    // Months since January 1970 of an epoch day, for grouping records by month
+    public static int monthIndex(int epochDay) {
+        int[] civil = toCivil(epochDay);
+        return (civil[0] - 1970) * 12 + civil[1] - 1;
+    }
+
+    // Epoch day of the first day of a month index
+    public static int firstDayOfMonth(int monthIndex) {
+        return epochDay(1970 + Math.floorDiv(monthIndex, 12), Math.floorMod(monthIndex, 12) + 1, 1);
+    }
+
+    // Format a month index as yyyy-MM
+    public static String formatMonth(int monthIndex) {
+        StringBuilder sb = new StringBuilder(7);
+        appendYearMonth(sb, 1970 + Math.floorDiv(monthIndex, 12), Math.floorMod(monthIndex, 12) + 1);
+        return sb.toString();
+    }
+
+    // Parse yyyy-MM into a month index
+    public static int parseMonth(CharSequence text) {
+        return monthIndex(parseEpochDay(text + "-01"));
+    }
+
+    // Local midnight of an epoch day
+    public static Date toDate(int epochDay) {
+        ZoneId zone = ZoneId.systemDefault();
+        CachedDay cached = lastDay;
+        if (cached.epochDay != epochDay || !zone.equals(cached.zone)) {
+            long millis = LocalDate.ofEpochDay(epochDay).atStartOfDay(zone).toInstant().toEpochMilli();
+            cached = new CachedDay(epochDay, millis, zone);
+            lastDay = cached;
+        }
+        return new Date(cached.millis);
+    }
+
+    // Epoch day of a Date in local time
+    public static int fromDate(Date date) {
+        return (int) date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+
+    // Year, month and day of an epoch day
+    private static int[] toCivil(int epochDay) {
+        int z = epochDay + 719468;
+        int era = Math.floorDiv(z, 146097);
+        int dayOfEra = z - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return new int[] {year, month, day};
+    }
+
+    private static void appendYearMonth(StringBuilder sb, int year, int month) {
+        if (year < 1000) {
+            sb.append(year < 10 ? "000" : year < 100 ? "00" : "0");
+        }
+        sb.append(year).append('-');
+        if (month < 10) {
+            sb.append('0');
+        }
+        sb.append(month);
+    }
+
+    private static int digit(char[] chars, int i, int start, int end) {
+        char c = chars[i];
+        if (c < '0' || c > '9') {
+            throw invalid(chars, start, end);
+        }
+        return c - '0';
+    }
+
+    private static IllegalArgumentException invalid(char[] chars, int start, int end) {
+        return new IllegalArgumentException("Unparseable date: \"" + new String(chars, start, end - start) + "\"");
+    }
+}
@@ -0,0 +1,407 @@
+package com.owsb.io;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Scans comma-separated records straight out of a memory-mapped file.
+ * Unlike {@link RecordReader} nothing is decoded into chars: each line is
+ * split into fields over the mapped bytes and handed to a {@link Visitor},
+ * which reads only the fields it needs. Numbers and dates are parsed from
+ * the bytes directly, and a String is only created for fields read as
+ * text, so a scan that aggregates a few numeric columns allocates nothing
+ * per line.
+ * <p>
+ * Lines end with \n or \r\n. A last line without a terminator may still be
+ * being written, so it is left out. The field accessors are only valid
+ * inside {@link Visitor#record}.
+ */
+public final class MappedRecordScanner {
+    // A MappedByteBuffer is indexed by int, so large files are mapped in windows
+    private static final long WINDOW_SIZE = 1L << 30;
+
+    private static final Charset CHARSET = Charset.defaultCharset();
+    private static final long COMMAS = 0x2C2C2C2C2C2C2C2CL;
+    private static final long LINE_FEEDS = 0x0A0A0A0A0A0A0A0AL;
+
+    /**
+     * Receives each line of a scan.
+     */
+    public interface Visitor {
+        void record(MappedRecordScanner record);
+    }
+
+    private MappedByteBuffer bytes;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int fieldCount = 0;
+    private long linesInWindow = 0;
+
+    // Month of the last date parsed and its first day
+    private int lastYear = -1;
+    private int lastMonth = -1;
+    private int lastMonthStart = 0;
+
+    private byte[] scratch = new byte[64];
+
+    private MappedRecordScanner() {
+    }
+
+    /**
+     * Visit every complete line of a file. Returns the number of lines
+     * visited; a missing file has none.
+     */
+    public static long scan(File file, Visitor visitor) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+
+        MappedRecordScanner scanner = new MappedRecordScanner();
+        long lines = 0;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                long length = Math.min(WINDOW_SIZE, size - position);
+                scanner.bytes = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int consumed = scanner.scanWindow(visitor);
+                if (consumed == 0) {
+                    if (length < WINDOW_SIZE) {
+                        break; // Only an unterminated last line is left
+                    }
+                    throw new IOException("Line longer than " + WINDOW_SIZE + " bytes in " + file);
+                }
+                lines += scanner.linesInWindow;
+                position += consumed;
+            }
+        } finally {
+            // Let the mapping be collected as soon as possible
+            scanner.bytes = null;
+        }
+        return lines;
+    }
+
+    // Visit the complete lines of the current window; returns the bytes they take up
+    private int scanWindow(Visitor visitor) {
+        MappedByteBuffer window = bytes;
+        window.order(ByteOrder.LITTLE_ENDIAN);
+        int limit = window.limit();
+        int lineStart = 0;
+        int fieldStart = 0;
+        fieldCount = 0;
+        linesInWindow = 0;
+
+        // Look for separators eight bytes at a time
+        int i = 0;
+        for (; i + 8 <= limit; i += 8) {
+            long word = window.getLong(i);
+            long commas = matches(word, COMMAS);
+            long separators = commas | matches(word, LINE_FEEDS);
+            while (separators != 0) {
+                int bit = Long.numberOfTrailingZeros(separators);
+                int at = i + (bit >>> 3);
+                if ((commas & (1L << bit)) != 0) {
+                    addField(fieldStart, at);
+                    fieldStart = at + 1;
+                } else {
+                    endLine(visitor, fieldStart, at);
+                    lineStart = at + 1;
+                    fieldStart = lineStart;
+                }
+                separators &= separators - 1;
+            }
+        }
+        for (; i < limit; i++) {
+            byte b = window.get(i);
+            if (b == ',') {
+                addField(fieldStart, i);
+                fieldStart = i + 1;
+            } else if (b == '\n') {
+                endLine(visitor, fieldStart, i);
+                lineStart = i + 1;
+                fieldStart = lineStart;
+            }
+        }
+        return lineStart;
+    }
+
+    // Finish the line whose last field starts at fieldStart and whose \n is at lineFeed
+    private void endLine(Visitor visitor, int fieldStart, int lineFeed) {
+        int end = lineFeed > fieldStart && bytes.get(lineFeed - 1) == '\r' ? lineFeed - 1 : lineFeed;
+        addField(fieldStart, end);
+        visitor.record(this);
+        linesInWindow++;
+        fieldCount = 0;
+    }
+
+    // High bit set in each byte of word that equals the byte repeated in pattern
+    private static long matches(long word, long pattern) {
+        long x = word ^ pattern;
+        long y = (x & 0x7F7F7F7F7F7F7F7FL) + 0x7F7F7F7F7F7F7F7FL;
+        return ~(y | x | 0x7F7F7F7F7F7F7F7FL);
+    }
+
+    // Number of fields on the current line (an empty line has one empty field)
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    public String getString(int field) {
+        checkField(field);
+        int start = starts[field];
+        int length = ends[field] - start;
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            scratch[i] = bytes.get(start + i);
+        }
+        return new String(scratch, 0, length, CHARSET);
+    }
+
+    public boolean isEmpty(int field) {
+        checkField(field);
+        return starts[field] == ends[field];
+    }
+
+    // Compare a field with a value without creating a String
+    public boolean fieldEquals(int field, String value) {
+        checkField(field);
+        if (value == null) {
+            return false;
+        }
+        int start = starts[field];
+        int length = ends[field] - start;
+        if (value.length() != length) {
+            // Only a value with non-ASCII characters can have a different length in bytes
+            return !isAscii(value) && value.equals(getString(field));
+        }
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                return value.equals(getString(field));
+            }
+            if (bytes.get(start + i) != c) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getInt(int field) {
+        long value = getLong(field);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Value out of int range: " + getString(field));
+        }
+        return (int) value;
+    }
+
+    public long getLong(int field) {
+        checkField(field);
+        int end = ends[field];
+        int i = starts[field];
+        boolean negative = false;
+        if (i < end && (bytes.get(i) == '-' || bytes.get(i) == '+')) {
+            negative = bytes.get(i) == '-';
+            i++;
+        }
+        if (i == end) {
+            throw new NumberFormatException("Not a number: \"" + getString(field) + "\"");
+        }
+
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = bytes.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Not a number: \"" + getString(field) + "\"");
+            }
+            if (value > (Long.MAX_VALUE - digit) / 10) {
+                throw new NumberFormatException("Value out of long range: " + getString(field));
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parse a decimal field such as 12.50 or -3, giving the same result as
+     * Double.parseDouble. Plain decimals with up to 15 significant digits
+     * are computed directly; anything else falls back to Double.parseDouble.
+     */
+    public double getDouble(int field) {
+        checkField(field);
+        int end = ends[field];
+        int i = starts[field];
+        boolean negative = false;
+        if (i < end && (bytes.get(i) == '-' || bytes.get(i) == '+')) {
+            negative = bytes.get(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int scale = 0;
+        int digits = 0;
+        boolean seenPoint = false;
+        for (; i < end; i++) {
+            byte c = bytes.get(i);
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (seenPoint) {
+                    scale++;
+                }
+                if (digits > 15) {
+                    return Double.parseDouble(getString(field));
+                }
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                return Double.parseDouble(getString(field));
+            }
+        }
+        if (digits == 0) {
+            return Double.parseDouble(getString(field));
+        }
+
+        double value = scale == 0 ? mantissa : mantissa / RecordReader.powerOfTen(scale);
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parse a decimal field such as 12.50 or -3 as a whole number of cents,
+     * rounding half away from zero past the second decimal. Plain decimals
+     * are converted exactly without going through a double; anything else
+     * falls back to BigDecimal.
+     */
+    public long getCents(int field) {
+        checkField(field);
+        int end = ends[field];
+        int i = starts[field];
+        boolean negative = false;
+        if (i < end && (bytes.get(i) == '-' || bytes.get(i) == '+')) {
+            negative = bytes.get(i) == '-';
+            i++;
+        }
+
+        long units = 0;
+        int digits = 0;
+        for (; i < end && bytes.get(i) != '.'; i++) {
+            int digit = bytes.get(i) - '0';
+            if (digit < 0 || digit > 9 || ++digits > 16) {
+                return slowCents(field);
+            }
+            units = units * 10 + digit;
+        }
+        int fraction = 0;
+        int fractionDigits = 0;
+        boolean roundUp = false;
+        if (i < end) {
+            for (i++; i < end; i++) {
+                int digit = bytes.get(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    return slowCents(field);
+                }
+                if (fractionDigits < 2) {
+                    fraction = fraction * 10 + digit;
+                } else if (fractionDigits == 2) {
+                    roundUp = digit >= 5;
+                }
+                fractionDigits++;
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            throw new NumberFormatException("Not a number: \"" + getString(field) + "\"");
+        }
+
+        long cents = units * 100 + (fractionDigits == 1 ? fraction * 10 : fraction) + (roundUp ? 1 : 0);
+        return negative ? -cents : cents;
+    }
+
+    // Hash of the bytes of a field, for looking fields up without creating Strings
+    public int fieldHash(int field) {
+        checkField(field);
+        int hash = 0;
+        for (int i = starts[field]; i < ends[field]; i++) {
+            hash = 31 * hash + bytes.get(i);
+        }
+        return hash;
+    }
+
+    // Days since 1970-01-01 of a yyyy-MM-dd field
+    public int getEpochDay(int field) {
+        checkField(field);
+        int start = starts[field];
+        int length = ends[field] - start;
+        if (length == 10 && bytes.get(start + 4) == '-' && bytes.get(start + 7) == '-') {
+            int year = digits(start, 4);
+            int month = digits(start + 5, 2);
+            int day = digits(start + 8, 2);
+            if (year >= 0 && month >= 1 && month <= 12 && day >= 1) {
+                // Consecutive records usually fall in the same month
+                if (year != lastYear || month != lastMonth) {
+                    lastMonthStart = DateCodec.epochDay(year, month, 1);
+                    lastYear = year;
+                    lastMonth = month;
+                }
+                // Days past the end of the month roll over, as in DateCodec
+                return lastMonthStart + day - 1;
+            }
+        }
+        // Single-digit months and days, and anything malformed
+        return DateCodec.parseEpochDay(getString(field));
+    }
+
+    // Value of count decimal digits starting at start, or -1 if one of them is not a digit
+    private int digits(int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int digit = bytes.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private long slowCents(int field) {
+        try {
+            return new BigDecimal(getString(field)).setScale(2, RoundingMode.HALF_UP).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Value out of range: " + getString(field));
+        }
+    }
+
+    private static boolean isAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void addField(int start, int end) {
+        if (fieldCount == starts.length) {
+            starts = Arrays.copyOf(starts, fieldCount * 2);
+            ends = Arrays.copyOf(ends, fieldCount * 2);
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        fieldCount++;
+    }
+
+    private void checkField(int field) {
+        if (field < 0 || field >= fieldCount) {
+            throw new IndexOutOfBoundsException("Field " + field + " of " + fieldCount);
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.owsb.io;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Reads comma-separated records line by line.
+ * Lines are tokenized in place over a reusable char buffer: {@link #next()}
+ * only records where each field starts and ends, and values are decoded on
+ * request straight from the buffer. Numbers and yyyy-MM-dd dates are parsed
+ * without creating intermediate Strings, so a String is only allocated for
+ * fields that are actually read as text.
+ * <p>
+ * A reader is not thread-safe, but every loader uses its own instance.
+ */
+public final class RecordReader implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Powers of ten that are exact as doubles
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final Reader in;
+    private char[] buffer = new char[BUFFER_SIZE];
+    private int position = 0;  // start of the unread part of the buffer
+    private int limit = 0;     // end of the valid data in the buffer
+    private boolean eof = false;
+    private boolean pendingLineFeed = false; // the last line ended with \r
+
+    // Field boundaries of the current line, as offsets into the buffer
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int fieldCount = 0;
+    private int lineStart = 0;
+    private int lineEnd = 0;
+
+    public RecordReader(Reader in) {
+        this.in = in;
+    }
+
+    public RecordReader(File file) throws FileNotFoundException {
+        this(new InputStreamReader(new FileInputStream(file)));
+    }
+
+    // Read a single line that is already in memory
+    public static RecordReader of(String line) {
+        return new RecordReader(new StringReader(line));
+    }
+
+    /**
+     * Advance to the next line and split it into fields.
+     * Returns false at the end of the input.
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            // Swallow the \n of a \r\n pair split across two reads
+            if (pendingLineFeed && position < limit) {
+                if (buffer[position] == '\n') {
+                    position++;
+                }
+                pendingLineFeed = false;
+            }
+
+            // Look for the end of the line in what is already buffered
+            if (!pendingLineFeed) {
+                for (int i = position; i < limit; i++) {
+                    char c = buffer[i];
+                    if (c == '\n' || c == '\r') {
+                        split(position, i);
+                        position = i + 1;
+                        if (c == '\r') {
+                            pendingLineFeed = true;
+                        }
+                        return true;
+                    }
+                }
+            }
+
+            if (eof) {
+                if (position < limit) {
+                    // Last line without a line terminator
+                    split(position, limit);
+                    position = limit;
+                    return true;
+                }
+                return false;
+            }
+            fill();
+        }
+    }
+
+    // Number of fields on the current line (an empty line has one empty field)
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    // The whole current line
+    public String line() {
+        return new String(buffer, lineStart, lineEnd - lineStart);
+    }
+
+    public String getString(int field) {
+        checkField(field);
+        return new String(buffer, starts[field], ends[field] - starts[field]);
+    }
+
+    public boolean isEmpty(int field) {
+        checkField(field);
+        return starts[field] == ends[field];
+    }
+
+    // Compare a field with a value without creating a String
+    public boolean fieldEquals(int field, String value) {
+        checkField(field);
+        int length = ends[field] - starts[field];
+        if (value == null || value.length() != length) {
+            return false;
+        }
+        int start = starts[field];
+        for (int i = 0; i < length; i++) {
+            if (buffer[start + i] != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getInt(int field) {
+        long value = getLong(field);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Value out of int range: " + getString(field));
+        }
+        return (int) value;
+    }
+
+    public long getLong(int field) {
+        checkField(field);
+        int start = starts[field];
+        int end = ends[field];
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+            negative = buffer[i] == '-';
+            i++;
+        }
+        if (i == end) {
+            throw new NumberFormatException("Not a number: \"" + getString(field) + "\"");
+        }
+
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Not a number: \"" + getString(field) + "\"");
+            }
+            if (value > (Long.MAX_VALUE - digit) / 10) {
+                throw new NumberFormatException("Value out of long range: " + getString(field));
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parse a decimal field such as 12.50 or -3. Plain decimals with up to
+     * 15 significant digits are computed directly (one exact division, so the
+     * result is the same as Double.parseDouble); anything else, such as
+     * exponents, falls back to Double.parseDouble.
+     */
+    public double getDouble(int field) {
+        checkField(field);
+        int start = starts[field];
+        int end = ends[field];
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+            negative = buffer[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int scale = 0;
+        int digits = 0;
+        boolean seenPoint = false;
+        for (; i < end; i++) {
+            char c = buffer[i];
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (seenPoint) {
+                    scale++;
+                }
+                if (digits > 15) {
+                    return slowDouble(field);
+                }
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                return slowDouble(field);
+            }
+        }
+        if (digits == 0) {
+            return slowDouble(field);
+        }
+
+        double value = scale == 0 ? mantissa : mantissa / POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    // Days since 1970-01-01 of a yyyy-MM-dd field
+    public int getEpochDay(int field) {
+        checkField(field);
+        return DateCodec.parseEpochDay(buffer, starts[field], ends[field]);
+    }
+
+    // A yyyy-MM-dd field as a Date at local midnight
+    public Date getDate(int field) {
+        return DateCodec.toDate(getEpochDay(field));
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // 10^scale for the decimal fast paths, exact for scale up to 22
+    static double powerOfTen(int scale) {
+        return POWERS_OF_TEN[scale];
+    }
+
+    private double slowDouble(int field) {
+        return Double.parseDouble(getString(field));
+    }
+
+    // Record the field boundaries of the line in buffer[start, end)
+    private void split(int start, int end) {
+        lineStart = start;
+        lineEnd = end;
+        fieldCount = 0;
+        int fieldStart = start;
+        for (int i = start; i < end; i++) {
+            if (buffer[i] == ',') {
+                addField(fieldStart, i);
+                fieldStart = i + 1;
+            }
+        }
+        addField(fieldStart, end);
+    }
+
+    private void addField(int start, int end) {
+        if (fieldCount == starts.length) {
+            starts = Arrays.copyOf(starts, fieldCount * 2);
+            ends = Arrays.copyOf(ends, fieldCount * 2);
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        fieldCount++;
+    }
+
+    // Move the unread part to the front of the buffer and read more after it
+    private void fill() throws IOException {
+        int remaining = limit - position;
+        if (remaining == buffer.length) {
+            // A line longer than the buffer
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        } else if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, remaining);
+        }
+        position = 0;
+        limit = remaining;
+
+        int read = in.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            eof = true;
+        } else {
+            limit += read;
+        }
+    }
+
+    private void checkField(int field) {
+        if (field < 0 || field >= fieldCount) {
+            throw new IndexOutOfBoundsException("Field " + field + " of " + fieldCount);
+        }
+    }
+}
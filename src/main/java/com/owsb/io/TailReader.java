@@ -0,0 +1,182 @@
+package com.owsb.io;
+
+import java.io.*;
+import java.util.zip.CRC32;
+
+/**
+ * Follows an append-only record file, delivering only the lines added since
+ * the previous poll.
+ * The reader remembers how far it has consumed the file and a CRC32 of the
+ * block just before that point. On each poll the block is checksummed
+ * again: if the file got shorter or the block changed, the file was
+ * truncated or rewritten, so the listener is told to start over and the
+ * whole file is delivered again. Only complete lines are consumed; a
+ * partially written last line is picked up by a later poll.
+ * <p>
+ * A reader is not thread-safe; callers poll it under their own lock.
+ */
+public final class TailReader {
+    private static final int CHECK_BLOCK_SIZE = 4096;
+
+    private final File file;
+    private long offset = 0;   // bytes consumed so far, always at a line boundary
+    private long checksum = 0; // CRC32 of the block that ends at offset
+
+    /**
+     * Receives the records of a {@link TailReader}.
+     */
+    public interface Listener {
+        // The file was truncated or rewritten; records delivered so far are no longer valid
+        void reset();
+
+        // One new line, positioned on the given reader
+        void record(RecordReader reader);
+    }
+
+    public TailReader(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Deliver the lines appended since the last poll. Returns the number of
+     * lines delivered.
+     */
+    public int poll(Listener listener) throws IOException {
+        long length = file.exists() ? file.length() : 0;
+
+        if (offset > 0 && (length < offset || checksumBefore(offset) != checksum)) {
+            rewind();
+            listener.reset();
+        }
+        if (length == offset) {
+            return 0;
+        }
+
+        long end = lastLineEnd(length);
+        if (end <= offset) {
+            return 0;
+        }
+
+        int lines = 0;
+        try (InputStream in = new FileInputStream(file)) {
+            skipFully(in, offset);
+            try (RecordReader reader = new RecordReader(
+                    new InputStreamReader(new BoundedInputStream(in, end - offset)))) {
+                while (reader.next()) {
+                    listener.record(reader);
+                    lines++;
+                }
+            }
+        }
+
+        offset = end;
+        checksum = checksumBefore(end);
+        return lines;
+    }
+
+    // Forget the position, so the next poll resets the listener and starts from the beginning
+    public void rewind() {
+        offset = 0;
+        checksum = 0;
+    }
+
+    // Position just after the last line terminator at or before length
+    private long lastLineEnd(long length) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            byte[] block = new byte[CHECK_BLOCK_SIZE];
+            long blockEnd = length;
+            while (blockEnd > offset) {
+                long blockStart = Math.max(offset, blockEnd - block.length);
+                int size = (int) (blockEnd - blockStart);
+                raf.seek(blockStart);
+                raf.readFully(block, 0, size);
+                for (int i = size - 1; i >= 0; i--) {
+                    if (block[i] == '\n') {
+                        return blockStart + i + 1;
+                    }
+                }
+                blockEnd = blockStart;
+            }
+        }
+        return offset;
+    }
+
+    private long checksumBefore(long end) throws IOException {
+        long start = Math.max(0, end - CHECK_BLOCK_SIZE);
+        byte[] block = new byte[(int) (end - start)];
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(start);
+            raf.readFully(block);
+        } catch (EOFException e) {
+            return -1;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(block, 0, block.length);
+        return crc.getValue();
+    }
+
+    private static void skipFully(InputStream in, long bytes) throws IOException {
+        while (bytes > 0) {
+            long skipped = in.skip(bytes);
+            if (skipped <= 0) {
+                throw new EOFException("File is shorter than expected");
+            }
+            bytes -= skipped;
+        }
+    }
+
+    // Stops after a fixed number of bytes, so a line still being written is not read
+    private static final class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
@@ -1,8 +1,9 @@
 package com.owsb.model;
 
+import com.owsb.io.DateCodec;
+import com.owsb.io.MappedRecordScanner;
+import com.owsb.io.RecordReader;
 import java.io.*;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.*;
 
 public class DailySales {
@@ -14,9 +15,22 @@ public class DailySales {
     private double salesAmount;
     private String recordedBy; // User ID
     
-    // File path for sales data
-    private static final String FILE_PATH = "data/daily_sales.txt";
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd");
+    // Columns of a sales record, for visitors passed to scanSales
+    public static final int COLUMN_SALES_ID = 0;
+    public static final int COLUMN_DATE = 1;
+    public static final int COLUMN_ITEM_CODE = 2;
+    public static final int COLUMN_QUANTITY = 3;
+    public static final int COLUMN_UNIT_PRICE = 4;
+    public static final int COLUMN_SALES_AMOUNT = 5;
+    public static final int COLUMN_RECORDED_BY = 6;
+    private static final int COLUMNS = 7;
+    
+    // Sales ids in the partitions, refreshed when any partition changes
+    private static Set<String> knownSalesIds = null;
+    private static long knownIdsSignature = 0;
+    
+    // Parsed sales per partition file, extended with appended lines on each read
+    private static final Map<File, RecordCache<DailySales>> partitionCaches = new HashMap<>();
     
     // Constructor
     public DailySales(String salesId, Date salesDate, String itemCode, int quantity, 
@@ -30,6 +44,12 @@ public class DailySales {
         this.recordedBy = recordedBy;
     }
     
+    // Copy for handing out from the cache
+    DailySales copy() {
+        return new DailySales(salesId, salesDate != null ? new Date(salesDate.getTime()) : null,
+                              itemCode, quantity, unitPrice, salesAmount, recordedBy);
+    }
+    
     // Alternative constructor for use in SalesDataEntryPanel
     public DailySales(String salesId, String itemCode, Date salesDate, int quantity, 
                      double salesAmount, String recordedBy) {
@@ -107,107 +127,191 @@ public class DailySales {
         this.recordedBy = recordedBy;
     }
     
-    // Save sales record to file
+    // Save sales record together with its stock deduction and stock adjustment
     public boolean saveSales() {
-        try {
-            // Ensure data directory exists
-            File dataDir = new File("data");
-            if (!dataDir.exists()) {
-                dataDir.mkdir();
-            }
-            
-            // Create file if it doesn't exist
-            File file = new File(FILE_PATH);
-            if (!file.exists()) {
-                file.createNewFile();
-            }
-            
-            // Check if sales already exists
-            List<DailySales> existingSales = getAllSales();
-            for (DailySales sales : existingSales) {
-                if (sales.getSalesId().equals(this.salesId)) {
-                    return false; // Sales already exists
-                }
-            }
-            
-            // Append sales to file
-            try (FileWriter fw = new FileWriter(file, true);
-                 BufferedWriter bw = new BufferedWriter(fw);
-                 PrintWriter out = new PrintWriter(bw)) {
-                out.println(formatSalesData());
-            }
-            
-            // Update item stock
-            Item item = Item.getItemByCode(this.itemCode);
-            if (item != null) {
-                int newStock = item.getCurrentStock() - this.quantity;
-                if (newStock < 0) {
-                    return false; // Not enough stock
-                }
-                
-                item.setCurrentStock(newStock);
-                item.updateItem();
-                
-                // Create stock adjustment record
-                StockAdjustment adjustment = new StockAdjustment(
-                    StockAdjustment.generateAdjustmentId(),
-                    this.itemCode,
-                    new Date(),
-                    "SUBTRACT",
-                    this.quantity,
-                    "Sales: " + this.salesId,
-                    this.recordedBy
-                );
-                adjustment.saveAdjustment();
+        return TransactionJournal.commit(toUnitOfWork());
+    }
+    
+    // Save many sales records as one group commit; returns how many were saved
+    public static int saveAll(List<DailySales> salesList) {
+        List<UnitOfWork> works = new ArrayList<>(salesList.size());
+        for (DailySales sales : salesList) {
+            works.add(sales.toUnitOfWork());
+        }
+        
+        int saved = 0;
+        for (boolean result : TransactionJournal.commitAll(works)) {
+            if (result) {
+                saved++;
             }
-            
-            return true;
-        } catch (IOException e) {
-            e.printStackTrace();
-            return false;
         }
+        return saved;
     }
     
-    // Load all sales records from file
-    public static List<DailySales> getAllSales() {
-        List<DailySales> salesList = new ArrayList<>();
+    // Stage the sale, the stock deduction and the matching adjustment record
+    private UnitOfWork toUnitOfWork() {
+        UnitOfWork work = new UnitOfWork();
+        work.appendSale(this);
         
-        File file = new File(FILE_PATH);
-        if (!file.exists()) {
-            return salesList;
+        if (Item.getItemByCode(this.itemCode) != null) {
+            work.adjustStock(this.itemCode, -this.quantity);
+            // The id is allocated once the sale has been validated
+            work.appendAdjustment(new StockAdjustment(
+                null,
+                this.itemCode,
+                new Date(),
+                "SUBTRACT",
+                this.quantity,
+                "Sales: " + this.salesId,
+                this.recordedBy
+            ));
         }
+        return work;
+    }
+    
+    // Load all sales records, oldest month first
+    public static List<DailySales> getAllSales() {
+        return readSales(SalesPartitions.all(), Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+    
+    // Copies of the cached sales in the given partitions dated between two epoch days (inclusive)
+    private static List<DailySales> readSales(List<File> partitions, int fromEpochDay, int toEpochDay) {
+        List<DailySales> salesList = new ArrayList<>();
+        boolean filtered = fromEpochDay != Integer.MIN_VALUE || toEpochDay != Integer.MAX_VALUE;
         
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] data = line.split(",");
-                if (data.length >= 7) {
-                    try {
-                        DailySales sales = new DailySales(
-                            data[0],
-                            DATE_FORMAT.parse(data[1]),
-                            data[2],
-                            Integer.parseInt(data[3]),
-                            Double.parseDouble(data[4]),
-                            Double.parseDouble(data[5]),
-                            data[6]
-                        );
-                        salesList.add(sales);
-                    } catch (ParseException | NumberFormatException e) {
-                        e.printStackTrace();
+        for (File partition : partitions) {
+            for (DailySales sales : cacheFor(partition).records()) {
+                if (filtered) {
+                    int day = DateCodec.fromDate(sales.getSalesDate());
+                    if (day < fromEpochDay || day > toEpochDay) {
+                        continue;
                     }
                 }
+                salesList.add(sales.copy());
+            }
+        }
+        
+        return salesList;
+    }
+    
+    /**
+     * Visit the sales records dated between two dates (inclusive; null for
+     * no bound) straight from the memory-mapped partition files, oldest month
+     * first. No DailySales objects are created: the visitor reads the
+     * COLUMN_ fields it needs, so aggregations over the whole history run
+     * without allocating per record. Lines that are not sales records are
+     * skipped.
+     */
+    public static void scanSales(Date startDate, Date endDate, MappedRecordScanner.Visitor visitor) {
+        int fromDay = startDate != null ? DateCodec.fromDate(startDate) : Integer.MIN_VALUE;
+        int toDay = endDate != null ? DateCodec.fromDate(endDate) : Integer.MAX_VALUE;
+        List<File> partitions = startDate == null && endDate == null
+            ? SalesPartitions.all() : SalesPartitions.overlapping(fromDay, toDay);
+        
+        MappedRecordScanner.Visitor inRange = record -> {
+            if (record.fieldCount() < COLUMNS) {
+                return;
             }
+            int day;
+            try {
+                day = record.getEpochDay(COLUMN_DATE);
+            } catch (IllegalArgumentException e) {
+                return;
+            }
+            if (day >= fromDay && day <= toDay) {
+                visitor.record(record);
+            }
+        };
+        for (File partition : partitions) {
+            try {
+                MappedRecordScanner.scan(partition, inRange);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+    
+    private static synchronized RecordCache<DailySales> cacheFor(File partition) {
+        return partitionCaches.computeIfAbsent(partition,
+            file -> new RecordCache<>(file, DailySales::parseSales));
+    }
+    
+    // Parse one line of the sales file, or return null if it is not a sales record
+    static DailySales parseSalesLine(String line) {
+        try (RecordReader reader = RecordReader.of(line)) {
+            return reader.next() ? parseSales(reader) : null;
         } catch (IOException e) {
             e.printStackTrace();
+            return null;
+        }
+    }
+    
+    // Build a sales record from the current line of a reader
+    private static DailySales parseSales(RecordReader reader) {
+        if (reader.fieldCount() < 7) {
+            return null;
+        }
+        try {
+            return new DailySales(
+                reader.getString(0),
+                reader.getDate(1),
+                reader.getString(2),
+                reader.getInt(3),
+                reader.getDouble(4),
+                reader.getDouble(5),
+                reader.getString(6)
+            );
+        } catch (IllegalArgumentException e) {
+            e.printStackTrace();
+            return null;
         }
+    }
+    
+    // Check whether a sales id is already recorded, without re-reading the file each time
+    static synchronized boolean salesIdExists(String salesId) {
+        long signature = SalesPartitions.signature();
+        if (knownSalesIds == null || signature != knownIdsSignature) {
+            knownSalesIds = readSalesIds();
+            knownIdsSignature = signature;
+        }
+        return knownSalesIds.contains(salesId);
+    }
+    
+    // Read only the id column of the sales partitions
+    private static Set<String> readSalesIds() {
+        Set<String> ids = new HashSet<>();
+        scanSales(null, null, record -> ids.add(record.getString(COLUMN_SALES_ID)));
+        return ids;
+    }
+    
+    // Append sales records with one write per month (forced to disk at the next journal checkpoint)
+    static synchronized void appendSalesRecords(List<DailySales> records) throws IOException {
+        SalesRollups.append(records);
         
-        return salesList;
+        // Keep the id cache in step with what was just written
+        if (knownSalesIds != null) {
+            for (DailySales sales : records) {
+                knownSalesIds.add(sales.getSalesId());
+            }
+            knownIdsSignature = SalesPartitions.signature();
+        }
+    }
+    
+    // Flush appended records to disk
+    static synchronized void forceToDisk() throws IOException {
+        SalesPartitions.force();
     }
     
-    // Get sales by date range
+    // Drop a partially written last record left by a crash
+    static synchronized void repairTornTail() throws IOException {
+        SalesPartitions.repairTornTails();
+    }
+    
+    // Get sales by date range, reading only the months the range covers
     public static List<DailySales> getSalesByDateRange(Date startDate, Date endDate) {
-        List<DailySales> allSales = getAllSales();
+        int fromDay = DateCodec.fromDate(startDate);
+        int toDay = DateCodec.fromDate(endDate);
+        List<DailySales> allSales = readSales(SalesPartitions.overlapping(fromDay, toDay), fromDay, toDay);
         List<DailySales> filteredSales = new ArrayList<>();
         
         for (DailySales sales : allSales) {
@@ -222,41 +326,39 @@ public class DailySales {
     
     // Get sales by specific date
     public static List<DailySales> getSalesByDate(Date date) {
-        List<DailySales> allSales = getAllSales();
-        List<DailySales> filteredSales = new ArrayList<>();
-        
-        // Convert date to string for comparison without time component
-        String dateStr = DATE_FORMAT.format(date);
-        
-        for (DailySales sales : allSales) {
-            String salesDateStr = DATE_FORMAT.format(sales.getSalesDate());
-            if (salesDateStr.equals(dateStr)) {
-                filteredSales.add(sales);
-            }
-        }
-        
-        return filteredSales;
+        // Compare calendar days without time component
+        int day = DateCodec.fromDate(date);
+        return readSales(SalesPartitions.overlapping(day, day), day, day);
     }
     
-    // Get sales by item
+    // Get sales by item, creating records only for the matching lines
     public static List<DailySales> getSalesByItem(String itemCode) {
-        List<DailySales> allSales = getAllSales();
         List<DailySales> filteredSales = new ArrayList<>();
-        
-        for (DailySales sales : allSales) {
-            if (sales.getItemCode().equals(itemCode)) {
-                filteredSales.add(sales);
+        scanSales(null, null, record -> {
+            if (record.fieldEquals(COLUMN_ITEM_CODE, itemCode)) {
+                try {
+                    filteredSales.add(new DailySales(
+                        record.getString(COLUMN_SALES_ID),
+                        DateCodec.toDate(record.getEpochDay(COLUMN_DATE)),
+                        itemCode,
+                        record.getInt(COLUMN_QUANTITY),
+                        record.getDouble(COLUMN_UNIT_PRICE),
+                        record.getDouble(COLUMN_SALES_AMOUNT),
+                        record.getString(COLUMN_RECORDED_BY)
+                    ));
+                } catch (IllegalArgumentException e) {
+                    e.printStackTrace();
+                }
             }
-        }
-        
+        });
         return filteredSales;
     }
     
     // Format sales data for file storage
-    private String formatSalesData() {
+    String formatSalesData() {
         return String.format("%s,%s,%s,%d,%.2f,%.2f,%s",
             salesId,
-            DATE_FORMAT.format(salesDate),
+            DateCodec.format(salesDate),
             itemCode,
             quantity,
             unitPrice,
@@ -267,47 +369,37 @@ public class DailySales {
     
     // Generate new sales ID
     public static String generateSalesId() {
-        List<DailySales> allSales = getAllSales();
-        
-        if (allSales.isEmpty()) {
-            return "S001";
-        }
-        
-        int maxId = 0;
-        for (DailySales sales : allSales) {
-            try {
-                int id = Integer.parseInt(sales.getSalesId().substring(1));
-                if (id > maxId) {
-                    maxId = id;
-                }
-            } catch (NumberFormatException e) {
-                // Skip invalid sales IDs
+        long id = IdAllocator.next("SALES", () -> {
+            List<String> ids = new ArrayList<>();
+            for (DailySales sales : getAllSales()) {
+                ids.add(sales.getSalesId());
             }
-        }
-        
-        return String.format("S%03d", maxId + 1);
+            return IdAllocator.maxSuffix(ids, "S");
+        });
+        return String.format("S%03d", id);
     }
     
     // Delete sales record
     public static boolean deleteSales(String salesId) {
-        List<DailySales> salesList = getAllSales();
+        // Make sure a journal replay can never bring the deleted record back
+        TransactionJournal.checkpoint();
+        
         boolean found = false;
         
         try {
-            try (PrintWriter out = new PrintWriter(new FileWriter(FILE_PATH))) {
-                for (DailySales sales : salesList) {
-                    if (!sales.getSalesId().equals(salesId)) {
-                        String dateStr = DATE_FORMAT.format(sales.getSalesDate());
-                        
-                        out.println(sales.getSalesId() + "," + dateStr + "," + 
-                                  sales.getItemCode() + "," + sales.getQuantity() + "," + 
-                                  sales.getUnitPrice() + "," + sales.getSalesAmount() + "," + 
-                                  sales.getRecordedBy());
-                    } else {
-                        found = true;
-                        // Restore item stock
-                        Item.updateStock(sales.getItemCode(), sales.getQuantity());
-                    }
+            for (File partition : SalesPartitions.all()) {
+                List<DailySales> removed = new ArrayList<>();
+                List<String> kept = linesWithout(partition, salesId, removed);
+                if (removed.isEmpty()) {
+                    continue;
+                }
+                
+                SalesRollups.rewrite(partition, kept, removed);
+                cacheFor(partition).invalidate();
+                found = true;
+                for (DailySales sales : removed) {
+                    // Restore item stock
+                    Item.updateStock(sales.getItemCode(), sales.getQuantity());
                 }
             }
             return found;
@@ -319,34 +411,32 @@ public class DailySales {
     
     // Update sales record
     public boolean updateSales(int oldQuantity) {
-        List<DailySales> salesList = getAllSales();
+        // Make sure a journal replay can never undo this update
+        TransactionJournal.checkpoint();
+        
         boolean found = false;
         
         try {
-            try (PrintWriter out = new PrintWriter(new FileWriter(FILE_PATH))) {
-                for (DailySales sales : salesList) {
-                    if (!sales.getSalesId().equals(this.salesId)) {
-                        String dateStr = DATE_FORMAT.format(sales.getSalesDate());
-                        
-                        out.println(sales.getSalesId() + "," + dateStr + "," + 
-                                  sales.getItemCode() + "," + sales.getQuantity() + "," + 
-                                  sales.getUnitPrice() + "," + sales.getSalesAmount() + "," + 
-                                  sales.getRecordedBy());
-                    } else {
-                        String dateStr = DATE_FORMAT.format(this.salesDate);
-                        
-                        out.println(this.salesId + "," + dateStr + "," + 
-                                  this.itemCode + "," + this.quantity + "," + 
-                                  this.unitPrice + "," + this.salesAmount + "," + 
-                                  this.recordedBy);
-                        found = true;
-                        
-                        // Update item stock (adjust for quantity difference)
-                        int quantityDifference = oldQuantity - this.quantity;
-                        if (quantityDifference != 0) {
-                            Item.updateStock(this.itemCode, quantityDifference);
-                        }
-                    }
+            // Take the old record out of whichever month it was in
+            for (File partition : SalesPartitions.all()) {
+                List<DailySales> removed = new ArrayList<>();
+                List<String> kept = linesWithout(partition, this.salesId, removed);
+                if (!removed.isEmpty()) {
+                    SalesRollups.rewrite(partition, kept, removed);
+                    cacheFor(partition).invalidate();
+                    found = true;
+                }
+            }
+            
+            if (found) {
+                // Store the new version in the month of its (possibly changed) date
+                SalesRollups.append(Collections.singletonList(this));
+                SalesPartitions.force();
+                
+                // Update item stock (adjust for quantity difference)
+                int quantityDifference = oldQuantity - this.quantity;
+                if (quantityDifference != 0) {
+                    Item.updateStock(this.itemCode, quantityDifference);
                 }
             }
             return found;
@@ -356,6 +446,24 @@ public class DailySales {
         }
     }
     
+    // Lines of a partition except the records with the given id, which are parsed into removed
+    private static List<String> linesWithout(File partition, String salesId, List<DailySales> removed)
+            throws IOException {
+        List<String> kept = new ArrayList<>();
+        try (RecordReader reader = new RecordReader(partition)) {
+            while (reader.next()) {
+                DailySales sales = reader.fieldCount() >= 7 && reader.fieldEquals(0, salesId)
+                    ? parseSales(reader) : null;
+                if (sales != null) {
+                    removed.add(sales);
+                } else {
+                    kept.add(reader.line());
+                }
+            }
+        }
+        return kept;
+    }
+    
     // Alias methods for quantity
     public int getSalesQuantity() {
         return quantity;
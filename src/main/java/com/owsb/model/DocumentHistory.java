@@ -9,6 +9,9 @@ import java.text.SimpleDateFormat;
  * Used for audit trail and tracking changes.
  */
 public class DocumentHistory implements Serializable {
+    // Kept equal to the value of the original class so legacy .dat files still deserialize
+    private static final long serialVersionUID = 7824267284733636079L;
+
     private String historyId;
     private String documentId; // PR ID or PO ID
     private String documentType; // PR or PO
@@ -21,7 +24,6 @@ public class DocumentHistory implements Serializable {
     private Date timestamp;
     private Map<String, Object> changedFields; // Field name -> new value
 
-    private static final String DATA_FILE = "data/document_history.dat";
     private static final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
 
     public DocumentHistory(String documentId, String documentType, String userId, 
@@ -47,27 +49,42 @@ public class DocumentHistory implements Serializable {
         }
     }
 
+    // Used when reading entries back from the history log
+    private DocumentHistory() {
+    }
+
+    // Rebuild an entry exactly as it was stored, without looking up the user again
+    static DocumentHistory restore(String historyId, String documentId, String documentType,
+                                   String userId, String userName, String action,
+                                   String statusBefore, String statusAfter, String comments,
+                                   Date timestamp, Map<String, Object> changedFields) {
+        DocumentHistory entry = new DocumentHistory();
+        entry.historyId = historyId;
+        entry.documentId = documentId;
+        entry.documentType = documentType;
+        entry.userId = userId;
+        entry.userName = userName;
+        entry.action = action;
+        entry.statusBefore = statusBefore;
+        entry.statusAfter = statusAfter;
+        entry.comments = comments;
+        entry.timestamp = timestamp;
+        entry.changedFields = changedFields;
+        return entry;
+    }
+
     private String generateHistoryId() {
         return "H" + System.currentTimeMillis();
     }
 
-    // Save history entry to data file
+    // Save history entry by appending it to the history log
     public boolean saveHistory() {
-        List<DocumentHistory> historyEntries = getAllHistoryEntries();
-        historyEntries.add(this);
-        return saveAllHistoryEntries(historyEntries);
+        return DocumentHistoryLog.append(this);
     }
 
     // Get all history entries for a specific document
     public static List<DocumentHistory> getHistoryForDocument(String documentId) {
-        List<DocumentHistory> allHistory = getAllHistoryEntries();
-        List<DocumentHistory> documentHistory = new ArrayList<>();
-        
-        for (DocumentHistory entry : allHistory) {
-            if (entry.getDocumentId().equals(documentId)) {
-                documentHistory.add(entry);
-            }
-        }
+        List<DocumentHistory> documentHistory = DocumentHistoryLog.findByDocument(documentId);
         
         // Sort by timestamp (newest first)
         documentHistory.sort(Comparator.comparing(DocumentHistory::getTimestamp).reversed());
@@ -180,44 +197,7 @@ public class DocumentHistory implements Serializable {
 
     // Get all history entries
     public static List<DocumentHistory> getAllHistoryEntries() {
-        List<DocumentHistory> historyEntries = new ArrayList<>();
-        
-        // Create data directory if it doesn't exist
-        File directory = new File("data");
-        if (!directory.exists()) {
-            directory.mkdir();
-        }
-        
-        // Check if data file exists
-        File file = new File(DATA_FILE);
-        if (!file.exists()) {
-            return historyEntries;
-        }
-        
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
-            historyEntries = (List<DocumentHistory>) ois.readObject();
-        } catch (IOException | ClassNotFoundException e) {
-            System.out.println("Error loading document history: " + e.getMessage());
-        }
-        
-        return historyEntries;
-    }
-
-    // Save all history entries
-    private static boolean saveAllHistoryEntries(List<DocumentHistory> historyEntries) {
-        // Create data directory if it doesn't exist
-        File directory = new File("data");
-        if (!directory.exists()) {
-            directory.mkdir();
-        }
-        
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(DATA_FILE))) {
-            oos.writeObject(historyEntries);
-            return true;
-        } catch (IOException e) {
-            System.out.println("Error saving document history: " + e.getMessage());
-            return false;
-        }
+        return DocumentHistoryLog.findAll();
     }
 
     // Get latest history entry for a document
@@ -231,14 +211,7 @@ public class DocumentHistory implements Serializable {
 
     // Get all history entries for a specific user
     public static List<DocumentHistory> getHistoryForUser(String userId) {
-        List<DocumentHistory> allHistory = getAllHistoryEntries();
-        List<DocumentHistory> userHistory = new ArrayList<>();
-        
-        for (DocumentHistory entry : allHistory) {
-            if (entry.getUserId().equals(userId)) {
-                userHistory.add(entry);
-            }
-        }
+        List<DocumentHistory> userHistory = DocumentHistoryLog.findByUser(userId);
         
         // Sort by timestamp (newest first)
         userHistory.sort(Comparator.comparing(DocumentHistory::getTimestamp).reversed());
@@ -0,0 +1,432 @@
+package com.owsb.model;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Append-only storage for {@link DocumentHistory} entries.
+ * Each entry is written to data/document_history.log as a 4-byte length
+ * followed by a compact binary record, so saving an entry is a single
+ * append. Strings are stored as length-prefixed UTF-8 of any length.
+ * Per-document and per-user offset indexes are rebuilt from the log the
+ * first time it is used, and lookups read only the matching records.
+ * A legacy document_history.dat file is migrated into the log on first use;
+ * one that cannot be read is moved aside to .corrupt.
+ */
+final class DocumentHistoryLog {
+    private static final String LOG_FILE = "data/document_history.log";
+    private static final String LEGACY_FILE = "data/document_history.dat";
+
+    // Field value tags used when encoding changedFields
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_INT = 2;
+    private static final byte TAG_LONG = 3;
+    private static final byte TAG_DOUBLE = 4;
+    private static final byte TAG_BOOLEAN = 5;
+    private static final byte TAG_LIST = 6;
+    private static final byte TAG_TEXT = 7;
+
+    // Markers written before each string: absent or length-prefixed UTF-8
+    private static final byte STRING_NULL = 0;
+    private static final byte STRING_BYTES = 2;
+
+    private static Map<String, List<Long>> offsetsByDocument = null;
+    private static Map<String, List<Long>> offsetsByUser = null;
+    private static long logLength = 0;
+
+    private DocumentHistoryLog() {
+    }
+
+    // Append one entry to the log and index it
+    static synchronized boolean append(DocumentHistory entry) {
+        try {
+            ensureIndexed();
+            byte[] record = encode(entry);
+            appendRecords(Collections.singletonList(record));
+            index(offsetsByDocument, offsetsByUser, entry.getDocumentId(), entry.getUserId(), logLength);
+            logLength += 4 + record.length;
+            return true;
+        } catch (IOException e) {
+            System.out.println("Error saving document history: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Read the entries of one document
+    static synchronized List<DocumentHistory> findByDocument(String documentId) {
+        try {
+            ensureIndexed();
+            return readAt(offsetsByDocument.getOrDefault(documentId, Collections.emptyList()));
+        } catch (IOException e) {
+            System.out.println("Error loading document history: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    // Read the entries recorded by one user
+    static synchronized List<DocumentHistory> findByUser(String userId) {
+        try {
+            ensureIndexed();
+            return readAt(offsetsByUser.getOrDefault(userId, Collections.emptyList()));
+        } catch (IOException e) {
+            System.out.println("Error loading document history: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    // Read every entry in log order
+    static synchronized List<DocumentHistory> findAll() {
+        List<DocumentHistory> entries = new ArrayList<>();
+        try {
+            ensureIndexed();
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(LOG_FILE)))) {
+                long position = 0;
+                while (position < logLength) {
+                    int length = in.readInt();
+                    byte[] record = new byte[length];
+                    in.readFully(record);
+                    entries.add(decode(record));
+                    position += 4 + length;
+                }
+            }
+        } catch (FileNotFoundException e) {
+            // No history has been written yet
+        } catch (IOException e) {
+            System.out.println("Error loading document history: " + e.getMessage());
+        }
+        return entries;
+    }
+
+    // Build the offset indexes on first use, migrating the legacy file if present
+    private static void ensureIndexed() throws IOException {
+        if (offsetsByDocument != null) {
+            return;
+        }
+
+        // Create data directory if it doesn't exist
+        File directory = new File("data");
+        if (!directory.exists()) {
+            directory.mkdir();
+        }
+
+        // The indexes only take effect once the whole log has been read
+        Map<String, List<Long>> byDocument = new HashMap<>();
+        Map<String, List<Long>> byUser = new HashMap<>();
+        long length = scanLog(byDocument, byUser);
+        length = migrateLegacyFile(byDocument, byUser, length);
+
+        offsetsByDocument = byDocument;
+        offsetsByUser = byUser;
+        logLength = length;
+    }
+
+    // Walk the record headers and index them; a torn record at the tail is cut off
+    private static long scanLog(Map<String, List<Long>> byDocument, Map<String, List<Long>> byUser)
+            throws IOException {
+        File file = new File(LOG_FILE);
+        if (!file.exists()) {
+            return 0;
+        }
+
+        long fileLength = file.length();
+        long position = 0;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            while (position + 4 <= fileLength) {
+                int length = in.readInt();
+                if (length < 0 || position + 4 + length > fileLength) {
+                    break;
+                }
+                byte[] record = new byte[length];
+                in.readFully(record);
+
+                DataInputStream fields = new DataInputStream(new ByteArrayInputStream(record));
+                readString(fields); // historyId
+                String documentId = readString(fields);
+                readString(fields); // documentType
+                String userId = readString(fields);
+                index(byDocument, byUser, documentId, userId, position);
+
+                position += 4 + length;
+            }
+        }
+
+        if (position < fileLength) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(position);
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Copy entries from the old serialized list into the log, then retire the
+     * old file. The log with the entries added is written to a temp file and
+     * moved into place, so they arrive all at once. If the old file is still
+     * there afterwards (a crash before it was renamed), the log already ends
+     * with exactly these records and they are not added again.
+     */
+    @SuppressWarnings("unchecked")
+    private static long migrateLegacyFile(Map<String, List<Long>> byDocument, Map<String, List<Long>> byUser,
+                                          long length) throws IOException {
+        File legacy = new File(LEGACY_FILE);
+        if (!legacy.exists()) {
+            return length;
+        }
+
+        List<DocumentHistory> legacyEntries;
+        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(legacy))) {
+            legacyEntries = (List<DocumentHistory>) ois.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            // A bad legacy file counts as no history, as it did before the log
+            System.out.println("Unreadable legacy history file, moved aside: " + e.getMessage());
+            legacy.renameTo(new File(LEGACY_FILE + ".corrupt"));
+            return length;
+        }
+
+        List<byte[]> records = new ArrayList<>();
+        for (DocumentHistory entry : legacyEntries) {
+            records.add(encode(entry));
+        }
+        byte[] block = frame(records);
+
+        if (!logEndsWith(block, length)) {
+            Path log = Paths.get(LOG_FILE);
+            Path temp = Paths.get(LOG_FILE + ".tmp");
+            try (FileOutputStream fos = new FileOutputStream(temp.toFile())) {
+                if (Files.exists(log)) {
+                    Files.copy(log, fos);
+                }
+                fos.write(block);
+                fos.getFD().sync();
+            }
+            try {
+                Files.move(temp, log, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, log, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            for (int i = 0; i < legacyEntries.size(); i++) {
+                DocumentHistory entry = legacyEntries.get(i);
+                index(byDocument, byUser, entry.getDocumentId(), entry.getUserId(), length);
+                length += 4 + records.get(i).length;
+            }
+        }
+
+        legacy.renameTo(new File(LEGACY_FILE + ".migrated"));
+        return length;
+    }
+
+    // Whether the first length bytes of the log end with the given bytes
+    private static boolean logEndsWith(byte[] bytes, long length) throws IOException {
+        if (bytes.length == 0 || length < bytes.length) {
+            return false;
+        }
+        byte[] tail = new byte[bytes.length];
+        try (RandomAccessFile raf = new RandomAccessFile(LOG_FILE, "r")) {
+            raf.seek(length - bytes.length);
+            raf.readFully(tail);
+        }
+        return Arrays.equals(tail, bytes);
+    }
+
+    private static void index(Map<String, List<Long>> byDocument, Map<String, List<Long>> byUser,
+                              String documentId, String userId, long offset) {
+        byDocument.computeIfAbsent(documentId, k -> new ArrayList<>()).add(offset);
+        byUser.computeIfAbsent(userId, k -> new ArrayList<>()).add(offset);
+    }
+
+    // Write length-prefixed records with one append
+    private static void appendRecords(List<byte[]> records) throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(LOG_FILE, true)) {
+            fos.write(frame(records));
+        }
+    }
+
+    // Records as they are stored in the log, each preceded by its length
+    private static byte[] frame(List<byte[]> records) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        for (byte[] record : records) {
+            out.writeInt(record.length);
+            out.write(record);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static List<DocumentHistory> readAt(List<Long> offsets) throws IOException {
+        List<DocumentHistory> entries = new ArrayList<>(offsets.size());
+        if (offsets.isEmpty()) {
+            return entries;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(LOG_FILE, "r")) {
+            for (long offset : offsets) {
+                raf.seek(offset);
+                byte[] record = new byte[raf.readInt()];
+                raf.readFully(record);
+                entries.add(decode(record));
+            }
+        }
+        return entries;
+    }
+
+    private static byte[] encode(DocumentHistory entry) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(buffer);
+        writeString(out, entry.getHistoryId());
+        writeString(out, entry.getDocumentId());
+        writeString(out, entry.getDocumentType());
+        writeString(out, entry.getUserId());
+        writeString(out, entry.getUserName());
+        writeString(out, entry.getAction());
+        writeString(out, entry.getStatusBefore());
+        writeString(out, entry.getStatusAfter());
+        writeString(out, entry.getComments());
+        out.writeLong(entry.getTimestamp() != null ? entry.getTimestamp().getTime() : 0L);
+
+        Map<String, Object> changedFields = entry.getChangedFields();
+        if (changedFields == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(changedFields.size());
+            for (Map.Entry<String, Object> field : changedFields.entrySet()) {
+                writeString(out, field.getKey());
+                writeValue(out, field.getValue());
+            }
+        }
+        return buffer.toByteArray();
+    }
+
+    private static DocumentHistory decode(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        String historyId = readString(in);
+        String documentId = readString(in);
+        String documentType = readString(in);
+        String userId = readString(in);
+        String userName = readString(in);
+        String action = readString(in);
+        String statusBefore = readString(in);
+        String statusAfter = readString(in);
+        String comments = readString(in);
+        Date timestamp = new Date(in.readLong());
+
+        Map<String, Object> changedFields = null;
+        int fieldCount = in.readInt();
+        if (fieldCount >= 0) {
+            changedFields = new HashMap<>();
+            for (int i = 0; i < fieldCount; i++) {
+                String key = readString(in);
+                changedFields.put(key, readValue(in));
+            }
+        }
+
+        return DocumentHistory.restore(historyId, documentId, documentType, userId, userName,
+                                       action, statusBefore, statusAfter, comments,
+                                       timestamp, changedFields);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeByte(STRING_NULL);
+        } else {
+            out.writeByte(STRING_BYTES);
+            writeText(out, value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte marker = in.readByte();
+        switch (marker) {
+            case STRING_NULL:
+                return null;
+            case STRING_BYTES:
+                return readText(in);
+            default:
+                throw new IOException("Unknown string marker " + marker);
+        }
+    }
+
+    // UTF-8 bytes after their count, so text of any length fits
+    private static void writeText(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readText(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TAG_NULL);
+        } else if (value instanceof Integer) {
+            out.writeByte(TAG_INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(TAG_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Number) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            out.writeByte(TAG_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Collection) {
+            Collection<?> values = (Collection<?>) value;
+            out.writeByte(TAG_LIST);
+            out.writeInt(values.size());
+            for (Object element : values) {
+                writeValue(out, element);
+            }
+        } else {
+            out.writeByte(TAG_TEXT);
+            writeText(out, describe(value));
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_INT:
+                return in.readInt();
+            case TAG_LONG:
+                return in.readLong();
+            case TAG_DOUBLE:
+                return in.readDouble();
+            case TAG_BOOLEAN:
+                return in.readBoolean();
+            case TAG_LIST:
+                int size = in.readInt();
+                List<Object> values = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    values.add(readValue(in));
+                }
+                return values;
+            case TAG_TEXT:
+                return readText(in);
+            default:
+                throw new IOException("Unknown field tag " + tag);
+        }
+    }
+
+    // Store document line items as readable summaries rather than object dumps
+    private static String describe(Object value) {
+        if (value instanceof PurchaseRequisition.PurchaseRequisitionItem) {
+            PurchaseRequisition.PurchaseRequisitionItem item = (PurchaseRequisition.PurchaseRequisitionItem) value;
+            return item.getItemCode() + " x" + item.getQuantity();
+        }
+        if (value instanceof PurchaseOrder.PurchaseOrderItem) {
+            PurchaseOrder.PurchaseOrderItem item = (PurchaseOrder.PurchaseOrderItem) value;
+            return item.getItemCode() + " x" + item.getQuantity() + " @ " + item.getUnitPrice();
+        }
+        return String.valueOf(value);
+    }
+}
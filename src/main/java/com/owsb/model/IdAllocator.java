@@ -0,0 +1,173 @@
+package com.owsb.model;
+
+import com.owsb.io.RecordReader;
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.LongSupplier;
+
+/**
+ * Hands out monotonically increasing numbers for the id sequences used by
+ * the model classes (items, suppliers, sales, POs, ...).
+ * The highest number reserved for each sequence is persisted in
+ * data/id_sequences.txt. Numbers are reserved in blocks (which grow while a
+ * sequence is being drained quickly, e.g. during an import): the new high-water
+ * mark is written to disk before any number from the block is handed out,
+ * so a crash can only leave a gap, never reuse an id. Reservation holds a
+ * file lock, so separate processes get disjoint blocks, and the class is
+ * synchronized for windows inside the same application. On a normal
+ * shutdown the unused part of each block is handed back, so gaps only
+ * appear after a crash.
+ */
+final class IdAllocator {
+    private static final String FILE_PATH = "data/id_sequences.txt";
+    private static final String LOCK_PATH = "data/id_sequences.lock";
+    private static final int BLOCK_SIZE = 20;
+    private static final int MAX_BLOCK_SIZE = 4096;
+    private static final long FAST_REFILL_MILLIS = 1000;
+
+    // Sequence name -> {next number to hand out, last number reserved, block size, reserved at}
+    private static final Map<String, long[]> blocks = new HashMap<>();
+    private static boolean shutdownHookRegistered = false;
+
+    private IdAllocator() {
+    }
+
+    /**
+     * Get the next number of a sequence. The seed is only consulted the
+     * first time a sequence is seen, to continue after ids already in the data files.
+     */
+    static synchronized long next(String sequence, LongSupplier seed) {
+        long[] block = blocks.get(sequence);
+        if (block == null || block[0] > block[1]) {
+            // Double the block size while the previous block ran out quickly
+            long size = BLOCK_SIZE;
+            if (block != null && System.currentTimeMillis() - block[3] < FAST_REFILL_MILLIS) {
+                size = Math.min(block[2] * 2, MAX_BLOCK_SIZE);
+            }
+            block = reserveBlock(sequence, seed, size);
+            blocks.put(sequence, block);
+            if (!shutdownHookRegistered) {
+                Runtime.getRuntime().addShutdownHook(new Thread(IdAllocator::releaseUnusedBlocks));
+                shutdownHookRegistered = true;
+            }
+        }
+        return block[0]++;
+    }
+
+    // Highest numeric suffix among ids starting with the given prefix, or 0
+    static long maxSuffix(Iterable<String> ids, String prefix) {
+        long max = 0;
+        for (String id : ids) {
+            if (id == null || !id.startsWith(prefix)) {
+                continue;
+            }
+            try {
+                max = Math.max(max, Long.parseLong(id.substring(prefix.length())));
+            } catch (NumberFormatException e) {
+                // Skip ids that do not follow the format
+            }
+        }
+        return max;
+    }
+
+    // Persist a new high-water mark for the sequence under a file lock
+    private static long[] reserveBlock(String sequence, LongSupplier seed, long size) {
+        File directory = new File("data");
+        if (!directory.exists()) {
+            directory.mkdir();
+        }
+
+        try (FileChannel lockChannel = FileChannel.open(Paths.get(LOCK_PATH),
+                 StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock = lockChannel.lock();
+            try {
+                Map<String, Long> highWaterMarks = readHighWaterMarks();
+                Long persisted = highWaterMarks.get(sequence);
+                long reserved = persisted != null ? persisted : seed.getAsLong();
+
+                long first = reserved + 1;
+                long last = reserved + size;
+                highWaterMarks.put(sequence, last);
+                writeHighWaterMarks(highWaterMarks);
+
+                return new long[] {first, last, size, System.currentTimeMillis()};
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to reserve ids for " + sequence, e);
+        }
+    }
+
+    // Lower each high-water mark back to the last id handed out, unless another process reserved past it
+    private static synchronized void releaseUnusedBlocks() {
+        try (FileChannel lockChannel = FileChannel.open(Paths.get(LOCK_PATH),
+                 StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock = lockChannel.lock();
+            try {
+                Map<String, Long> highWaterMarks = readHighWaterMarks();
+                boolean changed = false;
+                for (Map.Entry<String, long[]> entry : blocks.entrySet()) {
+                    long[] block = entry.getValue();
+                    Long persisted = highWaterMarks.get(entry.getKey());
+                    if (persisted != null && persisted == block[1] && block[0] <= block[1]) {
+                        highWaterMarks.put(entry.getKey(), block[0] - 1);
+                        changed = true;
+                    }
+                }
+                if (changed) {
+                    writeHighWaterMarks(highWaterMarks);
+                }
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            // Keeping the reservation only leaves a gap in the numbering
+        }
+    }
+
+    private static Map<String, Long> readHighWaterMarks() throws IOException {
+        Map<String, Long> highWaterMarks = new TreeMap<>();
+        File file = new File(FILE_PATH);
+        if (!file.exists()) {
+            return highWaterMarks;
+        }
+
+        try (RecordReader reader = new RecordReader(file)) {
+            while (reader.next()) {
+                if (reader.fieldCount() == 2) {
+                    try {
+                        highWaterMarks.put(reader.getString(0), reader.getLong(1));
+                    } catch (NumberFormatException e) {
+                        // Skip malformed lines
+                    }
+                }
+            }
+        }
+        return highWaterMarks;
+    }
+
+    // Write to a temp file, force it to disk and atomically replace the old file
+    private static void writeHighWaterMarks(Map<String, Long> highWaterMarks) throws IOException {
+        Path target = Paths.get(FILE_PATH);
+        Path temp = Paths.get(FILE_PATH + ".tmp");
+
+        try (FileOutputStream fos = new FileOutputStream(temp.toFile());
+             PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(fos)))) {
+            for (Map.Entry<String, Long> entry : highWaterMarks.entrySet()) {
+                out.println(entry.getKey() + "," + entry.getValue());
+            }
+            out.flush();
+            fos.getFD().sync();
+        }
+
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
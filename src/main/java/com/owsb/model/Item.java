@@ -1,7 +1,10 @@
 package com.owsb.model;
 
+import com.owsb.io.RecordReader;
 import java.io.*;
+import java.nio.file.*;
 import java.util.*;
+import java.util.function.Predicate;
 
 public class Item {
     private String itemCode;
@@ -13,7 +16,7 @@ public class Item {
     private int reorderLevel;
     private String supplierId;
     
-    private static final String FILE_PATH = "data/items.txt";
+    static final String FILE_PATH = "data/items.txt";
     
     public Item(String itemCode, String itemName, String description, String category, 
                 double unitPrice, int currentStock, int reorderLevel, String supplierId) {
@@ -27,6 +30,12 @@ public class Item {
         this.supplierId = supplierId;
     }
     
+    // Create an independent copy of this item
+    Item copy() {
+        return new Item(itemCode, itemName, description, category,
+                        unitPrice, currentStock, reorderLevel, supplierId);
+    }
+    
     // Getters and setters
     public String getItemCode() {
         return itemCode;
@@ -109,25 +118,14 @@ public class Item {
     
     // Generate a new item code
     public static String generateItemCode() {
-        List<Item> items = getAllItems();
-        
-        if (items.isEmpty()) {
-            return "I001";
-        }
-        
-        int maxId = 0;
-        for (Item item : items) {
-            try {
-                int itemId = Integer.parseInt(item.getItemCode().substring(1));
-                if (itemId > maxId) {
-                    maxId = itemId;
-                }
-            } catch (NumberFormatException e) {
-                // Skip invalid item codes
+        long id = IdAllocator.next("ITEM", () -> {
+            List<String> codes = new ArrayList<>();
+            for (Item item : getAllItems()) {
+                codes.add(item.getItemCode());
             }
-        }
-        
-        return String.format("I%03d", maxId + 1);
+            return IdAllocator.maxSuffix(codes, "I");
+        });
+        return String.format("I%03d", id);
     }
     
     // Save item to file
@@ -146,11 +144,8 @@ public class Item {
             }
             
             // Check if item already exists
-            List<Item> existingItems = getAllItems();
-            for (Item item : existingItems) {
-                if (item.getItemCode().equals(this.itemCode)) {
-                    return false; // Item already exists
-                }
+            if (ItemRepository.contains(this.itemCode)) {
+                return false; // Item already exists
             }
             
             // Append item to file
@@ -159,6 +154,8 @@ public class Item {
                  PrintWriter out = new PrintWriter(bw)) {
                 out.println(formatItemData());
             }
+            ItemRepository.invalidate();
+            SearchIndex.itemSaved(this);
             
             return true;
         } catch (IOException e) {
@@ -169,95 +166,121 @@ public class Item {
     
     // Update existing item
     public boolean updateItem() {
-        List<Item> items = getAllItems();
-        boolean found = false;
+        // Make sure a journal replay can never undo this update
+        TransactionJournal.checkpoint();
         
-        try {
-            // Create temporary file
-            File tempFile = new File("data/items_temp.txt");
+        boolean updated = changeCatalog(items -> {
+            boolean found = false;
             
-            // Write all items to temp file, replacing the one to update
-            try (FileWriter fw = new FileWriter(tempFile);
-                 BufferedWriter bw = new BufferedWriter(fw);
-                 PrintWriter out = new PrintWriter(bw)) {
-                
-                for (Item item : items) {
-                    if (item.getItemCode().equals(this.itemCode)) {
-                        // Write updated item
-                        out.println(formatItemData());
-                        found = true;
-                    } else {
-                        // Write existing item
-                        out.println(item.formatItemData());
-                    }
+            // Replace the item to update
+            for (int i = 0; i < items.size(); i++) {
+                if (items.get(i).getItemCode().equals(this.itemCode)) {
+                    items.set(i, this);
+                    found = true;
                 }
             }
-            
-            if (!found) {
-                // Item not found
-                tempFile.delete();
-                return false;
-            }
-            
-            // Replace original file with temp file
-            File originalFile = new File(FILE_PATH);
-            if (originalFile.exists()) {
-                originalFile.delete();
-            }
-            
-            return tempFile.renameTo(originalFile);
-            
-        } catch (IOException e) {
-            e.printStackTrace();
+            return found;
+        }, null);
+        
+        if (!updated) {
+            // Item not found, or the catalog could not be written
             return false;
         }
+        SearchIndex.itemSaved(this);
+        return true;
     }
     
     // Delete item
     public static boolean deleteItem(String itemCode) {
+        // Make sure a journal replay can never undo this delete
+        TransactionJournal.checkpoint();
+        
+        // Keep all items except the one to delete
+        boolean deleted = changeCatalog(items -> items.removeIf(item -> item.getItemCode().equals(itemCode)), null);
+        
+        if (!deleted) {
+            // Item not found, or the catalog could not be written
+            return false;
+        }
+        SearchIndex.removed(SearchIndex.Type.ITEM, itemCode);
+        return true;
+    }
+    
+    // Set absolute stock levels for several items and write the catalog once
+    static boolean applyStockLevels(Map<String, Integer> stockLevels) {
+        return changeCatalog(items -> {
+            for (Item item : items) {
+                Integer level = stockLevels.get(item.getItemCode());
+                if (level != null) {
+                    item.setCurrentStock(level);
+                }
+            }
+            return true;
+        }, stockLevels);
+    }
+    
+    /**
+     * Read the catalog, apply change and write it back, all while holding
+     * the catalog lock, so no other change can land in between and be
+     * overwritten. Nothing is written when change returns false. Pass
+     * stockLevels when only those stock levels changed.
+     */
+    private static synchronized boolean changeCatalog(Predicate<List<Item>> change, Map<String, Integer> stockLevels) {
         List<Item> items = getAllItems();
-        boolean found = false;
+        if (!change.test(items)) {
+            return false;
+        }
+        return writeCatalog(items, stockLevels);
+    }
+    
+    // Write the whole catalog to a temp file, force it to disk and swap it in atomically;
+    // when only stockLevels changed, the cached catalog is updated instead of re-read
+    private static synchronized boolean writeCatalog(List<Item> items, Map<String, Integer> stockLevels) {
+        File dataDir = new File("data");
+        if (!dataDir.exists()) {
+            dataDir.mkdir();
+        }
         
+        File tempFile = new File("data/items_temp.txt");
         try {
-            // Create temporary file
-            File tempFile = new File("data/items_temp.txt");
-            
-            // Write all items except the one to delete
-            try (FileWriter fw = new FileWriter(tempFile);
-                 BufferedWriter bw = new BufferedWriter(fw);
-                 PrintWriter out = new PrintWriter(bw)) {
-                
+            try (FileOutputStream fos = new FileOutputStream(tempFile);
+                 PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(fos)))) {
                 for (Item item : items) {
-                    if (!item.getItemCode().equals(itemCode)) {
-                        out.println(item.formatItemData());
-                    } else {
-                        found = true;
-                    }
+                    out.println(item.formatItemData());
                 }
-            }
-            
-            if (!found) {
-                // Item not found
-                tempFile.delete();
-                return false;
+                out.flush();
+                fos.getFD().sync();
             }
             
             // Replace original file with temp file
-            File originalFile = new File(FILE_PATH);
-            if (originalFile.exists()) {
-                originalFile.delete();
+            Path target = Paths.get(FILE_PATH);
+            try {
+                Files.move(tempFile.toPath(), target, StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), target, StandardCopyOption.REPLACE_EXISTING);
             }
-            
-            return tempFile.renameTo(originalFile);
-            
+            if (stockLevels != null) {
+                ItemRepository.updateStockLevels(stockLevels);
+            } else {
+                ItemRepository.invalidate();
+            }
+            return true;
         } catch (IOException e) {
             e.printStackTrace();
+            tempFile.delete();
+            ItemRepository.invalidate();
             return false;
         }
     }
     
-    // Get all items from file
+    // Get all items from the catalog
     public static List<Item> getAllItems() {
+        return ItemRepository.findAll();
+    }
+    
+    // Read and parse every item in the data file
+    static List<Item> readItemsFromFile() {
         List<Item> items = new ArrayList<>();
         
         File file = new File(FILE_PATH);
@@ -265,20 +288,18 @@ public class Item {
             return items;
         }
         
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] data = line.split(",");
-                if (data.length >= 8) {
+        try (RecordReader reader = new RecordReader(file)) {
+            while (reader.next()) {
+                if (reader.fieldCount() >= 8) {
                     Item item = new Item(
-                        data[0],
-                        data[1],
-                        data[2],
-                        data[3],
-                        Double.parseDouble(data[4]),
-                        Integer.parseInt(data[5]),
-                        Integer.parseInt(data[6]),
-                        data[7]
+                        reader.getString(0),
+                        reader.getString(1),
+                        reader.getString(2),
+                        reader.getString(3),
+                        reader.getDouble(4),
+                        reader.getInt(5),
+                        reader.getInt(6),
+                        reader.getString(7)
                     );
                     items.add(item);
                 }
@@ -292,41 +313,22 @@ public class Item {
     
     // Get item by code
     public static Item getItemByCode(String itemCode) {
-        List<Item> items = getAllItems();
-        for (Item item : items) {
-            if (item.getItemCode().equals(itemCode)) {
-                return item;
-            }
-        }
-        return null;
+        return ItemRepository.findByCode(itemCode);
     }
     
-    // Get items below reorder level
+    // Get items at or below their reorder level, most critical first
     public static List<Item> getItemsBelowReorderLevel() {
-        List<Item> items = getAllItems();
-        List<Item> belowReorderLevel = new ArrayList<>();
-        
-        for (Item item : items) {
-            if (item.getCurrentStock() <= item.getReorderLevel()) {
-                belowReorderLevel.add(item);
-            }
-        }
-        
-        return belowReorderLevel;
+        return ReorderEngine.getAtRiskItems();
     }
     
     // Get items by supplier
     public static List<Item> getItemsBySupplier(String supplierId) {
-        List<Item> items = getAllItems();
-        List<Item> supplierItems = new ArrayList<>();
-        
-        for (Item item : items) {
-            if (item.getSupplierId().equals(supplierId)) {
-                supplierItems.add(item);
-            }
-        }
-        
-        return supplierItems;
+        return ItemRepository.findBySupplier(supplierId);
+    }
+    
+    // Get items by category
+    public static List<Item> getItemsByCategory(String category) {
+        return ItemRepository.findByCategory(category);
     }
     
     // Format item data for file storage
@@ -338,20 +340,41 @@ public class Item {
     
     // Static method to update item stock
     public static boolean updateStock(String itemCode, int quantity) {
-        Item item = getItemByCode(itemCode);
-        if (item == null) {
-            return false;
-        }
-        
-        // Add quantity to current stock (positive to add, negative to subtract)
-        int newStock = item.getCurrentStock() + quantity;
-        if (newStock < 0) {
-            // Don't allow negative stock
-            return false;
+        return updateStocks(Collections.singletonMap(itemCode, quantity));
+    }
+    
+    // Update the stock of several items with a single catalog write (positive to add, negative to subtract)
+    public static boolean updateStocks(Map<String, Integer> quantities) {
+        return updateStocks(quantities, null, null);
+    }
+    
+    /**
+     * Update the stock of several items and, when a reason is given, record
+     * one stock adjustment per item. Every change is validated first (the
+     * item must exist and its stock may not go negative); if any fails,
+     * nothing is written. Otherwise the catalog is written once and the
+     * adjustments are appended in one batch.
+     */
+    public static boolean updateStocks(Map<String, Integer> quantities, String reason, String adjustedBy) {
+        UnitOfWork work = new UnitOfWork();
+        Date now = new Date();
+        for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+            int quantity = entry.getValue();
+            work.adjustStock(entry.getKey(), quantity);
+            if (reason != null && quantity != 0) {
+                // The id is allocated once the change has been validated
+                work.appendAdjustment(new StockAdjustment(
+                    null,
+                    entry.getKey(),
+                    now,
+                    quantity > 0 ? "ADD" : "SUBTRACT",
+                    Math.abs(quantity),
+                    reason,
+                    adjustedBy
+                ));
+            }
         }
-        
-        item.setCurrentStock(newStock);
-        return item.updateItem();
+        return work.commit();
     }
     
     @Override
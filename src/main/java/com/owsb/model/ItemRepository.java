@@ -0,0 +1,164 @@
+package com.owsb.model;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * In-memory index over the item catalog stored in data/items.txt.
+ * The file is parsed once and kept in hash indexes keyed by item code,
+ * supplier and category. It is only re-read when the file's size or
+ * modification time changes, or when a write through {@link Item} invalidates it;
+ * writes that only change stock levels update the cached items in place.
+ * Callers always receive copies so that editing an item never changes the cache.
+ * <p>
+ * Items are also kept ordered by stock relative to reorder level, so the most
+ * critical ones are listed without sorting the catalog, and the items at or
+ * below their reorder level are kept as a set of their own. Items that enter
+ * or leave that set are reported to the {@link ReorderEngine}.
+ */
+final class ItemRepository {
+    private static final File FILE = new File(Item.FILE_PATH);
+
+    private static Map<String, Item> itemsByCode = new LinkedHashMap<>();
+    private static Map<String, List<Item>> itemsBySupplier = new HashMap<>();
+    private static Map<String, List<Item>> itemsByCategory = new HashMap<>();
+    // The items at or below their reorder level, by current stock relative to reorder level, lowest first
+    private static TreeSet<Item> itemsBelowReorderLevel = new TreeSet<>(ItemRepository::compareStockRatio);
+
+    private static boolean loaded = false;
+    // False until the first load, which has nothing to compare against
+    private static boolean everLoaded = false;
+    private static long loadedLength = -1;
+    private static long loadedModified = -1;
+
+    private ItemRepository() {
+    }
+
+    // Get all items in file order
+    static synchronized List<Item> findAll() {
+        ensureFresh();
+        return copyOf(itemsByCode.values());
+    }
+
+    // Get item by code, or null if it does not exist
+    static synchronized Item findByCode(String itemCode) {
+        ensureFresh();
+        Item item = itemsByCode.get(itemCode);
+        return item != null ? item.copy() : null;
+    }
+
+    // Check whether an item code is already in the catalog
+    static synchronized boolean contains(String itemCode) {
+        ensureFresh();
+        return itemsByCode.containsKey(itemCode);
+    }
+
+    // Get items supplied by a supplier
+    static synchronized List<Item> findBySupplier(String supplierId) {
+        ensureFresh();
+        return copyOf(itemsBySupplier.getOrDefault(supplierId, Collections.emptyList()));
+    }
+
+    // Get items in a category
+    static synchronized List<Item> findByCategory(String category) {
+        ensureFresh();
+        return copyOf(itemsByCategory.getOrDefault(category, Collections.emptyList()));
+    }
+
+    // Get items at or below their reorder level, most critical first
+    static synchronized List<Item> findBelowReorderLevel() {
+        ensureFresh();
+        return copyOf(itemsBelowReorderLevel);
+    }
+
+    // Set new stock levels on the cached items after the catalog was rewritten with them
+    static synchronized void updateStockLevels(Map<String, Integer> stockLevels) {
+        if (!loaded) {
+            return;
+        }
+        List<ReorderEngine.Event> crossings = new ArrayList<>();
+        for (Map.Entry<String, Integer> level : stockLevels.entrySet()) {
+            Item item = itemsByCode.get(level.getKey());
+            if (item != null) {
+                int previousStock = item.getCurrentStock();
+                boolean wasAtRisk = ReorderEngine.isAtRisk(item);
+                // Take the item out while its sort key changes
+                itemsBelowReorderLevel.remove(item);
+                item.setCurrentStock(level.getValue());
+                if (ReorderEngine.isAtRisk(item)) {
+                    itemsBelowReorderLevel.add(item);
+                }
+                if (ReorderEngine.isAtRisk(item) != wasAtRisk) {
+                    crossings.add(new ReorderEngine.Event(item.copy(), previousStock));
+                }
+            }
+        }
+        loadedLength = FILE.exists() ? FILE.length() : -1;
+        loadedModified = FILE.exists() ? FILE.lastModified() : -1;
+        ReorderEngine.publish(crossings);
+    }
+
+    // Drop the cached catalog so the next lookup re-reads the file
+    static synchronized void invalidate() {
+        loaded = false;
+    }
+
+    // Reload the indexes if the file changed since it was last read
+    private static void ensureFresh() {
+        long length = FILE.exists() ? FILE.length() : -1;
+        long modified = FILE.exists() ? FILE.lastModified() : -1;
+        if (loaded && length == loadedLength && modified == loadedModified) {
+            return;
+        }
+
+        Map<String, Item> byCode = new LinkedHashMap<>();
+        Map<String, List<Item>> bySupplier = new HashMap<>();
+        Map<String, List<Item>> byCategory = new HashMap<>();
+        TreeSet<Item> belowReorderLevel = new TreeSet<>(ItemRepository::compareStockRatio);
+        List<ReorderEngine.Event> crossings = new ArrayList<>();
+
+        for (Item item : Item.readItemsFromFile()) {
+            byCode.putIfAbsent(item.getItemCode(), item);
+        }
+        for (Item item : byCode.values()) {
+            bySupplier.computeIfAbsent(item.getSupplierId(), k -> new ArrayList<>()).add(item);
+            byCategory.computeIfAbsent(item.getCategory(), k -> new ArrayList<>()).add(item);
+            if (ReorderEngine.isAtRisk(item)) {
+                belowReorderLevel.add(item);
+            }
+            // After an edit or an outside change, report items whose side of the level changed
+            Item previous = itemsByCode.get(item.getItemCode());
+            boolean wasAtRisk = previous != null && ReorderEngine.isAtRisk(previous);
+            if (everLoaded && ReorderEngine.isAtRisk(item) != wasAtRisk) {
+                crossings.add(new ReorderEngine.Event(item.copy(),
+                                                      previous != null ? previous.getCurrentStock() : 0));
+            }
+        }
+
+        itemsByCode = byCode;
+        itemsBySupplier = bySupplier;
+        itemsByCategory = byCategory;
+        itemsBelowReorderLevel = belowReorderLevel;
+        loadedLength = length;
+        loadedModified = modified;
+        loaded = true;
+        everLoaded = true;
+        ReorderEngine.publish(crossings);
+    }
+
+    // Order by currentStock / reorderLevel without dividing; a reorder level below 1 counts as 1
+    private static int compareStockRatio(Item a, Item b) {
+        long left = (long) a.getCurrentStock() * Math.max(1, b.getReorderLevel());
+        long right = (long) b.getCurrentStock() * Math.max(1, a.getReorderLevel());
+        int compare = Long.compare(left, right);
+        return compare != 0 ? compare : a.getItemCode().compareTo(b.getItemCode());
+    }
+
+    private static List<Item> copyOf(Collection<Item> items) {
+        List<Item> copies = new ArrayList<>(items.size());
+        for (Item item : items) {
+            copies.add(item.copy());
+        }
+        return copies;
+    }
+}
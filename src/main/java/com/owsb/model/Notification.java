@@ -9,6 +9,9 @@ import java.text.SimpleDateFormat;
  * Used for alerting users about pending actions and status changes.
  */
 public class Notification implements Serializable {
+    // Kept equal to the value of the original class so legacy .dat files still deserialize
+    private static final long serialVersionUID = 1763559102730797979L;
+
     private String notificationId;
     private String userId;
     private String title;
@@ -19,8 +22,8 @@ public class Notification implements Serializable {
     private Date createdDate;
     private boolean read;
     private String actionUrl; // For navigating to the related item
+    private transient int slot = -1; // Record position in the user's notification file
 
-    private static final String DATA_FILE = "data/notifications.dat";
     private static final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
 
     public Notification(String userId, String title, String message, String type, 
@@ -37,6 +40,36 @@ public class Notification implements Serializable {
         this.actionUrl = createActionUrl();
     }
 
+    // Used when reading notifications back from the notification store
+    private Notification() {
+    }
+
+    // Rebuild a notification exactly as it was stored
+    static Notification restore(String notificationId, String userId, String title, String message,
+                                String type, String relatedEntityId, String relatedEntityType,
+                                Date createdDate, boolean read, String actionUrl) {
+        Notification notification = new Notification();
+        notification.notificationId = notificationId;
+        notification.userId = userId;
+        notification.title = title;
+        notification.message = message;
+        notification.type = type;
+        notification.relatedEntityId = relatedEntityId;
+        notification.relatedEntityType = relatedEntityType;
+        notification.createdDate = createdDate;
+        notification.read = read;
+        notification.actionUrl = actionUrl;
+        return notification;
+    }
+
+    // Create an independent copy of this notification
+    Notification copy() {
+        Notification copy = restore(notificationId, userId, title, message, type, relatedEntityId,
+                                    relatedEntityType, createdDate, read, actionUrl);
+        copy.slot = slot;
+        return copy;
+    }
+
     private String generateNotificationId() {
         return "N" + System.currentTimeMillis();
     }
@@ -54,48 +87,24 @@ public class Notification implements Serializable {
         }
     }
 
-    // Save notification to data file
+    // Save notification to the user's notification file
     public boolean saveNotification() {
-        List<Notification> notifications = getAllNotifications();
-        notifications.add(this);
-        return saveAllNotifications(notifications);
+        return NotificationStore.append(this);
     }
 
     // Mark notification as read
     public boolean markAsRead() {
-        this.read = true;
-        List<Notification> notifications = getAllNotifications();
-        for (int i = 0; i < notifications.size(); i++) {
-            if (notifications.get(i).getNotificationId().equals(this.notificationId)) {
-                notifications.set(i, this);
-                return saveAllNotifications(notifications);
-            }
-        }
-        return false;
+        return NotificationStore.markRead(this);
     }
 
     // Delete notification
     public boolean deleteNotification() {
-        List<Notification> notifications = getAllNotifications();
-        for (int i = 0; i < notifications.size(); i++) {
-            if (notifications.get(i).getNotificationId().equals(this.notificationId)) {
-                notifications.remove(i);
-                return saveAllNotifications(notifications);
-            }
-        }
-        return false;
+        return NotificationStore.delete(this);
     }
 
     // Get all notifications for a specific user
     public static List<Notification> getNotificationsForUser(String userId) {
-        List<Notification> allNotifications = getAllNotifications();
-        List<Notification> userNotifications = new ArrayList<>();
-        
-        for (Notification notification : allNotifications) {
-            if (notification.getUserId().equals(userId)) {
-                userNotifications.add(notification);
-            }
-        }
+        List<Notification> userNotifications = NotificationStore.findByUser(userId);
         
         // Sort by creation date (newest first)
         userNotifications.sort(Comparator.comparing(Notification::getCreatedDate).reversed());
@@ -116,6 +125,11 @@ public class Notification implements Serializable {
         return unreadNotifications;
     }
 
+    // Get the number of unread notifications for a specific user
+    public static int getUnreadCountForUser(String userId) {
+        return NotificationStore.unreadCount(userId);
+    }
+
     // Create a new notification for PR approval
     public static Notification createPRApprovalNotification(String userId, PurchaseRequisition pr) {
         return new Notification(
@@ -160,44 +174,7 @@ public class Notification implements Serializable {
 
     // Get all notifications
     public static List<Notification> getAllNotifications() {
-        List<Notification> notifications = new ArrayList<>();
-        
-        // Create data directory if it doesn't exist
-        File directory = new File("data");
-        if (!directory.exists()) {
-            directory.mkdir();
-        }
-        
-        // Check if data file exists
-        File file = new File(DATA_FILE);
-        if (!file.exists()) {
-            return notifications;
-        }
-        
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
-            notifications = (List<Notification>) ois.readObject();
-        } catch (IOException | ClassNotFoundException e) {
-            System.out.println("Error loading notifications: " + e.getMessage());
-        }
-        
-        return notifications;
-    }
-
-    // Save all notifications
-    private static boolean saveAllNotifications(List<Notification> notifications) {
-        // Create data directory if it doesn't exist
-        File directory = new File("data");
-        if (!directory.exists()) {
-            directory.mkdir();
-        }
-        
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(DATA_FILE))) {
-            oos.writeObject(notifications);
-            return true;
-        } catch (IOException e) {
-            System.out.println("Error saving notifications: " + e.getMessage());
-            return false;
-        }
+        return NotificationStore.findAll();
     }
 
     // Create a new notification for inventory delivery
@@ -277,6 +254,14 @@ public class Notification implements Serializable {
         this.read = read;
     }
 
+    int getSlot() {
+        return slot;
+    }
+
+    void setSlot(int slot) {
+        this.slot = slot;
+    }
+
     // Format the creation date as a string
     public String getFormattedCreationDate() {
         return dateFormat.format(createdDate);
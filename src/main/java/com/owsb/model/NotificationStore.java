@@ -0,0 +1,443 @@
+package com.owsb.model;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Notification storage partitioned by user id.
+ * Each user has a file under data/notifications/ made of fixed-size
+ * records, so a record's position is just its slot number times the
+ * record size. The first two bytes of every record are its read and deleted
+ * flags; marking a notification read or deleting it rewrites one byte in
+ * place. A user's partition is kept in memory with its unread count, which
+ * is adjusted on every change instead of being recounted. Another instance
+ * of the application may write the same files, so a partition is read again
+ * whenever its file's length or modification time changed, and every write
+ * holds a file lock, catches up with the file first and takes the slot of
+ * a new record from the file's length.
+ */
+final class NotificationStore {
+    private static final String DIRECTORY = "data/notifications";
+    private static final String LEGACY_FILE = "data/notifications.dat";
+    private static final String EXTENSION = ".ntf";
+
+    private static final int RECORD_SIZE = 1024;
+    private static final int READ_FLAG_OFFSET = 0;
+    private static final int DELETED_FLAG_OFFSET = 1;
+    private static final int HEADER_SIZE = 2;
+
+    private static final Map<String, Partition> partitions = new HashMap<>();
+    private static boolean migrated = false;
+
+    // In-memory view of one user's notification file
+    private static class Partition {
+        final String userId;
+        final File file;
+        final List<Notification> notifications = new ArrayList<>(); // live records in slot order
+        int unreadCount;
+        // Length and modification time of the file as last read or written here
+        long length = -1;
+        long modified = -1;
+
+        Partition(String userId, File file) {
+            this.userId = userId;
+            this.file = file;
+        }
+
+        boolean isCurrent() {
+            return file.length() == length && file.lastModified() == modified;
+        }
+
+        void stamp() {
+            length = file.length();
+            modified = file.lastModified();
+        }
+    }
+
+    // A change to a partition's file, made while holding its lock; returns false if there was nothing to change
+    private interface FileChange {
+        boolean apply(RandomAccessFile raf) throws IOException;
+    }
+
+    private NotificationStore() {
+    }
+
+    // Append a notification to its user's partition
+    static synchronized boolean append(Notification notification) {
+        try {
+            Partition partition = partitionFor(notification.getUserId());
+            return change(partition, raf -> {
+                appendRecord(partition, raf, notification);
+                return true;
+            });
+        } catch (IOException e) {
+            System.out.println("Error saving notifications: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Flip the read flag of one record
+    static synchronized boolean markRead(Notification notification) {
+        try {
+            Partition partition = partitionFor(notification.getUserId());
+            boolean found = change(partition, raf -> {
+                Notification stored = find(partition, notification);
+                if (stored == null) {
+                    return false;
+                }
+                if (!stored.isRead()) {
+                    raf.seek((long) stored.getSlot() * RECORD_SIZE + READ_FLAG_OFFSET);
+                    raf.writeByte(1);
+                    stored.setRead(true);
+                    partition.unreadCount--;
+                }
+                return true;
+            });
+            if (found) {
+                notification.setRead(true);
+            }
+            return found;
+        } catch (IOException e) {
+            System.out.println("Error saving notifications: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Flip the deleted flag of one record
+    static synchronized boolean delete(Notification notification) {
+        try {
+            Partition partition = partitionFor(notification.getUserId());
+            return change(partition, raf -> {
+                Notification stored = find(partition, notification);
+                if (stored == null) {
+                    return false;
+                }
+                raf.seek((long) stored.getSlot() * RECORD_SIZE + DELETED_FLAG_OFFSET);
+                raf.writeByte(1);
+                partition.notifications.remove(stored);
+                if (!stored.isRead()) {
+                    partition.unreadCount--;
+                }
+                return true;
+            });
+        } catch (IOException e) {
+            System.out.println("Error saving notifications: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Live notifications of one user in the order they were created, as copies the caller may change
+    static synchronized List<Notification> findByUser(String userId) {
+        try {
+            return copies(partitionFor(userId).notifications);
+        } catch (IOException e) {
+            System.out.println("Error loading notifications: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    // Maintained unread counter of one user
+    static synchronized int unreadCount(String userId) {
+        try {
+            return partitionFor(userId).unreadCount;
+        } catch (IOException e) {
+            System.out.println("Error loading notifications: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    // Live notifications of every user, as copies
+    static synchronized List<Notification> findAll() {
+        List<Notification> all = new ArrayList<>();
+        try {
+            migrateLegacyFile();
+            File[] files = new File(DIRECTORY).listFiles((dir, name) -> name.endsWith(EXTENSION));
+            if (files == null) {
+                return all;
+            }
+            for (File file : files) {
+                String name = file.getName();
+                all.addAll(copies(partitionFor(decodeUserId(name.substring(0, name.length() - EXTENSION.length())))
+                    .notifications));
+            }
+        } catch (IOException e) {
+            System.out.println("Error loading notifications: " + e.getMessage());
+        }
+        return all;
+    }
+
+    private static List<Notification> copies(List<Notification> notifications) {
+        List<Notification> copies = new ArrayList<>(notifications.size());
+        for (Notification notification : notifications) {
+            copies.add(notification.copy());
+        }
+        return copies;
+    }
+
+    private static Notification find(Partition partition, Notification notification) {
+        for (Notification stored : partition.notifications) {
+            if (stored == notification || (stored.getSlot() == notification.getSlot()
+                    && stored.getNotificationId().equals(notification.getNotificationId()))) {
+                return stored;
+            }
+        }
+        // Fall back to the id for objects that were created outside the store
+        for (Notification stored : partition.notifications) {
+            if (stored.getNotificationId().equals(notification.getNotificationId())) {
+                return stored;
+            }
+        }
+        return null;
+    }
+
+    // Get a user's partition, reading its file again if it changed since it was last read or written here
+    private static Partition partitionFor(String userId) throws IOException {
+        migrateLegacyFile();
+        return partition(userId);
+    }
+
+    // As partitionFor, without migrating the legacy file first
+    private static Partition partition(String userId) throws IOException {
+        Partition partition = partitions.computeIfAbsent(userId,
+            id -> new Partition(id, new File(DIRECTORY, encodeUserId(id) + EXTENSION)));
+        if (partition.isCurrent()) {
+            return partition;
+        }
+        if (!partition.file.exists()) {
+            partition.notifications.clear();
+            partition.unreadCount = 0;
+            partition.stamp();
+            return partition;
+        }
+        try (FileChannel channel = FileChannel.open(partition.file.toPath(), StandardOpenOption.READ)) {
+            FileLock lock = channel.lock(0, Long.MAX_VALUE, true);
+            try {
+                load(partition, channel);
+            } finally {
+                lock.release();
+            }
+        }
+        return partition;
+    }
+
+    // Make a change to a partition's file under an exclusive lock, first catching up with changes from other instances
+    private static boolean change(Partition partition, FileChange fileChange) throws IOException {
+        File directory = new File(DIRECTORY);
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(partition.file, "rw")) {
+            FileLock lock = raf.getChannel().lock();
+            try {
+                if (!partition.isCurrent()) {
+                    load(partition, raf.getChannel());
+                }
+                boolean changed = fileChange.apply(raf);
+                partition.stamp();
+                return changed;
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    // Read every record of a partition's file; the caller holds a lock on it
+    private static void load(Partition partition, FileChannel channel) throws IOException {
+        partition.notifications.clear();
+        partition.unreadCount = 0;
+
+        // A partially written record at the end is ignored and overwritten by the next append
+        long slots = channel.size() / RECORD_SIZE;
+        channel.position(0);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        byte[] record = new byte[RECORD_SIZE];
+        for (int slot = 0; slot < slots; slot++) {
+            in.readFully(record);
+            if (record[DELETED_FLAG_OFFSET] != 0) {
+                continue;
+            }
+            Notification notification = decode(partition.userId, record);
+            notification.setSlot(slot);
+            partition.notifications.add(notification);
+            if (!notification.isRead()) {
+                partition.unreadCount++;
+            }
+        }
+        partition.stamp();
+    }
+
+    // Write a notification into the slot after the last whole record; the caller holds the lock
+    private static void appendRecord(Partition partition, RandomAccessFile raf, Notification notification)
+            throws IOException {
+        int slot = (int) (raf.length() / RECORD_SIZE);
+        raf.seek((long) slot * RECORD_SIZE);
+        raf.write(encode(notification));
+        notification.setSlot(slot);
+
+        Notification stored = notification.copy();
+        partition.notifications.add(stored);
+        if (!stored.isRead()) {
+            partition.unreadCount++;
+        }
+    }
+
+    // Encode into exactly RECORD_SIZE bytes, shortening the message if the text does not fit
+    private static byte[] encode(Notification notification) throws IOException {
+        String message = notification.getMessage() != null ? notification.getMessage() : "";
+        while (true) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(RECORD_SIZE);
+            DataOutputStream out = new DataOutputStream(buffer);
+            out.writeByte(notification.isRead() ? 1 : 0);
+            out.writeByte(0);
+            writeString(out, notification.getNotificationId());
+            writeString(out, notification.getTitle());
+            writeString(out, message);
+            writeString(out, notification.getType());
+            writeString(out, notification.getRelatedEntityId());
+            writeString(out, notification.getRelatedEntityType());
+            writeString(out, notification.getActionUrl());
+            out.writeLong(notification.getCreatedDate().getTime());
+
+            if (buffer.size() <= RECORD_SIZE) {
+                return Arrays.copyOf(buffer.toByteArray(), RECORD_SIZE);
+            }
+            if (message.isEmpty()) {
+                throw new IOException("Notification " + notification.getNotificationId() + " does not fit in a record");
+            }
+            int overflow = buffer.size() - RECORD_SIZE;
+            message = message.substring(0, Math.max(0, message.length() - overflow - 3)) + "...";
+            if (message.length() <= 3) {
+                message = "";
+            }
+        }
+    }
+
+    private static Notification decode(String userId, byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(
+            new ByteArrayInputStream(record, HEADER_SIZE, RECORD_SIZE - HEADER_SIZE));
+        String notificationId = readString(in);
+        String title = readString(in);
+        String message = readString(in);
+        String type = readString(in);
+        String relatedEntityId = readString(in);
+        String relatedEntityType = readString(in);
+        String actionUrl = readString(in);
+        Date createdDate = new Date(in.readLong());
+        return Notification.restore(notificationId, userId, title, message, type,
+                                    relatedEntityId, relatedEntityType, createdDate,
+                                    record[READ_FLAG_OFFSET] != 0, actionUrl);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Move notifications from the old single serialized list into per-user
+     * partitions. The legacy file is only renamed once every partition has
+     * been written and forced to disk; a migration cut short before that is
+     * run again on the next start and skips the records it already copied.
+     * A legacy file that cannot be decoded is moved aside to .corrupt.
+     */
+    @SuppressWarnings("unchecked")
+    private static void migrateLegacyFile() throws IOException {
+        if (migrated) {
+            return;
+        }
+
+        File legacy = new File(LEGACY_FILE);
+        if (!legacy.exists()) {
+            migrated = true;
+            return;
+        }
+
+        List<Notification> legacyNotifications;
+        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(legacy))) {
+            legacyNotifications = (List<Notification>) ois.readObject();
+        } catch (ObjectStreamException | EOFException | ClassNotFoundException | ClassCastException e) {
+            System.out.println("Unreadable legacy notifications file, moved aside: " + e.getMessage());
+            legacy.renameTo(new File(LEGACY_FILE + ".corrupt"));
+            migrated = true;
+            return;
+        }
+
+        // Each user's records go into their partition in one locked change
+        Map<String, List<Notification>> byUser = new LinkedHashMap<>();
+        for (Notification notification : legacyNotifications) {
+            byUser.computeIfAbsent(notification.getUserId(), id -> new ArrayList<>()).add(notification);
+        }
+        for (Map.Entry<String, List<Notification>> entry : byUser.entrySet()) {
+            List<Notification> notifications = entry.getValue();
+            Partition partition = partition(entry.getKey());
+            change(partition, raf -> {
+                // An earlier, interrupted migration may already have copied the first of them
+                int copied = leadingMatches(raf, notifications);
+                for (Notification notification : notifications.subList(copied, notifications.size())) {
+                    appendRecord(partition, raf, notification);
+                }
+                raf.getFD().sync();
+                return true;
+            });
+        }
+
+        if (legacy.renameTo(new File(LEGACY_FILE + ".migrated"))) {
+            migrated = true;
+        }
+    }
+
+    // Number of records at the start of a partition file that carry the ids of the given notifications, in order
+    private static int leadingMatches(RandomAccessFile raf, List<Notification> notifications) throws IOException {
+        long slots = raf.length() / RECORD_SIZE;
+        byte[] record = new byte[RECORD_SIZE];
+        int matches = 0;
+        while (matches < slots && matches < notifications.size()) {
+            raf.seek((long) matches * RECORD_SIZE);
+            raf.readFully(record);
+            DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(record, HEADER_SIZE, RECORD_SIZE - HEADER_SIZE));
+            if (!Objects.equals(readString(in), notifications.get(matches).getNotificationId())) {
+                break;
+            }
+            matches++;
+        }
+        return matches;
+    }
+
+    // User ids become file names, so anything outside [A-Za-z0-9_-] is escaped
+    private static String encodeUserId(String userId) {
+        StringBuilder name = new StringBuilder();
+        for (char c : String.valueOf(userId).toCharArray()) {
+            if (Character.isLetterOrDigit(c) && c < 128 || c == '_' || c == '-') {
+                name.append(c);
+            } else {
+                name.append('%').append(String.format("%04x", (int) c));
+            }
+        }
+        return name.toString();
+    }
+
+    private static String decodeUserId(String name) {
+        StringBuilder userId = new StringBuilder();
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '%' && i + 4 < name.length()) {
+                userId.append((char) Integer.parseInt(name.substring(i + 1, i + 5), 16));
+                i += 4;
+            } else {
+                userId.append(c);
+            }
+        }
+        return userId.toString();
+    }
+}
@@ -1,8 +1,7 @@
 package com.owsb.model;
 
+import com.owsb.io.DateCodec;
 import java.io.*;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.*;
 
 public class PurchaseOrder {
@@ -16,9 +15,8 @@ public class PurchaseOrder {
     private List<PurchaseOrderItem> items;
     
     // File paths
-    private static final String PO_FILE = "data/purchase_orders.txt";
-    private static final String PO_ITEMS_FILE = "data/po_items.txt";
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd");
+    static final String PO_FILE = "data/purchase_orders.txt";
+    static final String PO_ITEMS_FILE = "data/po_items.txt";
     
     // Constructor
     public PurchaseOrder(String poId, String prId, Date poDate, Date deliveryDate, 
@@ -129,8 +127,8 @@ public class PurchaseOrder {
             calculateTotal();
             
             // Format dates to string
-            String poDateStr = DATE_FORMAT.format(poDate);
-            String deliveryDateStr = DATE_FORMAT.format(deliveryDate);
+            String poDateStr = DateCodec.format(poDate);
+            String deliveryDateStr = DateCodec.format(deliveryDate);
             
             // Append PO to file
             try (PrintWriter out = new PrintWriter(new FileWriter(PO_FILE, true))) {
@@ -143,6 +141,7 @@ public class PurchaseOrder {
                 item.setPoId(poId);
                 item.savePOItem();
             }
+            SearchIndex.orderSaved(this);
             
             // Update PR status to "APPROVED"
             PurchaseRequisition pr = PurchaseRequisition.getPRById(prId);
@@ -159,63 +158,12 @@ public class PurchaseOrder {
     
     // Load all POs from file
     public static List<PurchaseOrder> getAllPOs() {
-        List<PurchaseOrder> poList = new ArrayList<>();
-        
-        // Create directory if it doesn't exist
-        File directory = new File("data");
-        if (!directory.exists()) {
-            directory.mkdir();
-        }
-        
-        try {
-            File file = new File(PO_FILE);
-            if (!file.exists()) {
-                // Create an empty file if it doesn't exist
-                file.createNewFile();
-                return poList;
-            }
-            
-            try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    String[] parts = line.split(",");
-                    if (parts.length == 7) {
-                        try {
-                            PurchaseOrder po = new PurchaseOrder(
-                                parts[0],
-                                parts[1],
-                                DATE_FORMAT.parse(parts[2]),
-                                DATE_FORMAT.parse(parts[3]),
-                                parts[4],
-                                parts[5],
-                                Double.parseDouble(parts[6])
-                            );
-                            
-                            // Load PO items
-                            po.setItems(PurchaseOrderItem.getItemsByPOId(parts[0]));
-                            
-                            poList.add(po);
-                        } catch (ParseException | NumberFormatException e) {
-                            e.printStackTrace();
-                        }
-                    }
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return poList;
+        return PurchaseOrderLoader.loadAll();
     }
     
     // Get PO by ID
     public static PurchaseOrder getPOById(String poId) {
-        List<PurchaseOrder> poList = getAllPOs();
-        for (PurchaseOrder po : poList) {
-            if (po.getPoId().equals(poId)) {
-                return po;
-            }
-        }
-        return null;
+        return PurchaseOrderLoader.loadById(poId);
     }
     
     // Get pending POs (for finance managers)
@@ -234,40 +182,28 @@ public class PurchaseOrder {
     
     // Generate new PO ID
     public static String generatePOId() {
-        List<PurchaseOrder> poList = getAllPOs();
-        if (poList.isEmpty()) {
-            return "PO-2025-001";
-        }
-        
-        // Get current year
-        Calendar cal = Calendar.getInstance();
-        int year = cal.get(Calendar.YEAR);
+        // PO numbers restart every year
+        int year = Calendar.getInstance().get(Calendar.YEAR);
+        String prefix = "PO-" + year + "-";
         
-        // Find the highest PO ID for the current year
-        int highestId = 0;
-        for (PurchaseOrder po : poList) {
-            String idPart = po.getPoId();
-            if (idPart.contains(String.valueOf(year))) {
-                try {
-                    String numPart = idPart.substring(idPart.lastIndexOf('-') + 1);
-                    int id = Integer.parseInt(numPart);
-                    if (id > highestId) {
-                        highestId = id;
-                    }
-                } catch (NumberFormatException e) {
-                    // Ignore malformed IDs
-                }
+        long id = IdAllocator.next(prefix + "SEQ", () -> {
+            List<String> ids = new ArrayList<>();
+            for (PurchaseOrder po : PurchaseOrderLoader.loadHeaders()) {
+                ids.add(po.getPoId());
             }
-        }
-        
-        // Generate new ID
-        return String.format("PO-%d-%03d", year, highestId + 1);
+            return IdAllocator.maxSuffix(ids, prefix);
+        });
+        return String.format("PO-%d-%03d", year, id);
     }
     
     // Update PO status
     public boolean updateStatus(String newStatus) {
+        // Load supplier statistics first, so this change is counted exactly once
+        SupplierPerformance.ensureLoaded();
+        
         List<PurchaseOrder> poList = getAllPOs();
         boolean found = false;
+        PurchaseOrder previous = null;
         
         try {
             // Create directory if it doesn't exist
@@ -285,24 +221,29 @@ public class PurchaseOrder {
             try (PrintWriter out = new PrintWriter(new FileWriter(PO_FILE))) {
                 for (PurchaseOrder po : poList) {
                     if (!po.getPoId().equals(this.poId)) {
-                        String poDateStr = DATE_FORMAT.format(po.getPoDate());
-                        String deliveryDateStr = DATE_FORMAT.format(po.getDeliveryDate());
+                        String poDateStr = DateCodec.format(po.getPoDate());
+                        String deliveryDateStr = DateCodec.format(po.getDeliveryDate());
                         
                         out.println(po.getPoId() + "," + po.getPrId() + "," + poDateStr + "," + 
                                   deliveryDateStr + "," + po.getStatus() + "," + 
                                   po.getCreatedBy() + "," + po.getTotalAmount());
                     } else {
-                        String poDateStr = DATE_FORMAT.format(this.poDate);
-                        String deliveryDateStr = DATE_FORMAT.format(this.deliveryDate);
+                        String poDateStr = DateCodec.format(this.poDate);
+                        String deliveryDateStr = DateCodec.format(this.deliveryDate);
                         
                         out.println(this.poId + "," + this.prId + "," + poDateStr + "," + 
                                   deliveryDateStr + "," + newStatus + "," + 
                                   this.createdBy + "," + this.totalAmount);
                         found = true;
+                        previous = po;
                         this.status = newStatus;
                     }
                 }
             }
+            if (found) {
+                SupplierPerformance.statusChanged(previous, previous.getStatus(), newStatus);
+                SearchIndex.orderSaved(this);
+            }
             return found;
         } catch (IOException e) {
             e.printStackTrace();
@@ -310,16 +251,31 @@ public class PurchaseOrder {
         }
     }
     
-    // Receive PO (for inventory manager)
-    public boolean receivePO() {
-        if (updateStatus("RECEIVED")) {
-            // Update inventory when order is received
-            for (PurchaseOrderItem item : items) {
-                Item.updateStock(item.getItemCode(), item.getQuantity());
+    // Receive PO (for inventory manager); the stock is booked before the status changes, and a retry after
+    // the status change failed does not book it again
+    public boolean receivePO(String receivedBy) {
+        synchronized (PurchaseOrder.class) {
+            PurchaseOrder current = getPOById(poId);
+            if (current == null || "RECEIVED".equals(current.getStatus())) {
+                return false;
             }
-            return true;
+            
+            // An earlier attempt may have booked the stock and then failed to change the status
+            String reason = "PO Received: " + poId;
+            if (!StockAdjustment.reasonExists(reason)) {
+                // Add every line whose item still exists, with one catalog write for all lines
+                Map<String, Integer> quantities = new LinkedHashMap<>();
+                for (PurchaseOrderItem item : getItems()) {
+                    if (Item.getItemByCode(item.getItemCode()) != null) {
+                        quantities.merge(item.getItemCode(), item.getQuantity(), Integer::sum);
+                    }
+                }
+                if (!Item.updateStocks(quantities, reason, receivedBy)) {
+                    return false;
+                }
+            }
+            return updateStatus("RECEIVED");
         }
-        return false;
     }
     
     // Item class for Purchase Order
@@ -415,43 +371,8 @@ public class PurchaseOrder {
         
         // Get PO items by PO ID
         public static List<PurchaseOrderItem> getItemsByPOId(String poId) {
-            List<PurchaseOrderItem> itemsList = new ArrayList<>();
-            
-            // Create directory if it doesn't exist
-            File directory = new File("data");
-            if (!directory.exists()) {
-                directory.mkdir();
-            }
-            
-            try {
-                File file = new File(PO_ITEMS_FILE);
-                if (!file.exists()) {
-                    // Create an empty file if it doesn't exist
-                    file.createNewFile();
-                    return itemsList;
-                }
-                
-                try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-                    String line;
-                    while ((line = br.readLine()) != null) {
-                        String[] parts = line.split(",");
-                        if (parts.length == 5 && parts[0].equals(poId)) {
-                            PurchaseOrderItem item = new PurchaseOrderItem(
-                                parts[0],
-                                parts[1],
-                                Integer.parseInt(parts[2]),
-                                Double.parseDouble(parts[3]),
-                                parts[4]
-                            );
-                            itemsList.add(item);
-                        }
-                    }
-                }
-            } catch (IOException | NumberFormatException e) {
-                e.printStackTrace();
-            }
-            
-            return itemsList;
+            List<PurchaseOrderItem> itemsList = PurchaseOrderLoader.loadItemsGroupedByPO(poId).get(poId);
+            return itemsList != null ? itemsList : new ArrayList<>();
         }
     }
 } 
\ No newline at end of file
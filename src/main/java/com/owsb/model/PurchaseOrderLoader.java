@@ -0,0 +1,121 @@
+package com.owsb.model;
+
+import com.owsb.io.RecordReader;
+import java.io.*;
+import java.util.*;
+
+/**
+ * Loads purchase orders together with their line items.
+ * Each data file is streamed once and lines are matched to their header
+ * through a hash map keyed by PO id, instead of re-scanning po_items.txt
+ * for every order.
+ */
+final class PurchaseOrderLoader {
+
+    private PurchaseOrderLoader() {
+    }
+
+    // Load every PO header and attach its items in a single pass over each file
+    static List<PurchaseOrder> loadAll() {
+        List<PurchaseOrder> poList = loadHeaders();
+        if (poList.isEmpty()) {
+            return poList;
+        }
+
+        Map<String, List<PurchaseOrder.PurchaseOrderItem>> itemsByPO = loadItemsGroupedByPO(null);
+        for (PurchaseOrder po : poList) {
+            List<PurchaseOrder.PurchaseOrderItem> items = itemsByPO.get(po.getPoId());
+            po.setItems(items != null ? items : new ArrayList<>());
+        }
+        return poList;
+    }
+
+    // Load a single PO and only the item lines that belong to it
+    static PurchaseOrder loadById(String poId) {
+        for (PurchaseOrder po : loadHeaders()) {
+            if (po.getPoId().equals(poId)) {
+                List<PurchaseOrder.PurchaseOrderItem> items = loadItemsGroupedByPO(poId).get(poId);
+                po.setItems(items != null ? items : new ArrayList<>());
+                return po;
+            }
+        }
+        return null;
+    }
+
+    // Load PO headers without touching po_items.txt
+    static List<PurchaseOrder> loadHeaders() {
+        List<PurchaseOrder> poList = new ArrayList<>();
+
+        // Create directory if it doesn't exist
+        File directory = new File("data");
+        if (!directory.exists()) {
+            directory.mkdir();
+        }
+
+        try {
+            File file = new File(PurchaseOrder.PO_FILE);
+            if (!file.exists()) {
+                // Create an empty file if it doesn't exist
+                file.createNewFile();
+                return poList;
+            }
+
+            try (RecordReader reader = new RecordReader(file)) {
+                while (reader.next()) {
+                    if (reader.fieldCount() == 7) {
+                        try {
+                            poList.add(new PurchaseOrder(
+                                reader.getString(0),
+                                reader.getString(1),
+                                reader.getDate(2),
+                                reader.getDate(3),
+                                reader.getString(4),
+                                reader.getString(5),
+                                reader.getDouble(6)
+                            ));
+                        } catch (IllegalArgumentException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return poList;
+    }
+
+    // Stream po_items.txt once and group lines by PO id (all POs when onlyPoId is null)
+    static Map<String, List<PurchaseOrder.PurchaseOrderItem>> loadItemsGroupedByPO(String onlyPoId) {
+        Map<String, List<PurchaseOrder.PurchaseOrderItem>> itemsByPO = new HashMap<>();
+
+        File file = new File(PurchaseOrder.PO_ITEMS_FILE);
+        if (!file.exists()) {
+            return itemsByPO;
+        }
+
+        try (RecordReader reader = new RecordReader(file)) {
+            while (reader.next()) {
+                if (reader.fieldCount() != 5 || (onlyPoId != null && !reader.fieldEquals(0, onlyPoId))) {
+                    continue;
+                }
+                try {
+                    String poId = reader.getString(0);
+                    PurchaseOrder.PurchaseOrderItem item = new PurchaseOrder.PurchaseOrderItem(
+                        poId,
+                        reader.getString(1),
+                        reader.getInt(2),
+                        reader.getDouble(3),
+                        reader.getString(4)
+                    );
+                    itemsByPO.computeIfAbsent(poId, k -> new ArrayList<>()).add(item);
+                } catch (NumberFormatException e) {
+                    e.printStackTrace();
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return itemsByPO;
+    }
+}
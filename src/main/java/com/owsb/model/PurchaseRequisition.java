@@ -1,8 +1,8 @@
 package com.owsb.model;
 
+import com.owsb.io.DateCodec;
+import com.owsb.io.RecordReader;
 import java.io.*;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.*;
 
 public class PurchaseRequisition {
@@ -11,12 +11,11 @@ public class PurchaseRequisition {
     private Date requiredDate;
     private String status; // PENDING, APPROVED, REJECTED
     private String requestedBy; // User ID of Sales Manager who raised the PR
-    private List<PurchaseRequisitionItem> items;
+    private List<PurchaseRequisitionItem> items; // null until first requested for PRs loaded from file
     
     // File paths
     private static final String PR_FILE = "data/purchase_requisitions.txt";
-    private static final String PR_ITEMS_FILE = "data/pr_items.txt";
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd");
+    static final String PR_ITEMS_FILE = "data/pr_items.txt";
     
     // Constructor
     public PurchaseRequisition(String prId, Date prDate, Date requiredDate, 
@@ -75,7 +74,11 @@ public class PurchaseRequisition {
         this.requestedBy = requestedBy;
     }
     
+    // Items are loaded lazily from the shared pr_items index on first access
     public List<PurchaseRequisitionItem> getItems() {
+        if (items == null) {
+            items = PurchaseRequisitionItemIndex.itemsFor(prId);
+        }
         return items;
     }
     
@@ -84,7 +87,28 @@ public class PurchaseRequisition {
     }
     
     public void addItem(PurchaseRequisitionItem item) {
-        this.items.add(item);
+        getItems().add(item);
+    }
+    
+    // Number of line items, answered from the precomputed counts when items are not loaded yet
+    public int getItemCount() {
+        if (items != null) {
+            return items.size();
+        }
+        return PurchaseRequisitionItemIndex.countFor(prId);
+    }
+    
+    // Number of line items of every PR that has any, by PR ID
+    public static Map<String, Integer> getItemCountsByPR() {
+        return PurchaseRequisitionItemIndex.counts();
+    }
+    
+    // Create a header-only PR whose items are loaded on demand
+    private static PurchaseRequisition headerOnly(String prId, Date prDate, Date requiredDate,
+                                                  String status, String requestedBy) {
+        PurchaseRequisition pr = new PurchaseRequisition(prId, prDate, requiredDate, status, requestedBy);
+        pr.items = null;
+        return pr;
     }
     
     // Save PR header to file
@@ -97,8 +121,8 @@ public class PurchaseRequisition {
             }
             
             // Format dates to string
-            String prDateStr = DATE_FORMAT.format(prDate);
-            String requiredDateStr = DATE_FORMAT.format(requiredDate);
+            String prDateStr = DateCodec.format(prDate);
+            String requiredDateStr = DateCodec.format(requiredDate);
             
             // Append PR to file
             try (PrintWriter out = new PrintWriter(new FileWriter(PR_FILE, true))) {
@@ -107,10 +131,11 @@ public class PurchaseRequisition {
             }
             
             // Save PR items to file
-            for (PurchaseRequisitionItem item : items) {
+            for (PurchaseRequisitionItem item : getItems()) {
                 item.setPrId(prId);
                 item.savePRItem();
             }
+            SearchIndex.requisitionSaved(this);
             
             return true;
         } catch (IOException e) {
@@ -119,7 +144,7 @@ public class PurchaseRequisition {
         }
     }
     
-    // Load all PRs from file
+    // Load all PR headers from file (items are loaded lazily)
     public static List<PurchaseRequisition> getAllPRs() {
         List<PurchaseRequisition> prList = new ArrayList<>();
         try {
@@ -128,25 +153,20 @@ public class PurchaseRequisition {
                 return prList;
             }
             
-            try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    String[] parts = line.split(",");
-                    if (parts.length == 5) {
+            try (RecordReader reader = new RecordReader(file)) {
+                while (reader.next()) {
+                    if (reader.fieldCount() == 5) {
                         try {
-                            PurchaseRequisition pr = new PurchaseRequisition(
-                                parts[0], 
-                                DATE_FORMAT.parse(parts[1]), 
-                                DATE_FORMAT.parse(parts[2]), 
-                                parts[3],
-                                parts[4]
+                            PurchaseRequisition pr = headerOnly(
+                                reader.getString(0), 
+                                reader.getDate(1), 
+                                reader.getDate(2), 
+                                reader.getString(3),
+                                reader.getString(4)
                             );
                             
-                            // Load PR items
-                            pr.setItems(PurchaseRequisitionItem.getItemsByPRId(parts[0]));
-                            
                             prList.add(pr);
-                        } catch (ParseException e) {
+                        } catch (IllegalArgumentException e) {
                             e.printStackTrace();
                         }
                     }
@@ -185,34 +205,18 @@ public class PurchaseRequisition {
     
     // Generate new PR ID
     public static String generatePRId() {
-        List<PurchaseRequisition> prList = getAllPRs();
-        if (prList.isEmpty()) {
-            return "PR-2025-001";
-        }
+        // PR numbers restart every year
+        int year = Calendar.getInstance().get(Calendar.YEAR);
+        String prefix = "PR-" + year + "-";
         
-        // Get current year
-        Calendar cal = Calendar.getInstance();
-        int year = cal.get(Calendar.YEAR);
-        
-        // Find the highest PR ID for the current year
-        int highestId = 0;
-        for (PurchaseRequisition pr : prList) {
-            String idPart = pr.getPrId();
-            if (idPart.contains(String.valueOf(year))) {
-                try {
-                    String numPart = idPart.substring(idPart.lastIndexOf('-') + 1);
-                    int id = Integer.parseInt(numPart);
-                    if (id > highestId) {
-                        highestId = id;
-                    }
-                } catch (NumberFormatException e) {
-                    // Ignore malformed IDs
-                }
+        long id = IdAllocator.next(prefix + "SEQ", () -> {
+            List<String> ids = new ArrayList<>();
+            for (PurchaseRequisition pr : getAllPRs()) {
+                ids.add(pr.getPrId());
             }
-        }
-        
-        // Generate new ID
-        return String.format("PR-%d-%03d", year, highestId + 1);
+            return IdAllocator.maxSuffix(ids, prefix);
+        });
+        return String.format("PR-%d-%03d", year, id);
     }
     
     // Update PR status
@@ -224,14 +228,14 @@ public class PurchaseRequisition {
             try (PrintWriter out = new PrintWriter(new FileWriter(PR_FILE))) {
                 for (PurchaseRequisition pr : prList) {
                     if (!pr.getPrId().equals(this.prId)) {
-                        String prDateStr = DATE_FORMAT.format(pr.getPrDate());
-                        String requiredDateStr = DATE_FORMAT.format(pr.getRequiredDate());
+                        String prDateStr = DateCodec.format(pr.getPrDate());
+                        String requiredDateStr = DateCodec.format(pr.getRequiredDate());
                         
                         out.println(pr.getPrId() + "," + prDateStr + "," + requiredDateStr + "," + 
                                   pr.getStatus() + "," + pr.getRequestedBy());
                     } else {
-                        String prDateStr = DATE_FORMAT.format(this.prDate);
-                        String requiredDateStr = DATE_FORMAT.format(this.requiredDate);
+                        String prDateStr = DateCodec.format(this.prDate);
+                        String requiredDateStr = DateCodec.format(this.requiredDate);
                         
                         out.println(this.prId + "," + prDateStr + "," + requiredDateStr + "," + 
                                   newStatus + "," + this.requestedBy);
@@ -240,6 +244,9 @@ public class PurchaseRequisition {
                     }
                 }
             }
+            if (found) {
+                SearchIndex.requisitionSaved(this);
+            }
             return found;
         } catch (IOException e) {
             e.printStackTrace();
@@ -312,6 +319,7 @@ public class PurchaseRequisition {
                 try (PrintWriter out = new PrintWriter(new FileWriter(PR_ITEMS_FILE, true))) {
                     out.println(prId + "," + itemCode + "," + quantity + "," + supplierId);
                 }
+                PurchaseRequisitionItemIndex.invalidate();
                 
                 return true;
             } catch (IOException e) {
@@ -322,32 +330,7 @@ public class PurchaseRequisition {
         
         // Get PR items by PR ID
         public static List<PurchaseRequisitionItem> getItemsByPRId(String prId) {
-            List<PurchaseRequisitionItem> prItems = new ArrayList<>();
-            try {
-                File file = new File(PR_ITEMS_FILE);
-                if (!file.exists()) {
-                    return prItems;
-                }
-                
-                try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-                    String line;
-                    while ((line = br.readLine()) != null) {
-                        String[] parts = line.split(",");
-                        if (parts.length == 4 && parts[0].equals(prId)) {
-                            PurchaseRequisitionItem item = new PurchaseRequisitionItem(
-                                parts[0],
-                                parts[1],
-                                Integer.parseInt(parts[2]),
-                                parts[3]
-                            );
-                            prItems.add(item);
-                        }
-                    }
-                }
-            } catch (IOException | NumberFormatException e) {
-                e.printStackTrace();
-            }
-            return prItems;
+            return PurchaseRequisitionItemIndex.itemsFor(prId);
         }
     }
 } 
\ No newline at end of file
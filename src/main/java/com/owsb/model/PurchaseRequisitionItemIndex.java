@@ -0,0 +1,145 @@
+package com.owsb.model;
+
+import com.owsb.io.RecordReader;
+import java.io.*;
+import java.util.*;
+
+/**
+ * Shared index over data/pr_items.txt.
+ * Item counts per PR are gathered in one light pass that never builds item
+ * objects, which is all list views need. The full line items are grouped by
+ * PR id in a second structure that is only built the first time a
+ * requisition's items are actually requested. Both are rebuilt when the
+ * file's size or modification time changes, or after a write invalidates them.
+ */
+final class PurchaseRequisitionItemIndex {
+    private static final File FILE = new File(PurchaseRequisition.PR_ITEMS_FILE);
+
+    private static Map<String, Integer> countsByPR = null;
+    private static Map<String, List<PurchaseRequisition.PurchaseRequisitionItem>> itemsByPR = null;
+    private static long indexedLength = -1;
+    private static long indexedModified = -1;
+
+    private PurchaseRequisitionItemIndex() {
+    }
+
+    // Get a copy of the line items that belong to a PR
+    static synchronized List<PurchaseRequisition.PurchaseRequisitionItem> itemsFor(String prId) {
+        checkFileUnchanged();
+        if (itemsByPR == null) {
+            itemsByPR = readItemsGroupedByPR();
+        }
+
+        List<PurchaseRequisition.PurchaseRequisitionItem> copies = new ArrayList<>();
+        for (PurchaseRequisition.PurchaseRequisitionItem item
+                : itemsByPR.getOrDefault(prId, Collections.emptyList())) {
+            copies.add(new PurchaseRequisition.PurchaseRequisitionItem(
+                item.getPrId(), item.getItemCode(), item.getQuantity(), item.getSupplierId()));
+        }
+        return copies;
+    }
+
+    // Get the number of line items that belong to a PR
+    static synchronized int countFor(String prId) {
+        checkFileUnchanged();
+        if (itemsByPR != null) {
+            List<PurchaseRequisition.PurchaseRequisitionItem> items = itemsByPR.get(prId);
+            return items != null ? items.size() : 0;
+        }
+        if (countsByPR == null) {
+            countsByPR = readCountsByPR();
+        }
+        return countsByPR.getOrDefault(prId, 0);
+    }
+
+    // Get a copy of the line item counts of every PR
+    static synchronized Map<String, Integer> counts() {
+        checkFileUnchanged();
+        if (itemsByPR != null) {
+            Map<String, Integer> counts = new HashMap<>();
+            for (Map.Entry<String, List<PurchaseRequisition.PurchaseRequisitionItem>> entry : itemsByPR.entrySet()) {
+                counts.put(entry.getKey(), entry.getValue().size());
+            }
+            return counts;
+        }
+        if (countsByPR == null) {
+            countsByPR = readCountsByPR();
+        }
+        return new HashMap<>(countsByPR);
+    }
+
+    // Drop everything so the next request re-reads the file
+    static synchronized void invalidate() {
+        countsByPR = null;
+        itemsByPR = null;
+    }
+
+    // Discard the index if pr_items.txt was changed behind our back
+    private static void checkFileUnchanged() {
+        long length = FILE.exists() ? FILE.length() : -1;
+        long modified = FILE.exists() ? FILE.lastModified() : -1;
+        if (length != indexedLength || modified != indexedModified) {
+            countsByPR = null;
+            itemsByPR = null;
+            indexedLength = length;
+            indexedModified = modified;
+        }
+    }
+
+    // Count lines per PR id without building the items
+    private static Map<String, Integer> readCountsByPR() {
+        Map<String, Integer> counts = new HashMap<>();
+        if (!FILE.exists()) {
+            return counts;
+        }
+
+        try (RecordReader reader = new RecordReader(FILE)) {
+            while (reader.next()) {
+                // Same checks as the full parse: exactly four fields and a numeric quantity
+                if (reader.fieldCount() != 4) {
+                    continue;
+                }
+                try {
+                    reader.getInt(2);
+                    counts.merge(reader.getString(0), 1, Integer::sum);
+                } catch (NumberFormatException e) {
+                    // The full parse skips this line too
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return counts;
+    }
+
+    // Read every line once and group the items by PR id
+    private static Map<String, List<PurchaseRequisition.PurchaseRequisitionItem>> readItemsGroupedByPR() {
+        Map<String, List<PurchaseRequisition.PurchaseRequisitionItem>> grouped = new HashMap<>();
+        if (!FILE.exists()) {
+            return grouped;
+        }
+
+        try (RecordReader reader = new RecordReader(FILE)) {
+            while (reader.next()) {
+                if (reader.fieldCount() != 4) {
+                    continue;
+                }
+                try {
+                    String prId = reader.getString(0);
+                    grouped.computeIfAbsent(prId, k -> new ArrayList<>()).add(
+                        new PurchaseRequisition.PurchaseRequisitionItem(
+                            prId,
+                            reader.getString(1),
+                            reader.getInt(2),
+                            reader.getString(3)
+                        ));
+                } catch (NumberFormatException e) {
+                    e.printStackTrace();
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return grouped;
+    }
+}
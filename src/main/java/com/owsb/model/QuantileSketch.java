@@ -0,0 +1,92 @@
+package com.owsb.model;
+
+import java.util.*;
+
+/**
+ * Streaming quantile estimate of non-negative values in bounded memory.
+ * Values are counted in logarithmic buckets, each covering a range whose
+ * ends differ by a fixed ratio, so any quantile is returned within
+ * RELATIVE_ACCURACY of a value that was actually added. Zero has its own
+ * count. When there are more than MAX_BUCKETS buckets the two lowest are
+ * merged, which only costs accuracy at the low end.
+ */
+final class QuantileSketch {
+    private static final double RELATIVE_ACCURACY = 0.02;
+    private static final int MAX_BUCKETS = 512;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    private final TreeMap<Integer, Long> buckets = new TreeMap<>();
+    private long zeroCount = 0;
+    private long count = 0;
+
+    // Add a value; negative values count as zero
+    void add(double value) {
+        count++;
+        if (value <= 0) {
+            zeroCount++;
+            return;
+        }
+        buckets.merge((int) Math.ceil(Math.log(value) / LOG_GAMMA), 1L, Long::sum);
+        if (buckets.size() > MAX_BUCKETS) {
+            Map.Entry<Integer, Long> lowest = buckets.pollFirstEntry();
+            buckets.merge(buckets.firstKey(), lowest.getValue(), Long::sum);
+        }
+    }
+
+    long count() {
+        return count;
+    }
+
+    // Estimate of the q-quantile (0 to 1), or NaN when nothing was added
+    double quantile(double q) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) Math.floor(Math.max(0, Math.min(1, q)) * (count - 1));
+        long seen = zeroCount;
+        if (rank < seen) {
+            return 0;
+        }
+        for (Map.Entry<Integer, Long> bucket : buckets.entrySet()) {
+            seen += bucket.getValue();
+            if (rank < seen) {
+                return 2 * Math.pow(GAMMA, bucket.getKey()) / (GAMMA + 1);
+            }
+        }
+        return 2 * Math.pow(GAMMA, buckets.lastKey()) / (GAMMA + 1);
+    }
+
+    QuantileSketch copy() {
+        QuantileSketch copy = new QuantileSketch();
+        copy.buckets.putAll(buckets);
+        copy.zeroCount = zeroCount;
+        copy.count = count;
+        return copy;
+    }
+
+    // Encode as "zeroCount;index:count;..." for storage in a single field
+    String encode() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(zeroCount);
+        for (Map.Entry<Integer, Long> bucket : buckets.entrySet()) {
+            sb.append(';').append(bucket.getKey()).append(':').append(bucket.getValue());
+        }
+        return sb.toString();
+    }
+
+    // Rebuild a sketch from encode(); throws NumberFormatException on malformed text
+    static QuantileSketch decode(String text) {
+        QuantileSketch sketch = new QuantileSketch();
+        String[] parts = text.split(";");
+        sketch.zeroCount = Long.parseLong(parts[0]);
+        sketch.count = sketch.zeroCount;
+        for (int i = 1; i < parts.length; i++) {
+            int colon = parts[i].indexOf(':');
+            long bucketCount = Long.parseLong(parts[i].substring(colon + 1));
+            sketch.buckets.put(Integer.parseInt(parts[i].substring(0, colon)), bucketCount);
+            sketch.count += bucketCount;
+        }
+        return sketch;
+    }
+}
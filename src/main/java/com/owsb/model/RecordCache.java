@@ -0,0 +1,58 @@
+package com.owsb.model;
+
+import com.owsb.io.RecordReader;
+import com.owsb.io.TailReader;
+import java.io.*;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Parsed records of one append-only data file, kept in memory and brought
+ * up to date through a {@link TailReader}: each read parses only the lines
+ * appended since the previous one, and a file that was truncated or
+ * rewritten is parsed again from the start.
+ */
+final class RecordCache<T> {
+    private final TailReader tail;
+    private final Function<RecordReader, T> parser;
+    private final List<T> records = new ArrayList<>();
+
+    private final TailReader.Listener listener = new TailReader.Listener() {
+        @Override
+        public void reset() {
+            records.clear();
+        }
+
+        @Override
+        public void record(RecordReader reader) {
+            T record = parser.apply(reader);
+            if (record != null) {
+                records.add(record);
+            }
+        }
+    };
+
+    // The parser returns null for lines that are not records
+    RecordCache(File file, Function<RecordReader, T> parser) {
+        this.tail = new TailReader(file);
+        this.parser = parser;
+    }
+
+    // Current records, in file order; the list is a snapshot but the records are shared
+    synchronized List<T> records() {
+        try {
+            tail.poll(listener);
+        } catch (IOException e) {
+            e.printStackTrace();
+            // Part of the new lines may have been delivered; start over on the next read
+            invalidate();
+        }
+        return new ArrayList<>(records);
+    }
+
+    // Drop everything, e.g. after rewriting the file
+    synchronized void invalidate() {
+        tail.rewind();
+        records.clear();
+    }
+}
@@ -0,0 +1,178 @@
+package com.owsb.model;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Reacts to items crossing their reorder level.
+ * The item catalog keeps the set of items at or below their reorder level
+ * up to date as stock changes are written (sales, adjustments and received
+ * purchase orders all go through {@link Item#updateStocks}), and reports
+ * every item whose stock crosses the level in either direction. The engine
+ * delivers those crossings to its listeners and, when a requester has been
+ * set, drafts a PENDING purchase requisition per supplier for the items
+ * that dropped to or below their level. The work done per stock change is
+ * proportional to the items it touched, not to the catalog.
+ * <p>
+ * Events are delivered in order on a single background thread, so
+ * listeners never run while a stock write holds its locks.
+ */
+public final class ReorderEngine {
+    // Days between drafting a requisition and the date it is required by
+    private static final int LEAD_DAYS = 7;
+    // Drafted quantities bring stock back up to this many times the reorder level
+    private static final int TARGET_MULTIPLE = 2;
+
+    private static final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private static final ExecutorService dispatcher = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "reorder-events");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // User recorded as requester of drafted PRs; null when drafting is off
+    private static volatile String autoDraftRequester = null;
+    // Items drafted for that have not recovered since (only touched on the dispatcher thread)
+    private static final Set<String> drafted = new HashSet<>();
+
+    private ReorderEngine() {
+    }
+
+    /**
+     * An item whose stock moved across its reorder level.
+     */
+    public static final class Event {
+        private final Item item;
+        private final int previousStock;
+
+        Event(Item item, int previousStock) {
+            this.item = item;
+            this.previousStock = previousStock;
+        }
+
+        // The item as it is after the change
+        public Item getItem() {
+            return item.copy();
+        }
+
+        public String getItemCode() {
+            return item.getItemCode();
+        }
+
+        public int getPreviousStock() {
+            return previousStock;
+        }
+
+        public int getCurrentStock() {
+            return item.getCurrentStock();
+        }
+
+        // True if the item dropped to or below its reorder level, false if it recovered above it
+        public boolean isBelowReorderLevel() {
+            return isAtRisk(item);
+        }
+    }
+
+    /**
+     * Receives reorder events, on the engine's event thread.
+     */
+    public interface Listener {
+        void reorderLevelCrossed(Event event);
+    }
+
+    public static void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // Draft PRs for items that drop to their reorder level, requested by the given user; null turns it off
+    public static void setAutoDraftRequester(String userId) {
+        autoDraftRequester = userId;
+    }
+
+    // Items at or below their reorder level, most critical first
+    public static List<Item> getAtRiskItems() {
+        return ItemRepository.findBelowReorderLevel();
+    }
+
+    // An item needs reordering once its stock is at or below the reorder level
+    static boolean isAtRisk(Item item) {
+        return item.getCurrentStock() <= item.getReorderLevel();
+    }
+
+    // Called by the catalog, under its lock, with the items that crossed their level in one change
+    static void publish(List<Event> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        dispatcher.execute(() -> deliver(events));
+    }
+
+    private static void deliver(List<Event> events) {
+        List<Item> toDraft = new ArrayList<>();
+        for (Event event : events) {
+            if (!event.isBelowReorderLevel()) {
+                drafted.remove(event.getItemCode());
+            } else if (autoDraftRequester != null && drafted.add(event.getItemCode())) {
+                toDraft.add(event.getItem());
+            }
+        }
+        if (!toDraft.isEmpty()) {
+            draftRequisitions(toDraft, autoDraftRequester);
+        }
+
+        for (Event event : events) {
+            for (Listener listener : listeners) {
+                try {
+                    listener.reorderLevelCrossed(event);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    // Save one PENDING PR per supplier for the items not already on a pending PR
+    private static void draftRequisitions(List<Item> items, String requestedBy) {
+        Set<String> pending = new HashSet<>();
+        for (PurchaseRequisition pr : PurchaseRequisition.getPendingPRs()) {
+            for (PurchaseRequisition.PurchaseRequisitionItem line : pr.getItems()) {
+                pending.add(line.getItemCode());
+            }
+        }
+
+        Map<String, List<Item>> bySupplier = new LinkedHashMap<>();
+        for (Item item : items) {
+            if (!pending.contains(item.getItemCode())) {
+                bySupplier.computeIfAbsent(item.getSupplierId(), k -> new ArrayList<>()).add(item);
+            }
+        }
+
+        Calendar calendar = Calendar.getInstance();
+        Date today = calendar.getTime();
+        calendar.add(Calendar.DAY_OF_MONTH, LEAD_DAYS);
+        Date requiredDate = calendar.getTime();
+
+        for (Map.Entry<String, List<Item>> supplier : bySupplier.entrySet()) {
+            PurchaseRequisition pr = new PurchaseRequisition(
+                PurchaseRequisition.generatePRId(), today, requiredDate, "PENDING", requestedBy);
+            for (Item item : supplier.getValue()) {
+                int quantity = Math.max(1, TARGET_MULTIPLE * item.getReorderLevel() - item.getCurrentStock());
+                pr.addItem(new PurchaseRequisition.PurchaseRequisitionItem(
+                    pr.getPrId(), item.getItemCode(), quantity, supplier.getKey()));
+            }
+            if (!pr.savePR()) {
+                System.out.println("Error drafting purchase requisition for supplier " + supplier.getKey());
+                // Try again the next time one of these items drops
+                for (Item item : supplier.getValue()) {
+                    drafted.remove(item.getItemCode());
+                }
+            }
+        }
+    }
+}
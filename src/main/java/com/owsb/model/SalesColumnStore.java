@@ -0,0 +1,226 @@
+package com.owsb.model;
+
+import com.owsb.io.MappedRecordScanner;
+import java.util.*;
+
+/**
+ * Sales records held column by column in primitive arrays, for
+ * aggregations over large parts of the sales history.
+ * Each record takes 32 bytes: its epoch day, item, quantity, unit price,
+ * sales amount and recording user, with item codes and user ids replaced by
+ * small ints from per-column dictionaries and money kept as whole cents.
+ * Sums are therefore exact, unlike totals of the double salesAmount, and
+ * scans over the rows read contiguous arrays. Sales ids are not kept; use
+ * DailySales to look records up.
+ * <p>
+ * A store is a snapshot and is never modified after loading, so it can be
+ * shared between threads. {@link #current()} reloads it when the sales
+ * files change.
+ */
+public final class SalesColumnStore {
+    private static SalesColumnStore current = null;
+    private static long currentSignature = 0;
+
+    private int size = 0;
+    private int[] days = new int[1024];
+    private int[] items = new int[1024];
+    private int[] quantities = new int[1024];
+    private long[] unitPriceCents = new long[1024];
+    private long[] amountCents = new long[1024];
+    private int[] recordedBy = new int[1024];
+
+    private final Dictionary itemCodes = new Dictionary();
+    private final Dictionary users = new Dictionary();
+
+    private SalesColumnStore() {
+    }
+
+    // Every sales record
+    private static SalesColumnStore load() {
+        SalesColumnStore store = new SalesColumnStore();
+        DailySales.scanSales(null, null, record -> {
+            try {
+                store.add(record);
+            } catch (IllegalArgumentException e) {
+                // Skip records with unreadable numbers, as the DailySales loaders do
+            }
+        });
+        store.trimToSize();
+        return store;
+    }
+
+    // Every sales record, loaded again only when a sales file has changed since the last call
+    public static synchronized SalesColumnStore current() {
+        long signature = SalesPartitions.signature();
+        if (current == null || signature != currentSignature) {
+            current = load();
+            currentSignature = signature;
+        }
+        return current;
+    }
+
+    private void add(MappedRecordScanner record) {
+        // Decode every column before storing any, so a bad record leaves nothing behind
+        int day = record.getEpochDay(DailySales.COLUMN_DATE);
+        int quantity = record.getInt(DailySales.COLUMN_QUANTITY);
+        long unitPrice = record.getCents(DailySales.COLUMN_UNIT_PRICE);
+        long amount = record.getCents(DailySales.COLUMN_SALES_AMOUNT);
+        int item = itemCodes.idOf(record, DailySales.COLUMN_ITEM_CODE);
+        int user = users.idOf(record, DailySales.COLUMN_RECORDED_BY);
+
+        if (size == days.length) {
+            int capacity = Math.max(1024, size * 2);
+            days = Arrays.copyOf(days, capacity);
+            items = Arrays.copyOf(items, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+            unitPriceCents = Arrays.copyOf(unitPriceCents, capacity);
+            amountCents = Arrays.copyOf(amountCents, capacity);
+            recordedBy = Arrays.copyOf(recordedBy, capacity);
+        }
+        days[size] = day;
+        items[size] = item;
+        quantities[size] = quantity;
+        unitPriceCents[size] = unitPrice;
+        amountCents[size] = amount;
+        recordedBy[size] = user;
+        size++;
+    }
+
+    // Drop the spare capacity left by loading
+    private void trimToSize() {
+        days = Arrays.copyOf(days, size);
+        items = Arrays.copyOf(items, size);
+        quantities = Arrays.copyOf(quantities, size);
+        unitPriceCents = Arrays.copyOf(unitPriceCents, size);
+        amountCents = Arrays.copyOf(amountCents, size);
+        recordedBy = Arrays.copyOf(recordedBy, size);
+    }
+
+    // Number of records
+    public int size() {
+        return size;
+    }
+
+    // Columns of one record, by position in the store
+    public int epochDay(int row) {
+        checkRow(row);
+        return days[row];
+    }
+
+    public int itemId(int row) {
+        checkRow(row);
+        return items[row];
+    }
+
+    public int quantity(int row) {
+        checkRow(row);
+        return quantities[row];
+    }
+
+    public long amountCents(int row) {
+        checkRow(row);
+        return amountCents[row];
+    }
+
+    public int recordedById(int row) {
+        checkRow(row);
+        return recordedBy[row];
+    }
+
+    // Item dictionary: ids run from 0 to itemCount() - 1
+    public int itemCount() {
+        return itemCodes.size();
+    }
+
+    public String itemCode(int itemId) {
+        return itemCodes.value(itemId);
+    }
+
+    // User dictionary: ids run from 0 to userCount() - 1
+    public int userCount() {
+        return users.size();
+    }
+
+    public String userId(int recordedById) {
+        return users.value(recordedById);
+    }
+
+    // Quantity sold per item id between two epoch days (inclusive)
+    public long[] quantityByItem(int fromEpochDay, int toEpochDay) {
+        long[] totals = new long[itemCount()];
+        for (int i = 0; i < size; i++) {
+            int day = days[i];
+            if (day >= fromEpochDay && day <= toEpochDay) {
+                totals[items[i]] += quantities[i];
+            }
+        }
+        return totals;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+    }
+
+    // Distinct values of a text column, numbered in order of first appearance
+    private static final class Dictionary {
+        private final List<String> values = new ArrayList<>();
+        private int[] valueHashes = new int[16];
+        // Open addressing on the field hash; each slot holds id + 1, or 0 when empty
+        private int[] slots = new int[64];
+
+        int size() {
+            return values.size();
+        }
+
+        String value(int id) {
+            return values.get(id);
+        }
+
+        // Id of a field's value, adding it if new; only a new value creates a String
+        int idOf(MappedRecordScanner record, int field) {
+            int hash = record.fieldHash(field);
+            int mask = slots.length - 1;
+            int slot = mix(hash) & mask;
+            while (slots[slot] != 0) {
+                int id = slots[slot] - 1;
+                if (valueHashes[id] == hash && record.fieldEquals(field, values.get(id))) {
+                    return id;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            int id = values.size();
+            String value = record.getString(field);
+            values.add(value);
+            if (id == valueHashes.length) {
+                valueHashes = Arrays.copyOf(valueHashes, id * 2);
+            }
+            valueHashes[id] = hash;
+            slots[slot] = id + 1;
+            if (values.size() * 2 > slots.length) {
+                rehash();
+            }
+            return id;
+        }
+
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            int mask = slots.length - 1;
+            for (int id = 0; id < values.size(); id++) {
+                int slot = mix(valueHashes[id]) & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = id + 1;
+            }
+        }
+
+        // Spread the hash bits, since codes like I001..I999 differ only in their last bytes
+        private static int mix(int hash) {
+            hash *= 0x9E3779B9;
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
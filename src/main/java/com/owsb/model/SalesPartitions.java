@@ -0,0 +1,292 @@
+package com.owsb.model;
+
+import com.owsb.io.DateCodec;
+import com.owsb.io.RecordReader;
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Month-partitioned storage for sales records.
+ * Each month with sales has its own file, data/sales/yyyy-MM.txt, in the
+ * same line format as the old single daily_sales.txt, and
+ * data/sales/manifest.txt lists the months that have a partition. A date
+ * range query only opens the partitions of the months it overlaps, so
+ * looking up recent sales does not get slower as history grows. New
+ * records are appended to the partition of their sales date.
+ * Another instance of the application may add partitions, so the manifest
+ * is read again whenever its length or modification time changed, and it
+ * is only rewritten under a file lock after catching up with it.
+ * The old daily_sales.txt is split into partitions on first use.
+ */
+final class SalesPartitions {
+    private static final String DIRECTORY = "data/sales";
+    private static final String MANIFEST = "data/sales/manifest.txt";
+    private static final String MANIFEST_LOCK = "data/sales/manifest.lock";
+    private static final String LEGACY_FILE = "data/daily_sales.txt";
+    private static final String EXTENSION = ".txt";
+
+    // Month indexes (months since January 1970) that have a partition
+    private static TreeSet<Integer> months = null;
+    // Length and modification time of the manifest as last read or written here (-1 if it did not exist)
+    private static long manifestLength = -1;
+    private static long manifestModified = -1;
+    // Months appended to since the last force; null means unknown, so force them all
+    private static Set<Integer> unforced = null;
+
+    private SalesPartitions() {
+    }
+
+    // Every partition file in chronological order
+    static synchronized List<File> all() {
+        ensureLoaded();
+        return files(months);
+    }
+
+    // Partition files that can hold sales dated between the two epoch days (inclusive)
+    static synchronized List<File> overlapping(int fromEpochDay, int toEpochDay) {
+        ensureLoaded();
+        if (fromEpochDay > toEpochDay) {
+            return new ArrayList<>();
+        }
+        return files(months.subSet(DateCodec.monthIndex(fromEpochDay), true,
+                                   DateCodec.monthIndex(toEpochDay), true));
+    }
+
+    // Append records to the partitions of their months, one write per partition
+    static synchronized void append(List<DailySales> records) throws IOException {
+        ensureLoaded();
+
+        Map<Integer, StringBuilder> linesByMonth = new TreeMap<>();
+        for (DailySales sales : records) {
+            int month = DateCodec.monthIndex(DateCodec.fromDate(sales.getSalesDate()));
+            linesByMonth.computeIfAbsent(month, k -> new StringBuilder())
+                .append(sales.formatSalesData()).append(System.lineSeparator());
+        }
+
+        // List new partitions in the manifest before writing to them
+        if (!months.containsAll(linesByMonth.keySet())) {
+            addToManifest(linesByMonth.keySet());
+        }
+
+        for (Map.Entry<Integer, StringBuilder> entry : linesByMonth.entrySet()) {
+            try (FileOutputStream fos = new FileOutputStream(fileFor(entry.getKey()), true)) {
+                fos.write(entry.getValue().toString().getBytes());
+            }
+            if (unforced != null) {
+                unforced.add(entry.getKey());
+            }
+        }
+    }
+
+    // Replace the contents of one partition file
+    static synchronized void rewrite(File partition, List<String> lines) throws IOException {
+        Path target = partition.toPath();
+        Path temp = Paths.get(partition.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temp.toFile());
+             PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(fos)))) {
+            for (String line : lines) {
+                out.println(line);
+            }
+            out.flush();
+            fos.getFD().sync();
+        }
+
+        try {
+            replace(temp, target);
+        } catch (AccessDeniedException e) {
+            // On Windows a file cannot be replaced while a mapping from an earlier
+            // scan is still waiting to be garbage collected; release it and retry
+            System.gc();
+            System.runFinalization();
+            replace(temp, target);
+        }
+    }
+
+    private static void replace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Force appended partitions to disk
+    static synchronized void force() throws IOException {
+        ensureLoaded();
+        Collection<Integer> toForce = unforced != null ? unforced : months;
+        for (File file : files(toForce)) {
+            try (FileOutputStream fos = new FileOutputStream(file, true)) {
+                fos.getFD().sync();
+            }
+        }
+        unforced = new HashSet<>();
+    }
+
+    // Drop partially written last records left by a crash
+    static synchronized void repairTornTails() throws IOException {
+        ensureLoaded();
+        for (File file : files(months)) {
+            TransactionJournal.truncateTornLine(file);
+        }
+    }
+
+    // Changes whenever a partition is appended to or rewritten, including from outside the application
+    static synchronized long signature() {
+        ensureLoaded();
+        long signature = months.hashCode();
+        for (File file : files(months)) {
+            signature = signature * 31 + file.length();
+            signature = signature * 31 + file.lastModified();
+        }
+        return signature;
+    }
+
+    static File fileFor(int month) {
+        return new File(DIRECTORY, DateCodec.formatMonth(month) + EXTENSION);
+    }
+
+    // Existing partition files of the given months
+    private static List<File> files(Collection<Integer> monthIndexes) {
+        List<File> files = new ArrayList<>(monthIndexes.size());
+        for (int month : monthIndexes) {
+            File file = fileFor(month);
+            if (file.exists()) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Read the manifest on first use and again whenever it changed since it
+     * was last read or written here, splitting up the legacy file if there
+     * is no manifest yet.
+     */
+    private static void ensureLoaded() {
+        File manifest = new File(MANIFEST);
+        if (months != null && manifestUnchanged(manifest)) {
+            return;
+        }
+
+        try {
+            if (manifest.exists()) {
+                months = readManifest(manifest);
+            } else if (new File(LEGACY_FILE).exists()) {
+                months = migrateLegacyFile();
+            } else {
+                months = new TreeSet<>();
+            }
+        } catch (IOException e) {
+            System.out.println("Error loading sales partitions: " + e.getMessage());
+            months = new TreeSet<>();
+        }
+        stampManifest(manifest);
+    }
+
+    private static boolean manifestUnchanged(File manifest) {
+        return manifest.exists()
+            ? manifest.length() == manifestLength && manifest.lastModified() == manifestModified
+            : manifestLength == -1;
+    }
+
+    private static void stampManifest(File manifest) {
+        manifestLength = manifest.exists() ? manifest.length() : -1;
+        manifestModified = manifest.exists() ? manifest.lastModified() : -1;
+    }
+
+    // List more months in the manifest, keeping any that another instance listed since it was read here
+    private static void addToManifest(Set<Integer> added) throws IOException {
+        File directory = new File(DIRECTORY);
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        try (FileChannel channel = FileChannel.open(Paths.get(MANIFEST_LOCK),
+                 StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.lock();
+            try {
+                File manifest = new File(MANIFEST);
+                TreeSet<Integer> updated = manifest.exists() ? readManifest(manifest) : new TreeSet<>();
+                updated.addAll(months);
+                updated.addAll(added);
+                writeManifest(updated);
+                months = updated;
+                stampManifest(manifest);
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    private static TreeSet<Integer> readManifest(File manifest) throws IOException {
+        TreeSet<Integer> listed = new TreeSet<>();
+        try (RecordReader reader = new RecordReader(manifest)) {
+            while (reader.next()) {
+                if (!reader.isEmpty(0)) {
+                    try {
+                        listed.add(DateCodec.parseMonth(reader.getString(0)));
+                    } catch (IllegalArgumentException e) {
+                        // Skip malformed lines
+                    }
+                }
+            }
+        }
+        return listed;
+    }
+
+    // Write to a temp file, force it to disk and atomically replace the old manifest
+    private static void writeManifest(Set<Integer> monthIndexes) throws IOException {
+        File directory = new File(DIRECTORY);
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+
+        List<String> lines = new ArrayList<>();
+        for (int month : monthIndexes) {
+            lines.add(DateCodec.formatMonth(month));
+        }
+        rewrite(new File(MANIFEST), lines);
+    }
+
+    // Copy each line of daily_sales.txt into its month's partition, then retire the old file
+    private static TreeSet<Integer> migrateLegacyFile() throws IOException {
+        File legacy = new File(LEGACY_FILE);
+        TransactionJournal.truncateTornLine(legacy);
+
+        Map<Integer, List<String>> linesByMonth = new TreeMap<>();
+        int skipped = 0;
+        try (RecordReader reader = new RecordReader(legacy)) {
+            while (reader.next()) {
+                if (reader.fieldCount() < 7) {
+                    continue;
+                }
+                try {
+                    int month = DateCodec.monthIndex(reader.getEpochDay(1));
+                    linesByMonth.computeIfAbsent(month, k -> new ArrayList<>()).add(reader.line());
+                } catch (IllegalArgumentException e) {
+                    skipped++;
+                }
+            }
+        }
+
+        File directory = new File(DIRECTORY);
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        // Partitions are written whole, so an interrupted migration simply runs again
+        for (Map.Entry<Integer, List<String>> entry : linesByMonth.entrySet()) {
+            rewrite(fileFor(entry.getKey()), entry.getValue());
+        }
+        TreeSet<Integer> migrated = new TreeSet<>(linesByMonth.keySet());
+        writeManifest(migrated);
+
+        legacy.renameTo(new File(LEGACY_FILE + ".migrated"));
+        if (skipped > 0) {
+            System.out.println("Sales migration skipped " + skipped
+                + " records with an unreadable date; they remain in " + LEGACY_FILE + ".migrated");
+        }
+        return migrated;
+    }
+}
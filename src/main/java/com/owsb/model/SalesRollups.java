@@ -0,0 +1,284 @@
+package com.owsb.model;
+
+import com.owsb.io.DateCodec;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+
+/**
+ * Pre-aggregated sales totals for reports: revenue, quantity and number of
+ * transactions per item, rolled up per day and per month.
+ * A month's rollups are built from its sales partition the first time a
+ * report covers it, and are then kept up to date as sales are saved,
+ * updated and deleted. A report over a date range adds up the monthly rows
+ * of the months it covers completely and the daily rows of the months at
+ * either end, so it reads at most a few dozen rows per item whatever the
+ * size of the sales history.
+ * <p>
+ * Each built month remembers the size and modification time of its
+ * partition file as of the last change made through DailySales; if the
+ * file has changed in some other way, the month is built again.
+ */
+public final class SalesRollups {
+    private static final String UNCATEGORIZED = "Uncategorized";
+
+    // Totals per item code, per epoch day and per month index, for the built months
+    private static final TreeMap<Integer, Map<String, Totals>> daily = new TreeMap<>();
+    private static final TreeMap<Integer, Map<String, Totals>> monthly = new TreeMap<>();
+    // Partition length and modification time each built month was last in step with
+    private static final Map<Integer, long[]> builtFrom = new HashMap<>();
+
+    private SalesRollups() {
+    }
+
+    /**
+     * Revenue, quantity and number of transactions of a group of sales.
+     */
+    public static final class Totals {
+        private long revenueCents;
+        private long quantity;
+        private int transactions;
+
+        public long getRevenueCents() {
+            return revenueCents;
+        }
+
+        public long getQuantity() {
+            return quantity;
+        }
+
+        public int getTransactions() {
+            return transactions;
+        }
+
+        private void add(Totals other) {
+            revenueCents += other.revenueCents;
+            quantity += other.quantity;
+            transactions += other.transactions;
+        }
+
+        private void add(long revenueCents, long quantity, int transactions) {
+            this.revenueCents += revenueCents;
+            this.quantity += quantity;
+            this.transactions += transactions;
+        }
+
+        private boolean isEmpty() {
+            return transactions == 0 && revenueCents == 0 && quantity == 0;
+        }
+    }
+
+    // Totals of the sales dated between two dates (inclusive)
+    public static Totals total(Date startDate, Date endDate) {
+        Totals total = new Totals();
+        for (Totals totals : totalsByItem(startDate, endDate).values()) {
+            total.add(totals);
+        }
+        return total;
+    }
+
+    // Totals per item code of the sales dated between two dates (inclusive)
+    public static synchronized Map<String, Totals> totalsByItem(Date startDate, Date endDate) {
+        int fromDay = DateCodec.fromDate(startDate);
+        int toDay = DateCodec.fromDate(endDate);
+        Map<String, Totals> totals = new TreeMap<>();
+        if (fromDay > toDay) {
+            return totals;
+        }
+
+        int lastMonth = DateCodec.monthIndex(toDay);
+        for (int month = DateCodec.monthIndex(fromDay); month <= lastMonth; month++) {
+            ensureBuilt(month);
+            int monthStart = DateCodec.firstDayOfMonth(month);
+            int monthEnd = DateCodec.firstDayOfMonth(month + 1) - 1;
+            if (fromDay <= monthStart && toDay >= monthEnd) {
+                addAll(totals, monthly.get(month));
+            } else {
+                for (Map<String, Totals> day : daily.subMap(Math.max(fromDay, monthStart), true,
+                                                            Math.min(toDay, monthEnd), true).values()) {
+                    addAll(totals, day);
+                }
+            }
+        }
+        return totals;
+    }
+
+    // Totals per item category; items no longer in the catalog count as Uncategorized
+    public static Map<String, Totals> totalsByCategory(Date startDate, Date endDate) {
+        Map<String, Totals> totals = new TreeMap<>();
+        for (Map.Entry<String, Totals> entry : totalsByItem(startDate, endDate).entrySet()) {
+            Item item = Item.getItemByCode(entry.getKey());
+            String category = item != null && item.getCategory() != null && !item.getCategory().isEmpty()
+                ? item.getCategory() : UNCATEGORIZED;
+            totals.computeIfAbsent(category, k -> new Totals()).add(entry.getValue());
+        }
+        return totals;
+    }
+
+    /**
+     * The limit items with the highest revenue between two dates (inclusive),
+     * highest first. The per-item totals are streamed through a min-heap of
+     * at most limit entries, so only the current leaders are ever kept and
+     * ordered.
+     */
+    public static List<Map.Entry<String, Totals>> topItems(Date startDate, Date endDate, int limit) {
+        Comparator<Map.Entry<String, Totals>> byRevenue = (a, b) -> {
+            int compare = Long.compare(a.getValue().getRevenueCents(), b.getValue().getRevenueCents());
+            // On equal revenue the lower item code ranks higher
+            return compare != 0 ? compare : b.getKey().compareTo(a.getKey());
+        };
+
+        PriorityQueue<Map.Entry<String, Totals>> leaders = new PriorityQueue<>(Math.max(1, limit), byRevenue);
+        if (limit > 0) {
+            for (Map.Entry<String, Totals> entry : totalsByItem(startDate, endDate).entrySet()) {
+                if (leaders.size() < limit) {
+                    leaders.add(entry);
+                } else if (byRevenue.compare(entry, leaders.peek()) > 0) {
+                    leaders.poll();
+                    leaders.add(entry);
+                }
+            }
+        }
+
+        List<Map.Entry<String, Totals>> top = new ArrayList<>(leaders);
+        top.sort(byRevenue.reversed());
+        return top;
+    }
+
+    // Totals per month (as yyyy-MM) of the months from startDate's to endDate's, including empty ones
+    public static synchronized Map<String, Totals> totalsByMonth(Date startDate, Date endDate) {
+        Map<String, Totals> totals = new LinkedHashMap<>();
+        int lastMonth = DateCodec.monthIndex(DateCodec.fromDate(endDate));
+        for (int month = DateCodec.monthIndex(DateCodec.fromDate(startDate)); month <= lastMonth; month++) {
+            ensureBuilt(month);
+            Totals total = new Totals();
+            Map<String, Totals> byItem = monthly.get(month);
+            if (byItem != null) {
+                for (Totals itemTotals : byItem.values()) {
+                    total.add(itemTotals);
+                }
+            }
+            totals.put(DateCodec.formatMonth(month), total);
+        }
+        return totals;
+    }
+
+    // Append sales to their partitions and roll them up in one step, so a report never counts them twice
+    static synchronized void append(List<DailySales> records) throws IOException {
+        Set<Integer> stale = staleMonths(records);
+        SalesPartitions.append(records);
+        apply(records, 1, stale);
+    }
+
+    // Replace a partition's lines with kept and take the removed sales out of the rollups
+    static synchronized void rewrite(File partition, List<String> kept, List<DailySales> removed) throws IOException {
+        Set<Integer> stale = staleMonths(removed);
+        SalesPartitions.rewrite(partition, kept);
+        apply(removed, -1, stale);
+    }
+
+    // Built months of the records whose partition changed since the month was last in step with it
+    private static Set<Integer> staleMonths(List<DailySales> records) {
+        Set<Integer> stale = new HashSet<>();
+        for (DailySales sales : records) {
+            int month = DateCodec.monthIndex(DateCodec.fromDate(sales.getSalesDate()));
+            long[] built = builtFrom.get(month);
+            if (built != null && !Arrays.equals(built, stamp(month))) {
+                stale.add(month);
+            }
+        }
+        return stale;
+    }
+
+    /**
+     * Add (sign 1) or take away (sign -1) records in the months that are
+     * built. Stale months are dropped instead, to be built again from their
+     * partitions, as their new stamp would also cover the changes made
+     * elsewhere.
+     */
+    private static void apply(List<DailySales> records, int sign, Set<Integer> stale) {
+        Set<Integer> months = new HashSet<>();
+        for (DailySales sales : records) {
+            int day = DateCodec.fromDate(sales.getSalesDate());
+            int month = DateCodec.monthIndex(day);
+            if (builtFrom.containsKey(month) && !stale.contains(month)) {
+                add(day, month, sales.getItemCode(), sign * cents(sales.getSalesAmount()),
+                    sign * (long) sales.getQuantity(), sign);
+                months.add(month);
+            }
+        }
+        for (int month : months) {
+            builtFrom.put(month, stamp(month));
+        }
+        for (int month : stale) {
+            builtFrom.remove(month);
+        }
+    }
+
+    // Build a month from its partition if it has not been built or the file changed behind our back
+    private static void ensureBuilt(int month) {
+        long[] stamp = stamp(month);
+        if (Arrays.equals(stamp, builtFrom.get(month))) {
+            return;
+        }
+
+        int monthStart = DateCodec.firstDayOfMonth(month);
+        int monthEnd = DateCodec.firstDayOfMonth(month + 1) - 1;
+        daily.subMap(monthStart, true, monthEnd, true).clear();
+        monthly.remove(month);
+
+        DailySales.scanSales(DateCodec.toDate(monthStart), DateCodec.toDate(monthEnd), record -> {
+            try {
+                int day = record.getEpochDay(DailySales.COLUMN_DATE);
+                long quantity = record.getInt(DailySales.COLUMN_QUANTITY);
+                long revenueCents = record.getCents(DailySales.COLUMN_SALES_AMOUNT);
+                add(day, month, record.getString(DailySales.COLUMN_ITEM_CODE), revenueCents, quantity, 1);
+            } catch (IllegalArgumentException e) {
+                // Skip records with unreadable numbers, as the DailySales loaders do
+            }
+        });
+        builtFrom.put(month, stamp);
+    }
+
+    private static void add(int day, int month, String itemCode, long revenueCents, long quantity, int transactions) {
+        addTo(daily, day, itemCode, revenueCents, quantity, transactions);
+        addTo(monthly, month, itemCode, revenueCents, quantity, transactions);
+    }
+
+    private static void addTo(TreeMap<Integer, Map<String, Totals>> rollup, int period, String itemCode,
+                              long revenueCents, long quantity, int transactions) {
+        Map<String, Totals> byItem = rollup.computeIfAbsent(period, k -> new HashMap<>());
+        Totals totals = byItem.computeIfAbsent(itemCode, k -> new Totals());
+        totals.add(revenueCents, quantity, transactions);
+        // Drop rows that a deletion brought back to nothing
+        if (totals.isEmpty()) {
+            byItem.remove(itemCode);
+            if (byItem.isEmpty()) {
+                rollup.remove(period);
+            }
+        }
+    }
+
+    // Add copies of the rows of one period to totals
+    private static void addAll(Map<String, Totals> totals, Map<String, Totals> period) {
+        if (period == null) {
+            return;
+        }
+        for (Map.Entry<String, Totals> entry : period.entrySet()) {
+            totals.computeIfAbsent(entry.getKey(), k -> new Totals()).add(entry.getValue());
+        }
+    }
+
+    // An amount in whole cents, rounded the way the sales file stores it
+    private static long cents(double amount) {
+        return BigDecimal.valueOf(amount).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+    }
+
+    // Length and modification time of a month's partition; a missing partition is all zeros
+    private static long[] stamp(int month) {
+        File partition = SalesPartitions.fileFor(month);
+        return new long[] {partition.length(), partition.lastModified()};
+    }
+}
@@ -0,0 +1,583 @@
+package com.owsb.model;
+
+import java.util.*;
+
+/**
+ * In-memory full-text index over items, suppliers, purchase requisitions and
+ * purchase orders, for searching everything from one box.
+ * Each record is a document whose text is split into lower-case words
+ * (runs of letters and digits). Primary fields (codes, IDs and names) weigh
+ * twice as much as the others (descriptions, categories, contacts and
+ * statuses). Every word has a posting list of the documents it is in, the
+ * words are kept sorted so a query word can match them by prefix, and each
+ * three-letter sequence lists the words containing it so a query word of
+ * three or more letters also matches inside words.
+ * <p>
+ * A query word matches a document's word exactly (3 points), as a prefix (2)
+ * or inside it (1), times the field weight; a document has to match every
+ * query word, and its score is the sum of their best matches. The rarest
+ * query word drives the search: its matches are visited from the best
+ * scoring kind down, each document is checked against the other words
+ * through its own word list, and the search stops as soon as nothing left to
+ * visit could beat the hits already found.
+ * <p>
+ * The index is built on first use and then kept up to date by the models'
+ * save, update and delete methods. An updated record is added again as a new
+ * document and its old one is skipped until the index is compacted.
+ */
+public final class SearchIndex {
+    // Points for how a query word matches a document word, and weights of the two kinds of field
+    private static final int EXACT = 3;
+    private static final int PREFIX = 2;
+    private static final int INFIX = 1;
+    private static final int PRIMARY_WEIGHT = 2;
+    private static final int SECONDARY_WEIGHT = 1;
+    private static final int MAX_SCORE_PER_WORD = EXACT * PRIMARY_WEIGHT;
+    // Query words beyond this many are ignored
+    private static final int MAX_QUERY_WORDS = 8;
+    // Most dictionary words a query word is matched against up front; past this each one is compared as it comes
+    private static final int MAX_MATCHED_WORDS = 50000;
+    // Deleted documents kept before the index is compacted, at least
+    private static final int MIN_DELETED_TO_COMPACT = 1024;
+
+    /**
+     * What kind of record a document is.
+     */
+    public enum Type {
+        ITEM, SUPPLIER, PURCHASE_REQUISITION, PURCHASE_ORDER
+    }
+
+    /**
+     * A matching record, with a title and a line of detail to show for it.
+     */
+    public static final class Hit {
+        private final Type type;
+        private final String id;
+        private final String title;
+        private final String detail;
+        private final int score;
+
+        Hit(Type type, String id, String title, String detail, int score) {
+            this.type = type;
+            this.id = id;
+            this.title = title;
+            this.detail = detail;
+            this.score = score;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getDetail() {
+            return detail;
+        }
+
+        public int getScore() {
+            return score;
+        }
+    }
+
+    // One record: the numbers of its words, primary ones first
+    private static final class Doc {
+        final Type type;
+        final String id;
+        final String title;
+        final String detail;
+        final int[] words;
+        final int primaryWords;
+
+        Doc(Type type, String id, String title, String detail, int[] words, int primaryWords) {
+            this.type = type;
+            this.id = id;
+            this.title = title;
+            this.detail = detail;
+            this.words = words;
+            this.primaryWords = primaryWords;
+        }
+    }
+
+    // A word and the documents it is in, each stored as doc << 1 | 1 if the word is in a primary field
+    private static final class Word {
+        final String text;
+        final int number;
+        int[] postings = new int[2];
+        int size = 0;
+
+        Word(String text, int number) {
+            this.text = text;
+            this.number = number;
+        }
+
+        void add(int posting) {
+            if (size == postings.length) {
+                postings = Arrays.copyOf(postings, size * 2);
+            }
+            postings[size++] = posting;
+        }
+    }
+
+    // A query word other than the one driving the search, and the points each dictionary word scores for it
+    private static final class QueryWord {
+        final String text;
+        // By word number; null when too many words match to list, so each word's text is compared instead
+        final byte[] points;
+        final int maxPoints;
+
+        QueryWord(String text, byte[] points, int maxPoints) {
+            this.text = text;
+            this.points = points;
+            this.maxPoints = maxPoints;
+        }
+
+        int points(int word) {
+            return points != null ? points[word] : match(wordList.get(word).text, text);
+        }
+
+        // Points for the document's best match of this word, 0 if it does not match
+        int score(Doc doc) {
+            int best = 0;
+            for (int i = 0; i < doc.words.length; i++) {
+                int score = points(doc.words[i]) * (i < doc.primaryWords ? PRIMARY_WEIGHT : SECONDARY_WEIGHT);
+                if (score > best) {
+                    best = score;
+                    if (best == MAX_SCORE_PER_WORD) {
+                        break;
+                    }
+                }
+            }
+            return best;
+        }
+    }
+
+    // Growable list of word numbers
+    private static final class Ints {
+        int[] values = new int[4];
+        int size = 0;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    private static List<Doc> docs = null;
+    private static BitSet deleted;
+    private static int deletedCount;
+    private static Map<String, Integer> docByKey;
+    private static TreeMap<String, Word> words;
+    private static List<Word> wordList;
+    private static Map<String, Ints> wordsByTrigram;
+
+    private SearchIndex() {
+    }
+
+    /**
+     * The best matches for a query, best first, at most limit of them.
+     * Documents with the same score are in the order they were found:
+     * exact matches before prefix matches, then by word, then oldest first.
+     */
+    public static List<Hit> search(String query, int limit) {
+        return search(query, limit, EnumSet.allOf(Type.class));
+    }
+
+    // The best matches among the records of the given types, as above
+    public static synchronized List<Hit> search(String query, int limit, Set<Type> types) {
+        ensureLoaded();
+        List<String> queryWords = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (queryWords.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        if (queryWords.size() > MAX_QUERY_WORDS) {
+            queryWords = queryWords.subList(0, MAX_QUERY_WORDS);
+        }
+
+        String driver = rarest(queryWords);
+        List<QueryWord> others = new ArrayList<>();
+        int maxOthers = 0;
+        for (String queryWord : queryWords) {
+            if (!queryWord.equals(driver)) {
+                QueryWord other = queryWord(queryWord);
+                if (other.maxPoints == 0) {
+                    // No document can match every word
+                    return new ArrayList<>();
+                }
+                others.add(other);
+                maxOthers += other.maxPoints * PRIMARY_WEIGHT;
+            }
+        }
+
+        // Lowest scores first, and among equal scores the one found last
+        PriorityQueue<long[]> top = new PriorityQueue<>(limit + 1, (a, b) ->
+            a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(b[1], a[1]));
+        BitSet seen = new BitSet(docs.size());
+        long found = 0;
+
+        // Kinds of match of the driving word, best first: match points and the field they count for
+        int[][] tiers = {
+            {EXACT, PRIMARY_WEIGHT}, {PREFIX, PRIMARY_WEIGHT}, {EXACT, SECONDARY_WEIGHT},
+            {INFIX, PRIMARY_WEIGHT}, {PREFIX, SECONDARY_WEIGHT}, {INFIX, SECONDARY_WEIGHT}
+        };
+        search:
+        for (int[] tier : tiers) {
+            int tierScore = tier[0] * tier[1];
+            int primaryBit = tier[1] == PRIMARY_WEIGHT ? 1 : 0;
+            for (Iterator<Word> matches = matchingWords(driver, tier[0]); matches.hasNext(); ) {
+                Word word = matches.next();
+                for (int i = 0; i < word.size; i++) {
+                    if (top.size() == limit && top.peek()[0] >= tierScore + maxOthers) {
+                        // Nothing left can score higher than the hits already found
+                        break search;
+                    }
+                    int posting = word.postings[i];
+                    int doc = posting >>> 1;
+                    if ((posting & 1) != primaryBit || deleted.get(doc) || seen.get(doc)
+                            || !types.contains(docs.get(doc).type)) {
+                        continue;
+                    }
+                    seen.set(doc);
+
+                    int score = tierScore;
+                    for (QueryWord other : others) {
+                        int otherScore = other.score(docs.get(doc));
+                        if (otherScore == 0) {
+                            score = 0;
+                            break;
+                        }
+                        score += otherScore;
+                    }
+                    if (score == 0) {
+                        continue;
+                    }
+                    if (top.size() < limit) {
+                        top.add(new long[] {score, found++, doc});
+                    } else if (score > top.peek()[0]) {
+                        top.poll();
+                        top.add(new long[] {score, found++, doc});
+                    }
+                }
+            }
+        }
+
+        List<Hit> hits = new ArrayList<>();
+        while (!top.isEmpty()) {
+            long[] entry = top.poll();
+            Doc doc = docs.get((int) entry[2]);
+            hits.add(new Hit(doc.type, doc.id, doc.title, doc.detail, (int) entry[0]));
+        }
+        Collections.reverse(hits);
+        return hits;
+    }
+
+    // Number of records in the index
+    public static synchronized int size() {
+        ensureLoaded();
+        return docs.size() - deletedCount;
+    }
+
+    // Build the index from the data files if it has not been built yet
+    public static synchronized void ensureLoaded() {
+        if (docs != null) {
+            return;
+        }
+        clear();
+        for (Item item : Item.getAllItems()) {
+            itemSaved(item);
+        }
+        for (Supplier supplier : Supplier.getAllSuppliers()) {
+            supplierSaved(supplier);
+        }
+        for (PurchaseRequisition pr : PurchaseRequisition.getAllPRs()) {
+            requisitionSaved(pr);
+        }
+        for (PurchaseOrder po : PurchaseOrderLoader.loadHeaders()) {
+            orderSaved(po);
+        }
+    }
+
+    // Index an item as it was just saved; does nothing until the index is first used
+    static synchronized void itemSaved(Item item) {
+        put(Type.ITEM, item.getItemCode(), item.getItemName(), item.getItemCode() + ", " + item.getCategory(),
+            new String[] {item.getItemCode(), item.getItemName()},
+            new String[] {item.getDescription(), item.getCategory()});
+    }
+
+    static synchronized void supplierSaved(Supplier supplier) {
+        put(Type.SUPPLIER, supplier.getSupplierId(), supplier.getCompanyName(),
+            supplier.getSupplierId() + ", " + supplier.getContactPerson(),
+            new String[] {supplier.getSupplierId(), supplier.getCompanyName()},
+            new String[] {supplier.getContactPerson()});
+    }
+
+    static synchronized void requisitionSaved(PurchaseRequisition pr) {
+        put(Type.PURCHASE_REQUISITION, pr.getPrId(), pr.getPrId(), pr.getStatus(),
+            new String[] {pr.getPrId()},
+            new String[] {pr.getStatus()});
+    }
+
+    static synchronized void orderSaved(PurchaseOrder po) {
+        put(Type.PURCHASE_ORDER, po.getPoId(), po.getPoId(), po.getStatus() + ", " + po.getPrId(),
+            new String[] {po.getPoId()},
+            new String[] {po.getStatus(), po.getPrId()});
+    }
+
+    // Drop a deleted record
+    static synchronized void removed(Type type, String id) {
+        if (docs == null) {
+            return;
+        }
+        Integer doc = docByKey.remove(type + ":" + id);
+        if (doc != null) {
+            delete(doc);
+        }
+    }
+
+    /**
+     * Add or replace a record. Primary fields are the ones worth more when
+     * they match. Does nothing until the index is first used, as the first
+     * use reads every record from the data files.
+     */
+    static synchronized void put(Type type, String id, String title, String detail,
+                                 String[] primaryFields, String[] secondaryFields) {
+        if (docs == null) {
+            return;
+        }
+        String key = type + ":" + id;
+        Integer previous = docByKey.get(key);
+        if (previous != null) {
+            delete(previous);
+        }
+
+        LinkedHashSet<String> primary = new LinkedHashSet<>();
+        for (String field : primaryFields) {
+            primary.addAll(tokenize(field));
+        }
+        LinkedHashSet<String> secondary = new LinkedHashSet<>();
+        for (String field : secondaryFields) {
+            secondary.addAll(tokenize(field));
+        }
+        secondary.removeAll(primary);
+
+        int[] docWords = new int[primary.size() + secondary.size()];
+        int i = 0;
+        for (String word : primary) {
+            docWords[i++] = word(word).number;
+        }
+        for (String word : secondary) {
+            docWords[i++] = word(word).number;
+        }
+        int doc = docs.size();
+        docs.add(new Doc(type, id, title, detail, docWords, primary.size()));
+        docByKey.put(key, doc);
+        addPostings(doc, docs.get(doc));
+    }
+
+    // Empty the index, ready to be filled
+    static synchronized void clear() {
+        docs = new ArrayList<>();
+        deleted = new BitSet();
+        deletedCount = 0;
+        docByKey = new HashMap<>();
+        words = new TreeMap<>();
+        wordList = new ArrayList<>();
+        wordsByTrigram = new HashMap<>();
+    }
+
+    private static void delete(int doc) {
+        deleted.set(doc);
+        deletedCount++;
+        if (deletedCount >= MIN_DELETED_TO_COMPACT && deletedCount > docs.size() / 2) {
+            compact();
+        }
+    }
+
+    // Rebuild the dictionary and postings without the deleted documents
+    private static void compact() {
+        List<Doc> live = new ArrayList<>();
+        for (int doc = 0; doc < docs.size(); doc++) {
+            if (!deleted.get(doc)) {
+                live.add(docs.get(doc));
+            }
+        }
+        List<Word> oldWords = wordList;
+        clear();
+        for (Doc doc : live) {
+            int[] docWords = new int[doc.words.length];
+            for (int i = 0; i < docWords.length; i++) {
+                docWords[i] = word(oldWords.get(doc.words[i]).text).number;
+            }
+            Doc renumbered = new Doc(doc.type, doc.id, doc.title, doc.detail, docWords, doc.primaryWords);
+            docByKey.put(doc.type + ":" + doc.id, docs.size());
+            docs.add(renumbered);
+            addPostings(docs.size() - 1, renumbered);
+        }
+    }
+
+    private static void addPostings(int doc, Doc document) {
+        for (int i = 0; i < document.words.length; i++) {
+            wordList.get(document.words[i]).add(doc << 1 | (i < document.primaryWords ? 1 : 0));
+        }
+    }
+
+    // The dictionary entry of a word, added with its trigrams if it is new
+    private static Word word(String text) {
+        Word word = words.get(text);
+        if (word == null) {
+            int number = wordList.size();
+            word = new Word(text, number);
+            words.put(text, word);
+            wordList.add(word);
+            for (int i = 0; i + 3 <= text.length(); i++) {
+                Ints withTrigram = wordsByTrigram.computeIfAbsent(trigram(text, i), k -> new Ints());
+                // A trigram seen twice in the word lists it once
+                if (withTrigram.size == 0 || withTrigram.values[withTrigram.size - 1] != number) {
+                    withTrigram.add(number);
+                }
+            }
+        }
+        return word;
+    }
+
+    // The query word with the fewest documents, as far as can be told cheaply
+    private static String rarest(List<String> queryWords) {
+        if (queryWords.size() == 1) {
+            return queryWords.get(0);
+        }
+        String rarest = null;
+        long fewest = Long.MAX_VALUE;
+        // Longer words tend to be rarer, so they set a low bound for the others early
+        List<String> byLength = new ArrayList<>(queryWords);
+        byLength.sort((a, b) -> b.length() - a.length());
+        for (String queryWord : byLength) {
+            long count = 0;
+            for (Iterator<Word> matches = matchingWords(queryWord, PREFIX); matches.hasNext() && count < fewest; ) {
+                count += matches.next().size;
+            }
+            Word exact = words.get(queryWord);
+            count += exact != null ? exact.size : 0;
+            if (count < fewest) {
+                fewest = count;
+                rarest = queryWord;
+            }
+        }
+        return rarest;
+    }
+
+    // Dictionary words matching a query word in one way: exactly, by prefix, or inside (but not at the start)
+    private static Iterator<Word> matchingWords(String queryWord, int match) {
+        if (match == EXACT) {
+            Word word = words.get(queryWord);
+            return word != null ? Collections.singletonList(word).iterator() : Collections.emptyIterator();
+        }
+        if (match == PREFIX) {
+            return words.subMap(queryWord, false, queryWord + Character.MAX_VALUE, false).values().iterator();
+        }
+        if (queryWord.length() < 3) {
+            return Collections.emptyIterator();
+        }
+
+        // Candidates come from the query word's least common trigram
+        Ints candidates = null;
+        for (int i = 0; i + 3 <= queryWord.length(); i++) {
+            Ints withTrigram = wordsByTrigram.get(trigram(queryWord, i));
+            if (withTrigram == null) {
+                return Collections.emptyIterator();
+            }
+            if (candidates == null || withTrigram.size < candidates.size) {
+                candidates = withTrigram;
+            }
+        }
+        Ints fromTrigram = candidates;
+        return new Iterator<Word>() {
+            private int next = 0;
+            private Word word = advance();
+
+            private Word advance() {
+                while (next < fromTrigram.size) {
+                    Word candidate = wordList.get(fromTrigram.values[next++]);
+                    if (candidate.text.indexOf(queryWord, 1) > 0) {
+                        return candidate;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return word != null;
+            }
+
+            @Override
+            public Word next() {
+                if (word == null) {
+                    throw new NoSuchElementException();
+                }
+                Word current = word;
+                word = advance();
+                return current;
+            }
+        };
+    }
+
+    // A query word with the points of every dictionary word it matches
+    private static QueryWord queryWord(String text) {
+        byte[] points = new byte[wordList.size()];
+        int maxPoints = 0;
+        int matched = 0;
+        for (int match : new int[] {EXACT, PREFIX, INFIX}) {
+            for (Iterator<Word> matches = matchingWords(text, match); matches.hasNext(); ) {
+                Word word = matches.next();
+                if (++matched > MAX_MATCHED_WORDS) {
+                    return new QueryWord(text, null, words.containsKey(text) ? EXACT : PREFIX);
+                }
+                points[word.number] = (byte) Math.max(points[word.number], match);
+                maxPoints = Math.max(maxPoints, match);
+            }
+        }
+        return new QueryWord(text, points, maxPoints);
+    }
+
+    // Points for how a document word matches a query word, 0 if it does not
+    private static int match(String word, String queryWord) {
+        if (word.equals(queryWord)) {
+            return EXACT;
+        } else if (word.startsWith(queryWord)) {
+            return PREFIX;
+        }
+        return queryWord.length() >= 3 && word.indexOf(queryWord, 1) > 0 ? INFIX : 0;
+    }
+
+    private static String trigram(String text, int start) {
+        return text.substring(start, start + 3);
+    }
+
+    // Lower-case runs of letters and digits
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String lower = text.toLowerCase();
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+}
@@ -1,8 +1,8 @@
 package com.owsb.model;
 
+import com.owsb.io.DateCodec;
+import com.owsb.io.RecordReader;
 import java.io.*;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.*;
 
 public class StockAdjustment {
@@ -15,7 +15,10 @@ public class StockAdjustment {
     private String adjustedBy; // User ID
     
     private static final String FILE_PATH = "data/stock_adjustments.txt";
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd");
+    
+    // Parsed adjustments, extended with appended lines on each read
+    private static final RecordCache<StockAdjustment> cache =
+        new RecordCache<>(new File(FILE_PATH), StockAdjustment::parseAdjustment);
     
     public StockAdjustment(String adjustmentId, String itemCode, Date adjustmentDate,
                          String adjustmentType, int quantity, String reason, String adjustedBy) {
@@ -28,6 +31,13 @@ public class StockAdjustment {
         this.adjustedBy = adjustedBy;
     }
     
+    // Copy for handing out from the cache
+    StockAdjustment copy() {
+        return new StockAdjustment(adjustmentId, itemCode,
+                                   adjustmentDate != null ? new Date(adjustmentDate.getTime()) : null,
+                                   adjustmentType, quantity, reason, adjustedBy);
+    }
+    
     // Getters and setters
     public String getAdjustmentId() {
         return adjustmentId;
@@ -87,25 +97,14 @@ public class StockAdjustment {
     
     // Generate a new adjustment ID
     public static String generateAdjustmentId() {
-        List<StockAdjustment> adjustments = getAllAdjustments();
-        
-        if (adjustments.isEmpty()) {
-            return "A001";
-        }
-        
-        int maxId = 0;
-        for (StockAdjustment adjustment : adjustments) {
-            try {
-                int id = Integer.parseInt(adjustment.getAdjustmentId().substring(1));
-                if (id > maxId) {
-                    maxId = id;
-                }
-            } catch (NumberFormatException e) {
-                // Skip invalid adjustment IDs
+        long id = IdAllocator.next("ADJUSTMENT", () -> {
+            List<String> ids = new ArrayList<>();
+            for (StockAdjustment adjustment : getAllAdjustments()) {
+                ids.add(adjustment.getAdjustmentId());
             }
-        }
-        
-        return String.format("A%03d", maxId + 1);
+            return IdAllocator.maxSuffix(ids, "A");
+        });
+        return String.format("A%03d", id);
     }
     
     // Save adjustment to file
@@ -123,19 +122,16 @@ public class StockAdjustment {
                 file.createNewFile();
             }
             
-            // Check if adjustment already exists
-            List<StockAdjustment> existingAdjustments = getAllAdjustments();
-            for (StockAdjustment adjustment : existingAdjustments) {
-                if (adjustment.getAdjustmentId().equals(this.adjustmentId)) {
-                    return false; // Adjustment already exists
+            synchronized (StockAdjustment.class) {
+                // Check if adjustment already exists (against the cached records, without copying them)
+                for (StockAdjustment adjustment : cache.records()) {
+                    if (adjustment.getAdjustmentId().equals(this.adjustmentId)) {
+                        return false; // Adjustment already exists
+                    }
                 }
-            }
-            
-            // Append adjustment to file
-            try (FileWriter fw = new FileWriter(file, true);
-                 BufferedWriter bw = new BufferedWriter(fw);
-                 PrintWriter out = new PrintWriter(bw)) {
-                out.println(formatAdjustmentData());
+                
+                // Append adjustment to file (and to the date index)
+                appendAdjustmentRecords(Collections.singletonList(this));
             }
             
             return true;
@@ -145,43 +141,118 @@ public class StockAdjustment {
         }
     }
     
-    // Get all adjustments from file
-    public static List<StockAdjustment> getAllAdjustments() {
-        List<StockAdjustment> adjustments = new ArrayList<>();
+    // Append adjustment records with a single write (forced to disk at the next journal checkpoint)
+    static synchronized void appendAdjustmentRecords(List<StockAdjustment> records) throws IOException {
+        File dataDir = new File("data");
+        if (!dataDir.exists()) {
+            dataDir.mkdir();
+        }
+        
+        ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        int[] days = new int[records.size()];
+        int[] lengths = new int[records.size()];
+        for (int i = 0; i < records.size(); i++) {
+            StockAdjustment adjustment = records.get(i);
+            byte[] line = (adjustment.formatAdjustmentData() + System.lineSeparator()).getBytes();
+            lines.write(line);
+            days[i] = DateCodec.fromDate(adjustment.getAdjustmentDate());
+            lengths[i] = line.length;
+        }
         
+        File file = new File(FILE_PATH);
+        long offset = file.exists() ? file.length() : 0;
+        try (FileOutputStream fos = new FileOutputStream(file, true)) {
+            fos.write(lines.toByteArray());
+        }
+        StockAdjustmentIndex.recordAppend(offset, days, lengths);
+    }
+    
+    // Flush appended records to disk
+    static synchronized void forceToDisk() throws IOException {
+        File file = new File(FILE_PATH);
+        if (file.exists()) {
+            try (FileOutputStream fos = new FileOutputStream(file, true)) {
+                fos.getFD().sync();
+            }
+        }
+    }
+    
+    // Drop a partially written last record left by a crash
+    static synchronized void repairTornTail() throws IOException {
+        TransactionJournal.truncateTornLine(new File(FILE_PATH));
+        StockAdjustmentIndex.invalidate();
+    }
+    
+    // Ids of every adjustment in the file
+    static Set<String> readAdjustmentIds() {
+        Set<String> ids = new HashSet<>();
         File file = new File(FILE_PATH);
         if (!file.exists()) {
-            return adjustments;
+            return ids;
         }
         
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] data = line.split(",");
-                if (data.length >= 7) {
-                    try {
-                        StockAdjustment adjustment = new StockAdjustment(
-                            data[0],
-                            data[1],
-                            DATE_FORMAT.parse(data[2]),
-                            data[3],
-                            Integer.parseInt(data[4]),
-                            data[5],
-                            data[6]
-                        );
-                        adjustments.add(adjustment);
-                    } catch (ParseException | NumberFormatException e) {
-                        e.printStackTrace();
-                    }
+        try (RecordReader reader = new RecordReader(file)) {
+            while (reader.next()) {
+                if (reader.fieldCount() >= 7) {
+                    ids.add(reader.getString(0));
                 }
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
-        
+        return ids;
+    }
+    
+    // Whether any adjustment was made for this reason (checked against the cached records, without copying them)
+    static boolean reasonExists(String reason) {
+        for (StockAdjustment adjustment : cache.records()) {
+            if (reason.equals(adjustment.getReason())) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    // Get all adjustments from file (only lines appended since the last call are parsed)
+    public static List<StockAdjustment> getAllAdjustments() {
+        List<StockAdjustment> adjustments = new ArrayList<>();
+        for (StockAdjustment adjustment : cache.records()) {
+            adjustments.add(adjustment.copy());
+        }
         return adjustments;
     }
     
+    // Parse one line of the adjustments file, or return null if it is not an adjustment record
+    static StockAdjustment parseAdjustmentLine(String line) {
+        try (RecordReader reader = RecordReader.of(line)) {
+            return reader.next() ? parseAdjustment(reader) : null;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+    
+    // Build an adjustment from the current line of a reader
+    private static StockAdjustment parseAdjustment(RecordReader reader) {
+        if (reader.fieldCount() < 7) {
+            return null;
+        }
+        try {
+            return new StockAdjustment(
+                reader.getString(0),
+                reader.getString(1),
+                reader.getDate(2),
+                reader.getString(3),
+                reader.getInt(4),
+                reader.getString(5),
+                reader.getString(6)
+            );
+        } catch (IllegalArgumentException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+    
     // Get adjustments by item code
     public static List<StockAdjustment> getAdjustmentsByItem(String itemCode) {
         List<StockAdjustment> allAdjustments = getAllAdjustments();
@@ -198,7 +269,8 @@ public class StockAdjustment {
     
     // Get adjustments by date range
     public static List<StockAdjustment> getAdjustmentsByDateRange(Date startDate, Date endDate) {
-        List<StockAdjustment> allAdjustments = getAllAdjustments();
+        List<StockAdjustment> allAdjustments = readAdjustmentsBetween(
+            DateCodec.fromDate(startDate), DateCodec.fromDate(endDate));
         List<StockAdjustment> filteredAdjustments = new ArrayList<>();
         
         for (StockAdjustment adjustment : allAdjustments) {
@@ -211,12 +283,53 @@ public class StockAdjustment {
         return filteredAdjustments;
     }
     
+    // Read only the part of the file the date index points to for the given days (inclusive)
+    private static synchronized List<StockAdjustment> readAdjustmentsBetween(int fromEpochDay, int toEpochDay) {
+        List<StockAdjustment> adjustments = new ArrayList<>();
+        long[] span = StockAdjustmentIndex.spanFor(fromEpochDay, toEpochDay);
+        if (span == null) {
+            return adjustments;
+        }
+        
+        try {
+            byte[] bytes = new byte[(int) (span[1] - span[0])];
+            try (RandomAccessFile raf = new RandomAccessFile(FILE_PATH, "r")) {
+                raf.seek(span[0]);
+                raf.readFully(bytes);
+            }
+            
+            try (RecordReader reader = new RecordReader(new InputStreamReader(new ByteArrayInputStream(bytes)))) {
+                while (reader.next()) {
+                    if (reader.fieldCount() < 7) {
+                        continue;
+                    }
+                    int day;
+                    try {
+                        day = reader.getEpochDay(2);
+                    } catch (IllegalArgumentException e) {
+                        continue;
+                    }
+                    if (day >= fromEpochDay && day <= toEpochDay) {
+                        StockAdjustment adjustment = parseAdjustment(reader);
+                        if (adjustment != null) {
+                            adjustments.add(adjustment);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        
+        return adjustments;
+    }
+    
     // Format adjustment data for file storage
-    private String formatAdjustmentData() {
+    String formatAdjustmentData() {
         return String.format("%s,%s,%s,%s,%d,%s,%s",
             adjustmentId,
             itemCode,
-            DATE_FORMAT.format(adjustmentDate),
+            DateCodec.format(adjustmentDate),
             adjustmentType,
             quantity,
             reason,
@@ -0,0 +1,328 @@
+package com.owsb.model;
+
+import com.owsb.io.DateCodec;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Date index over data/stock_adjustments.txt, kept in the sidecar file
+ * data/stock_adjustments.idx.
+ * The sidecar holds one fixed-size entry per ledger record (epoch day of
+ * the adjustment date, byte offset and byte length of the line) in ledger
+ * order, and is appended to whenever the ledger is. In memory the entries
+ * are binary-searched by day; since the ledger is normally written in date
+ * order they are already sorted, and otherwise a sorted permutation is
+ * built once. A range query reads only the part of the ledger between the
+ * first and the last matching record, so its cost follows the size of the
+ * result rather than the size of the ledger.
+ * <p>
+ * The sidecar also remembers how much of the ledger it covers: records
+ * appended without it (for example before a crash) are indexed from the
+ * tail on the next load, and a ledger that got shorter is indexed again
+ * from scratch. While loaded, the index also keeps a CRC32 of the ledger
+ * block just before that point, as {@link com.owsb.io.TailReader} does, so
+ * a ledger rewritten in place is noticed even when its length did not
+ * shrink.
+ */
+final class StockAdjustmentIndex {
+    private static final String LEDGER_FILE = "data/stock_adjustments.txt";
+    private static final String INDEX_FILE = "data/stock_adjustments.idx";
+    private static final int ENTRY_SIZE = 16; // int day, long offset, int length
+    private static final int CHECK_BLOCK_SIZE = 4096;
+
+    private static boolean loaded = false;
+    private static int count = 0;
+    private static int[] days = new int[0];
+    private static long[] offsets = new long[0];
+    private static int[] lengths = new int[0];
+    private static long coveredLength = 0;   // ledger bytes accounted for by the entries
+    private static long coveredChecksum = 0; // CRC32 of the ledger block that ends at coveredLength
+    private static int[] sortedOrder = null; // entry positions by day, or null when entries are in day order
+    private static boolean inDayOrder = true;
+
+    private StockAdjustmentIndex() {
+    }
+
+    /**
+     * Ledger byte range [start, end) that holds every record dated between
+     * the two epoch days (inclusive), or null if there are none. The range
+     * may also contain records outside the dates when the ledger is not in
+     * date order, so callers still check each record's date.
+     */
+    static synchronized long[] spanFor(int fromEpochDay, int toEpochDay) {
+        ensureLoaded();
+        if (count == 0 || fromEpochDay > toEpochDay) {
+            return null;
+        }
+        if (!inDayOrder && sortedOrder == null) {
+            sortedOrder = sortByDay();
+        }
+
+        long start = Long.MAX_VALUE;
+        long end = -1;
+        for (int i = firstAtOrAfter(fromEpochDay); i < count; i++) {
+            int entry = sortedOrder != null ? sortedOrder[i] : i;
+            if (days[entry] > toEpochDay) {
+                break;
+            }
+            start = Math.min(start, offsets[entry]);
+            end = Math.max(end, offsets[entry] + lengths[entry]);
+        }
+        return end < 0 ? null : new long[] {start, end};
+    }
+
+    // Record lines just appended to the ledger at the given offset
+    static synchronized void recordAppend(long offset, int[] newDays, int[] newLengths) {
+        if (!loaded) {
+            return; // The next load indexes the new tail of the ledger
+        }
+        File ledger = new File(LEDGER_FILE);
+        try {
+            if (offset != coveredLength || checksumBefore(ledger, offset) != coveredChecksum) {
+                loaded = false; // The ledger changed behind our back; rebuild on next use
+                return;
+            }
+
+            long position = offset;
+            for (int i = 0; i < newDays.length; i++) {
+                add(newDays[i], position, newLengths[i]);
+                position += newLengths[i];
+            }
+            writeEntries(count - newDays.length, count);
+            coveredChecksum = checksumBefore(ledger, coveredLength);
+        } catch (IOException e) {
+            System.out.println("Error updating stock adjustment index: " + e.getMessage());
+            loaded = false;
+        }
+    }
+
+    // Forget the in-memory index, e.g. after the ledger was truncated
+    static synchronized void invalidate() {
+        loaded = false;
+    }
+
+    // Load the sidecar and bring it up to date with the ledger
+    private static void ensureLoaded() {
+        File ledger = new File(LEDGER_FILE);
+        long ledgerLength = ledger.exists() ? ledger.length() : 0;
+
+        try {
+            if (loaded) {
+                if (ledgerLength < coveredLength || checksumBefore(ledger, coveredLength) != coveredChecksum) {
+                    // The ledger was truncated or rewritten: start over
+                    startOver();
+                } else if (ledgerLength == coveredLength) {
+                    return;
+                }
+            } else {
+                readSidecar();
+                // The sidecar keeps no checksum; the covered part must at least still end with a complete line
+                if (ledgerLength < coveredLength || !endsAtLineBoundary(ledger)) {
+                    startOver();
+                }
+            }
+            if (ledgerLength > coveredLength) {
+                int before = count;
+                scanLedger(ledger, coveredLength, ledgerLength);
+                writeEntries(before, count);
+            }
+            coveredChecksum = checksumBefore(ledger, coveredLength);
+            loaded = true;
+        } catch (IOException e) {
+            System.out.println("Error loading stock adjustment index: " + e.getMessage());
+            reset();
+        }
+    }
+
+    private static void readSidecar() throws IOException {
+        reset();
+        File file = new File(INDEX_FILE);
+        if (!file.exists()) {
+            return;
+        }
+
+        // A torn entry at the end is ignored and overwritten by the next append
+        ByteBuffer entries = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        int capacity = Math.max(1024, entries.remaining() / ENTRY_SIZE);
+        days = new int[capacity];
+        offsets = new long[capacity];
+        lengths = new int[capacity];
+        while (entries.remaining() >= ENTRY_SIZE) {
+            int day = entries.getInt();
+            long offset = entries.getLong();
+            int length = entries.getInt();
+            if (offset < coveredLength) {
+                break; // Entries only ever move forward through the ledger
+            }
+            add(day, offset, length);
+        }
+        if ((long) count * ENTRY_SIZE != file.length()) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength((long) count * ENTRY_SIZE);
+            }
+        }
+    }
+
+    // The covered part of the ledger must still end with a complete line
+    private static boolean endsAtLineBoundary(File ledger) throws IOException {
+        if (coveredLength == 0) {
+            return true;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(ledger, "r")) {
+            raf.seek(coveredLength - 1);
+            return raf.read() == '\n';
+        }
+    }
+
+    // CRC32 of the ledger block that ends at end, or -1 if the ledger is shorter than that
+    private static long checksumBefore(File ledger, long end) throws IOException {
+        if (end == 0) {
+            return 0;
+        }
+        long start = Math.max(0, end - CHECK_BLOCK_SIZE);
+        byte[] block = new byte[(int) (end - start)];
+        try (RandomAccessFile raf = new RandomAccessFile(ledger, "r")) {
+            raf.seek(start);
+            raf.readFully(block);
+        } catch (EOFException | FileNotFoundException e) {
+            return -1;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(block, 0, block.length);
+        return crc.getValue();
+    }
+
+    // Index the complete lines of ledger[from, to); lines without a readable date are skipped
+    private static void scanLedger(File ledger, long from, long to) throws IOException {
+        long lineStart = from;
+        try (RandomAccessFile raf = new RandomAccessFile(ledger, "r")) {
+            byte[] chunk = new byte[1 << 20];
+            char[] date = new char[16];
+            int field = 0;
+            int dateLength = -1; // -1 until the date column of the current line is complete
+            int dateFill = 0;
+            long position = from;
+            raf.seek(from);
+
+            while (position < to) {
+                int read = raf.read(chunk, 0, (int) Math.min(chunk.length, to - position));
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    byte b = chunk[i];
+                    if (b == '\n') {
+                        long lineEnd = position + i + 1;
+                        if (dateLength > 0) {
+                            try {
+                                add(DateCodec.parseEpochDay(date, 0, dateLength), lineStart, (int) (lineEnd - lineStart));
+                            } catch (IllegalArgumentException e) {
+                                // Not a record
+                            }
+                        }
+                        lineStart = lineEnd;
+                        field = 0;
+                        dateLength = -1;
+                        dateFill = 0;
+                    } else if (b == ',') {
+                        if (field == 2) {
+                            dateLength = dateFill;
+                        }
+                        field++;
+                    } else if (field == 2 && dateFill < date.length) {
+                        date[dateFill++] = (char) b;
+                    }
+                }
+                position += read;
+            }
+        }
+        // Lines that are not records are covered too; a torn last line is not
+        coveredLength = lineStart;
+    }
+
+    private static void add(int day, long offset, int length) {
+        if (count == days.length) {
+            int capacity = Math.max(1024, count * 2);
+            days = Arrays.copyOf(days, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+        if (count > 0 && day < days[count - 1]) {
+            inDayOrder = false;
+        }
+        sortedOrder = null;
+        days[count] = day;
+        offsets[count] = offset;
+        lengths[count] = length;
+        count++;
+        coveredLength = offset + length;
+    }
+
+    private static void reset() {
+        loaded = false;
+        count = 0;
+        days = new int[0];
+        offsets = new long[0];
+        lengths = new int[0];
+        coveredLength = 0;
+        coveredChecksum = 0;
+        sortedOrder = null;
+        inDayOrder = true;
+    }
+
+    // Forget every entry, including the sidecar's
+    private static void startOver() {
+        reset();
+        new File(INDEX_FILE).delete();
+    }
+
+    // Append entries [from, to) to the sidecar with one write
+    private static void writeEntries(int from, int to) throws IOException {
+        if (from >= to) {
+            return;
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream((to - from) * ENTRY_SIZE);
+        DataOutputStream out = new DataOutputStream(buffer);
+        for (int i = from; i < to; i++) {
+            out.writeInt(days[i]);
+            out.writeLong(offsets[i]);
+            out.writeInt(lengths[i]);
+        }
+        try (FileOutputStream fos = new FileOutputStream(INDEX_FILE, true)) {
+            fos.write(buffer.toByteArray());
+        }
+    }
+
+    // Position in day order of the first entry dated on or after the given day
+    private static int firstAtOrAfter(int day) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int entry = sortedOrder != null ? sortedOrder[mid] : mid;
+            if (days[entry] < day) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Entry positions ordered by day, keeping ledger order within a day
+    private static int[] sortByDay() {
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = ((long) days[i] << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = (int) keys[i];
+        }
+        return order;
+    }
+}
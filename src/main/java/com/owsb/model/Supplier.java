@@ -1,5 +1,6 @@
 package com.owsb.model;
 
+import com.owsb.io.RecordReader;
 import java.io.*;
 import java.util.*;
 
@@ -177,25 +178,14 @@ public class Supplier {
     
     // Generate a new supplier ID
     public static String generateSupplierId() {
-        List<Supplier> suppliers = getAllSuppliers();
-        
-        if (suppliers.isEmpty()) {
-            return "S001";
-        }
-        
-        int maxId = 0;
-        for (Supplier supplier : suppliers) {
-            try {
-                int id = Integer.parseInt(supplier.getSupplierId().substring(1));
-                if (id > maxId) {
-                    maxId = id;
-                }
-            } catch (NumberFormatException e) {
-                // Skip invalid supplier IDs
+        long id = IdAllocator.next("SUPPLIER", () -> {
+            List<String> ids = new ArrayList<>();
+            for (Supplier supplier : getAllSuppliers()) {
+                ids.add(supplier.getSupplierId());
             }
-        }
-        
-        return String.format("S%03d", maxId + 1);
+            return IdAllocator.maxSuffix(ids, "S");
+        });
+        return String.format("S%03d", id);
     }
     
     // Save supplier to file
@@ -227,6 +217,7 @@ public class Supplier {
                  PrintWriter out = new PrintWriter(bw)) {
                 out.println(formatSupplierData());
             }
+            SearchIndex.supplierSaved(this);
             
             return true;
         } catch (IOException e) {
@@ -273,7 +264,11 @@ public class Supplier {
                 originalFile.delete();
             }
             
-            return tempFile.renameTo(originalFile);
+            if (!tempFile.renameTo(originalFile)) {
+                return false;
+            }
+            SearchIndex.supplierSaved(this);
+            return true;
             
         } catch (IOException e) {
             e.printStackTrace();
@@ -324,7 +319,11 @@ public class Supplier {
                 originalFile.delete();
             }
             
-            return tempFile.renameTo(originalFile);
+            if (!tempFile.renameTo(originalFile)) {
+                return false;
+            }
+            SearchIndex.removed(SearchIndex.Type.SUPPLIER, supplierId);
+            return true;
             
         } catch (IOException e) {
             e.printStackTrace();
@@ -341,18 +340,16 @@ public class Supplier {
             return suppliers;
         }
         
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] data = line.split(",");
-                if (data.length >= 6) {
+        try (RecordReader reader = new RecordReader(file)) {
+            while (reader.next()) {
+                if (reader.fieldCount() >= 6) {
                     Supplier supplier = new Supplier(
-                        data[0],
-                        data[1],
-                        data[2],
-                        data[3],
-                        data[4],
-                        data[5]
+                        reader.getString(0),
+                        reader.getString(1),
+                        reader.getString(2),
+                        reader.getString(3),
+                        reader.getString(4),
+                        reader.getString(5)
                     );
                     suppliers.add(supplier);
                 }
@@ -0,0 +1,334 @@
+package com.owsb.model;
+
+import com.owsb.io.DateCodec;
+import com.owsb.io.RecordReader;
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Delivery performance per supplier, kept up to date from purchase order
+ * status changes: how many orders were approved and received, how many of
+ * those arrived by their delivery date, and sketches of the lead time (days
+ * from PO date to receipt) and order value. Each supplier takes a fixed
+ * amount of memory however many orders it has had.
+ * <p>
+ * The figures are kept in data/supplier_performance.txt. When that file does
+ * not exist yet they are worked out once from the existing orders, using the
+ * "PO Received" stock adjustments as receipt dates (or the delivery date
+ * where there is none). Other instances of the application update the same
+ * file, so it is read again whenever it changed, and every change reads it
+ * and writes it back while holding a lock file.
+ */
+public final class SupplierPerformance {
+    private static final String FILE_PATH = "data/supplier_performance.txt";
+    private static final String LOCK_PATH = "data/supplier_performance.lock";
+    private static final String RECEIVED_REASON = "PO Received: ";
+    // Fewest receipts before a supplier's own lead time is used instead of a default
+    private static final int MIN_RECEIPTS = 3;
+
+    private static Map<String, Stats> bySupplier = null;
+    // Length and modification time of the file as last read or written here
+    private static long loadedLength = -1;
+    private static long loadedModified = -1;
+
+    private SupplierPerformance() {
+    }
+
+    /**
+     * Performance figures of one supplier.
+     */
+    public static final class Stats {
+        private final String supplierId;
+        private long ordersApproved;
+        private long ordersReceived;
+        private long receivedOnTime;
+        private long valueCents;
+        private QuantileSketch leadTimes = new QuantileSketch();
+        private QuantileSketch orderValues = new QuantileSketch();
+
+        Stats(String supplierId) {
+            this.supplierId = supplierId;
+        }
+
+        public String getSupplierId() {
+            return supplierId;
+        }
+
+        public long getOrdersApproved() {
+            return ordersApproved;
+        }
+
+        public long getOrdersReceived() {
+            return ordersReceived;
+        }
+
+        // Share of received orders that arrived by their delivery date, or NaN before the first receipt
+        public double getOnTimeRate() {
+            return ordersReceived > 0 ? (double) receivedOnTime / ordersReceived : Double.NaN;
+        }
+
+        // Share of approved orders that have been received, or NaN before the first approval
+        public double getFillRate() {
+            return ordersApproved > 0 ? Math.min(1.0, (double) ordersReceived / ordersApproved) : Double.NaN;
+        }
+
+        // Lead time in days at quantile q (0 to 1), or NaN before the first receipt
+        public double getLeadTimeDays(double q) {
+            return leadTimes.quantile(q);
+        }
+
+        // Value of this supplier's part of a received order at quantile q, or NaN before the first receipt
+        public double getOrderValue(double q) {
+            return orderValues.quantile(q);
+        }
+
+        // Total value of the received orders
+        public double getTotalValue() {
+            return valueCents / 100.0;
+        }
+
+        private Stats copy() {
+            Stats copy = new Stats(supplierId);
+            copy.ordersApproved = ordersApproved;
+            copy.ordersReceived = ordersReceived;
+            copy.receivedOnTime = receivedOnTime;
+            copy.valueCents = valueCents;
+            copy.leadTimes = leadTimes.copy();
+            copy.orderValues = orderValues.copy();
+            return copy;
+        }
+    }
+
+    // Figures for one supplier, or null if it has no approved or received orders
+    public static synchronized Stats getStats(String supplierId) {
+        ensureLoaded();
+        Stats stats = bySupplier.get(supplierId);
+        return stats != null ? stats.copy() : null;
+    }
+
+    // Figures for every supplier with approved or received orders, by supplier id
+    public static synchronized Map<String, Stats> getAllStats() {
+        ensureLoaded();
+        Map<String, Stats> copies = new TreeMap<>();
+        for (Stats stats : bySupplier.values()) {
+            copies.put(stats.getSupplierId(), stats.copy());
+        }
+        return copies;
+    }
+
+    // Lead time at quantile q rounded up to whole days, or defaultDays if the supplier has too few receipts
+    public static synchronized int leadTimeDays(String supplierId, double q, int defaultDays) {
+        ensureLoaded();
+        Stats stats = bySupplier.get(supplierId);
+        if (stats == null || stats.leadTimes.count() < MIN_RECEIPTS) {
+            return defaultDays;
+        }
+        return Math.max(1, (int) Math.ceil(stats.getLeadTimeDays(q)));
+    }
+
+    // Record a PO moving from one status to another; called after the new status was written
+    static synchronized void statusChanged(PurchaseOrder po, String oldStatus, String newStatus) {
+        boolean approved = newStatus.equals("APPROVED");
+        boolean received = newStatus.equals("RECEIVED");
+        // An approved order that is rejected or cancelled is no longer waiting to be filled
+        boolean withdrawn = "APPROVED".equals(oldStatus) && !received;
+        if (newStatus.equals(oldStatus) || !approved && !received && !withdrawn) {
+            return;
+        }
+        withFileLock(() -> {
+            load(true);
+            if (approved) {
+                for (String supplierId : valueCentsBySupplier(po).keySet()) {
+                    statsFor(supplierId).ordersApproved++;
+                }
+            } else if (received) {
+                addReceipt(po, DateCodec.fromDate(new Date()), !"APPROVED".equals(oldStatus));
+            } else {
+                for (String supplierId : valueCentsBySupplier(po).keySet()) {
+                    Stats stats = statsFor(supplierId);
+                    stats.ordersApproved = Math.max(0, stats.ordersApproved - 1);
+                }
+            }
+            save();
+        });
+    }
+
+    // Load the figures before a status change is written, so the change is not also counted from the file
+    static synchronized void ensureLoaded() {
+        if (!isCurrent()) {
+            withFileLock(() -> load(false));
+        }
+    }
+
+    // Whether the figures in memory are those in the file
+    private static boolean isCurrent() {
+        File file = new File(FILE_PATH);
+        return bySupplier != null && file.length() == loadedLength && file.lastModified() == loadedModified;
+    }
+
+    // Read the file if it changed (or always, when about to change it); without a file, work the figures out
+    private static void load(boolean always) {
+        if (!always && isCurrent()) {
+            return;
+        }
+        File file = new File(FILE_PATH);
+        if (file.exists()) {
+            bySupplier = new HashMap<>();
+            read(file);
+            loadedLength = file.length();
+            loadedModified = file.lastModified();
+        } else if (bySupplier == null) {
+            bySupplier = new HashMap<>();
+            rebuildFromHistory();
+            save();
+        }
+    }
+
+    // Run action while holding the lock file, so changes from other instances are neither missed nor overwritten
+    private static void withFileLock(Runnable action) {
+        File dataDir = new File("data");
+        if (!dataDir.exists()) {
+            dataDir.mkdir();
+        }
+        FileChannel lockChannel = null;
+        try {
+            lockChannel = FileChannel.open(Paths.get(LOCK_PATH), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            lockChannel.lock();
+        } catch (IOException e) {
+            // Still make the change, only without protection from other instances
+            e.printStackTrace();
+        }
+        try {
+            action.run();
+        } finally {
+            if (lockChannel != null) {
+                try {
+                    // Closing the channel releases the lock
+                    lockChannel.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    // Count a received order for each supplier on it
+    private static void addReceipt(PurchaseOrder po, int receivedDay, boolean countApproval) {
+        int leadDays = DateCodec.fromDate(po.getPoDate()) <= receivedDay
+            ? receivedDay - DateCodec.fromDate(po.getPoDate()) : 0;
+        boolean onTime = po.getDeliveryDate() == null || receivedDay <= DateCodec.fromDate(po.getDeliveryDate());
+        for (Map.Entry<String, Long> supplier : valueCentsBySupplier(po).entrySet()) {
+            Stats stats = statsFor(supplier.getKey());
+            if (countApproval) {
+                stats.ordersApproved++;
+            }
+            stats.ordersReceived++;
+            if (onTime) {
+                stats.receivedOnTime++;
+            }
+            stats.valueCents += supplier.getValue();
+            stats.leadTimes.add(leadDays);
+            stats.orderValues.add(supplier.getValue() / 100.0);
+        }
+    }
+
+    // Value in cents of each supplier's lines of a PO
+    private static Map<String, Long> valueCentsBySupplier(PurchaseOrder po) {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (PurchaseOrder.PurchaseOrderItem item : po.getItems()) {
+            long cents = Math.round(item.getQuantity() * item.getUnitPrice() * 100);
+            values.merge(item.getSupplierId(), cents, Long::sum);
+        }
+        return values;
+    }
+
+    private static Stats statsFor(String supplierId) {
+        return bySupplier.computeIfAbsent(supplierId, Stats::new);
+    }
+
+    // Work the figures out from the orders on file
+    private static void rebuildFromHistory() {
+        Map<String, Integer> receivedDays = new HashMap<>();
+        for (StockAdjustment adjustment : StockAdjustment.getAllAdjustments()) {
+            String reason = adjustment.getReason();
+            if (reason != null && reason.startsWith(RECEIVED_REASON) && adjustment.getAdjustmentDate() != null) {
+                receivedDays.merge(reason.substring(RECEIVED_REASON.length()),
+                                   DateCodec.fromDate(adjustment.getAdjustmentDate()), Math::min);
+            }
+        }
+
+        for (PurchaseOrder po : PurchaseOrder.getAllPOs()) {
+            if (po.getPoDate() == null) {
+                continue;
+            }
+            if ("APPROVED".equals(po.getStatus())) {
+                for (String supplierId : valueCentsBySupplier(po).keySet()) {
+                    statsFor(supplierId).ordersApproved++;
+                }
+            } else if ("RECEIVED".equals(po.getStatus())) {
+                Integer receivedDay = receivedDays.get(po.getPoId());
+                if (receivedDay == null) {
+                    receivedDay = DateCodec.fromDate(po.getDeliveryDate() != null ? po.getDeliveryDate() : po.getPoDate());
+                }
+                addReceipt(po, receivedDay, true);
+            }
+        }
+    }
+
+    private static void read(File file) {
+        try (RecordReader reader = new RecordReader(file)) {
+            while (reader.next()) {
+                if (reader.fieldCount() < 7) {
+                    continue;
+                }
+                try {
+                    Stats stats = new Stats(reader.getString(0));
+                    stats.ordersApproved = reader.getLong(1);
+                    stats.ordersReceived = reader.getLong(2);
+                    stats.receivedOnTime = reader.getLong(3);
+                    stats.valueCents = reader.getLong(4);
+                    stats.leadTimes = QuantileSketch.decode(reader.getString(5));
+                    stats.orderValues = QuantileSketch.decode(reader.getString(6));
+                    bySupplier.put(stats.getSupplierId(), stats);
+                } catch (IllegalArgumentException e) {
+                    e.printStackTrace();
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Write every supplier's figures to a temp file and swap it in
+    private static void save() {
+        File dataDir = new File("data");
+        if (!dataDir.exists()) {
+            dataDir.mkdir();
+        }
+
+        File tempFile = new File(FILE_PATH + ".tmp");
+        try {
+            try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(tempFile)))) {
+                for (Stats stats : bySupplier.values()) {
+                    out.println(stats.supplierId + "," + stats.ordersApproved + "," + stats.ordersReceived + ","
+                                + stats.receivedOnTime + "," + stats.valueCents + ","
+                                + stats.leadTimes.encode() + "," + stats.orderValues.encode());
+                }
+            }
+            try {
+                Files.move(tempFile.toPath(), Paths.get(FILE_PATH), StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), Paths.get(FILE_PATH), StandardCopyOption.REPLACE_EXISTING);
+            }
+            File file = new File(FILE_PATH);
+            loadedLength = file.length();
+            loadedModified = file.lastModified();
+        } catch (IOException e) {
+            e.printStackTrace();
+            tempFile.delete();
+        }
+    }
+}
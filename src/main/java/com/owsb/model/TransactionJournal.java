@@ -0,0 +1,393 @@
+package com.owsb.model;
+
+import com.owsb.io.RecordReader;
+import java.io.*;
+import java.util.*;
+
+/**
+ * Write-ahead journal with group commit for multi-file operations such as
+ * recording a sale (sales record + item stock + stock adjustment).
+ * <p>
+ * Committed {@link UnitOfWork}s are validated, appended to
+ * data/transactions.journal and forced to disk, and only then applied to
+ * the data files. The append-only sales and adjustment files are not
+ * forced on every commit; instead the journal is checkpointed (data files
+ * forced, journal emptied) when it grows large and before any write that
+ * bypasses the journal. If the application dies in between,
+ * {@link #recover()} replays the journal on the next start. Replay skips
+ * records that already reached their files and stock levels are journaled
+ * as absolute values, so either all changes of a unit of work are visible
+ * or none are.
+ * <p>
+ * Units of work that arrive while a group is being written are committed
+ * together as the next group: the first caller becomes the leader and
+ * writes and applies each whole group with a single journal fsync and a
+ * single write per data file. Under concurrent load the leader also waits
+ * a couple of milliseconds for more callers to join.
+ */
+public final class TransactionJournal {
+    private static final String JOURNAL_FILE = "data/transactions.journal";
+    private static final long GROUP_WINDOW_MILLIS = 2;
+    private static final long CHECKPOINT_BYTES = 256 * 1024;
+
+    private static final Object queueLock = new Object();
+    private static final List<Pending> queue = new ArrayList<>();
+    private static boolean leaderActive = false;
+    private static boolean recovered = false;
+    private static int lastGroupSize = 0;
+
+    // A unit of work waiting for its group to be committed
+    private static class Pending {
+        final UnitOfWork work;
+        boolean done;
+        boolean result;
+
+        Pending(UnitOfWork work) {
+            this.work = work;
+        }
+    }
+
+    private TransactionJournal() {
+    }
+
+    // Commit a single unit of work, sharing the fsync with concurrent callers
+    static boolean commit(UnitOfWork work) {
+        return commitAll(Collections.singletonList(work))[0];
+    }
+
+    // Commit several independent units of work in one group; returns the outcome of each
+    static boolean[] commitAll(List<UnitOfWork> works) {
+        List<Pending> mine = new ArrayList<>(works.size());
+        for (UnitOfWork work : works) {
+            mine.add(new Pending(work));
+        }
+
+        boolean leader;
+        synchronized (queueLock) {
+            queue.addAll(mine);
+            leader = !leaderActive;
+            leaderActive = true;
+        }
+
+        if (leader) {
+            // Under concurrent load, give other callers a moment to join this group
+            if (lastGroupSize > 1) {
+                try {
+                    Thread.sleep(GROUP_WINDOW_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            while (true) {
+                List<Pending> group;
+                synchronized (queueLock) {
+                    if (queue.isEmpty()) {
+                        leaderActive = false;
+                        break;
+                    }
+                    group = new ArrayList<>(queue);
+                    queue.clear();
+                    lastGroupSize = group.size();
+                }
+
+                try {
+                    processGroup(group);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+
+                synchronized (queueLock) {
+                    for (Pending pending : group) {
+                        pending.done = true;
+                    }
+                    queueLock.notifyAll();
+                }
+            }
+        }
+
+        boolean[] results = new boolean[mine.size()];
+        synchronized (queueLock) {
+            for (int i = 0; i < mine.size(); i++) {
+                Pending pending = mine.get(i);
+                while (!pending.done) {
+                    try {
+                        queueLock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                results[i] = pending.result;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Replay a journal left behind by an interrupted commit. Runs once per
+     * application start; it is called from startup and again before the first commit.
+     */
+    public static synchronized void recover() {
+        if (recovered) {
+            return;
+        }
+        recovered = true;
+
+        File journal = new File(JOURNAL_FILE);
+        if (!journal.exists() || journal.length() == 0) {
+            return;
+        }
+
+        try {
+            List<String> entries = new ArrayList<>();
+            List<String> committed = new ArrayList<>();
+            int expected = -1;
+            try (BufferedReader br = new BufferedReader(new FileReader(journal))) {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    if (line.startsWith("BEGIN ")) {
+                        // A torn count leaves expected at -1, so the group is skipped as incomplete
+                        entries.clear();
+                        expected = parseCount(line.substring(6));
+                    } else if (line.startsWith("COMMIT ")) {
+                        int count = parseCount(line.substring(7));
+                        if (count >= 0 && count == expected && entries.size() == expected) {
+                            committed.addAll(entries);
+                        }
+                        entries.clear();
+                        expected = -1;
+                    } else if (expected >= 0) {
+                        entries.add(line);
+                    }
+                }
+            }
+
+            if (!committed.isEmpty()) {
+                replay(committed);
+            }
+            DailySales.forceToDisk();
+            StockAdjustment.forceToDisk();
+            clearJournal();
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Error recovering transaction journal: " + e.getMessage());
+        }
+    }
+
+    // Entry count of a BEGIN or COMMIT line, or -1 if it is unreadable
+    private static int parseCount(String text) {
+        try {
+            return Integer.parseInt(text.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // Validate, journal and apply one group of units of work
+    private static synchronized void processGroup(List<Pending> group) {
+        recover();
+
+        Map<String, Integer> stockLevels = new LinkedHashMap<>();
+        Set<String> newSalesIds = new HashSet<>();
+        List<Pending> accepted = new ArrayList<>();
+
+        for (Pending pending : group) {
+            if (pending.work.isEmpty()) {
+                pending.result = true;
+            } else if (validate(pending.work, stockLevels, newSalesIds)) {
+                accepted.add(pending);
+            }
+        }
+        if (accepted.isEmpty()) {
+            return;
+        }
+
+        List<DailySales> sales = new ArrayList<>();
+        List<StockAdjustment> adjustments = new ArrayList<>();
+        for (Pending pending : accepted) {
+            sales.addAll(pending.work.getSales());
+            adjustments.addAll(pending.work.getAdjustments());
+        }
+        // Ids are only used up by changes that passed validation
+        for (StockAdjustment adjustment : adjustments) {
+            if (adjustment.getAdjustmentId() == null) {
+                adjustment.setAdjustmentId(StockAdjustment.generateAdjustmentId());
+            }
+        }
+
+        try {
+            writeJournal(sales, adjustments, stockLevels);
+        } catch (IOException e) {
+            System.out.println("Error writing transaction journal: " + e.getMessage());
+            return;
+        }
+
+        // From here on the group is durable; a failure below is repaired by recovery
+        for (Pending pending : accepted) {
+            pending.result = true;
+        }
+
+        try {
+            apply(sales, adjustments, stockLevels);
+            if (new File(JOURNAL_FILE).length() > CHECKPOINT_BYTES) {
+                checkpoint();
+            }
+        } catch (IOException e) {
+            System.out.println("Error applying transaction journal: " + e.getMessage());
+            recovered = false;
+            recover();
+        }
+    }
+
+    /**
+     * Force the data files to disk and empty the journal. Called before any
+     * write that does not go through the journal, so that a later replay can
+     * never undo it.
+     */
+    static synchronized void checkpoint() {
+        File journal = new File(JOURNAL_FILE);
+        if (!journal.exists() || journal.length() == 0) {
+            return;
+        }
+        try {
+            DailySales.forceToDisk();
+            StockAdjustment.forceToDisk();
+            clearJournal();
+        } catch (IOException e) {
+            System.out.println("Error checkpointing transaction journal: " + e.getMessage());
+        }
+    }
+
+    // Check a unit of work against the current data and the rest of its group
+    private static boolean validate(UnitOfWork work, Map<String, Integer> stockLevels, Set<String> newSalesIds) {
+        Set<String> saleIds = new HashSet<>();
+        for (DailySales sale : work.getSales()) {
+            String salesId = sale.getSalesId();
+            if (!saleIds.add(salesId) || newSalesIds.contains(salesId) || DailySales.salesIdExists(salesId)) {
+                return false; // Sales already exists
+            }
+        }
+
+        Map<String, Integer> tentative = new HashMap<>();
+        for (Map.Entry<String, Integer> delta : work.getStockDeltas().entrySet()) {
+            Integer current = stockLevels.get(delta.getKey());
+            if (current == null) {
+                Item item = Item.getItemByCode(delta.getKey());
+                if (item == null) {
+                    return false;
+                }
+                current = item.getCurrentStock();
+            }
+            int newStock = current + delta.getValue();
+            if (newStock < 0) {
+                return false; // Not enough stock
+            }
+            tentative.put(delta.getKey(), newStock);
+        }
+
+        stockLevels.putAll(tentative);
+        newSalesIds.addAll(saleIds);
+        return true;
+    }
+
+    // Append the group as one BEGIN/COMMIT block and force it to disk
+    private static void writeJournal(List<DailySales> sales, List<StockAdjustment> adjustments,
+                                     Map<String, Integer> stockLevels) throws IOException {
+        File directory = new File("data");
+        if (!directory.exists()) {
+            directory.mkdir();
+        }
+
+        int count = sales.size() + adjustments.size() + stockLevels.size();
+        StringBuilder block = new StringBuilder();
+        block.append("BEGIN ").append(count).append('\n');
+        for (DailySales sale : sales) {
+            block.append("SALE ").append(sale.formatSalesData()).append('\n');
+        }
+        for (StockAdjustment adjustment : adjustments) {
+            block.append("ADJ ").append(adjustment.formatAdjustmentData()).append('\n');
+        }
+        for (Map.Entry<String, Integer> level : stockLevels.entrySet()) {
+            block.append("STOCK ").append(level.getKey()).append(',').append(level.getValue()).append('\n');
+        }
+        block.append("COMMIT ").append(count).append('\n');
+
+        try (FileOutputStream fos = new FileOutputStream(JOURNAL_FILE, true)) {
+            fos.write(block.toString().getBytes());
+            fos.getFD().sync();
+        }
+    }
+
+    private static void apply(List<DailySales> sales, List<StockAdjustment> adjustments,
+                              Map<String, Integer> stockLevels) throws IOException {
+        if (!sales.isEmpty()) {
+            DailySales.appendSalesRecords(sales);
+        }
+        if (!adjustments.isEmpty()) {
+            StockAdjustment.appendAdjustmentRecords(adjustments);
+        }
+        if (!stockLevels.isEmpty() && !Item.applyStockLevels(stockLevels)) {
+            throw new IOException("Unable to write item catalog");
+        }
+    }
+
+    // Re-apply committed entries, skipping records that already reached their files
+    private static void replay(List<String> entries) throws IOException {
+        DailySales.repairTornTail();
+        StockAdjustment.repairTornTail();
+
+        Set<String> existingAdjustments = StockAdjustment.readAdjustmentIds();
+        List<DailySales> sales = new ArrayList<>();
+        List<StockAdjustment> adjustments = new ArrayList<>();
+        Map<String, Integer> stockLevels = new LinkedHashMap<>();
+
+        for (String entry : entries) {
+            if (entry.startsWith("SALE ")) {
+                DailySales sale = DailySales.parseSalesLine(entry.substring(5));
+                if (sale != null && !DailySales.salesIdExists(sale.getSalesId())) {
+                    sales.add(sale);
+                }
+            } else if (entry.startsWith("ADJ ")) {
+                StockAdjustment adjustment = StockAdjustment.parseAdjustmentLine(entry.substring(4));
+                if (adjustment != null && !existingAdjustments.contains(adjustment.getAdjustmentId())) {
+                    adjustments.add(adjustment);
+                }
+            } else if (entry.startsWith("STOCK ")) {
+                try (RecordReader reader = RecordReader.of(entry.substring(6))) {
+                    if (reader.next() && reader.fieldCount() == 2) {
+                        stockLevels.put(reader.getString(0), reader.getInt(1));
+                    }
+                } catch (NumberFormatException e) {
+                    // Unreadable stock level: skip it rather than hold back the rest of the journal
+                }
+            }
+        }
+
+        apply(sales, adjustments, stockLevels);
+    }
+
+    // Cut off a partially written last line left by a crash during an append
+    static void truncateTornLine(File file) throws IOException {
+        if (!file.exists() || file.length() == 0) {
+            return;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long position = raf.length();
+            while (position > 0) {
+                raf.seek(position - 1);
+                if (raf.read() == '\n') {
+                    break;
+                }
+                position--;
+            }
+            if (position < raf.length()) {
+                raf.setLength(position);
+            }
+        }
+    }
+
+    private static void clearJournal() throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(JOURNAL_FILE)) {
+            fos.getFD().sync();
+        }
+    }
+}
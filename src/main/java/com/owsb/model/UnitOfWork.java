@@ -0,0 +1,52 @@
+package com.owsb.model;
+
+import java.util.*;
+
+/**
+ * Stages the file mutations that make up one business operation, such as
+ * recording a sale: the sales record, the stock change and the matching
+ * stock adjustment. Nothing is written until {@link #commit()}, which hands
+ * the staged changes to the {@link TransactionJournal} so they are applied
+ * together or not at all.
+ */
+class UnitOfWork {
+    private final List<DailySales> sales = new ArrayList<>();
+    private final Map<String, Integer> stockDeltas = new LinkedHashMap<>();
+    private final List<StockAdjustment> adjustments = new ArrayList<>();
+
+    // Stage a new sales record
+    void appendSale(DailySales sale) {
+        sales.add(sale);
+    }
+
+    // Stage a stock change (positive to add, negative to subtract)
+    void adjustStock(String itemCode, int delta) {
+        stockDeltas.merge(itemCode, delta, Integer::sum);
+    }
+
+    // Stage a new stock adjustment record; one without an id gets one if the unit of work is accepted
+    void appendAdjustment(StockAdjustment adjustment) {
+        adjustments.add(adjustment);
+    }
+
+    // Apply all staged changes atomically
+    boolean commit() {
+        return TransactionJournal.commit(this);
+    }
+
+    List<DailySales> getSales() {
+        return sales;
+    }
+
+    Map<String, Integer> getStockDeltas() {
+        return stockDeltas;
+    }
+
+    List<StockAdjustment> getAdjustments() {
+        return adjustments;
+    }
+
+    boolean isEmpty() {
+        return sales.isEmpty() && stockDeltas.isEmpty() && adjustments.isEmpty();
+    }
+}
@@ -1,5 +1,6 @@
 package com.owsb.model;
 
+import com.owsb.io.RecordReader;
 import java.io.*;
 import java.util.*;
 
@@ -90,25 +91,14 @@ public class User {
     
     // Generate a new user ID
     public static String generateUserId() {
-        List<User> users = getAllUsers();
-        
-        if (users.isEmpty()) {
-            return "U001";
-        }
-        
-        int maxId = 0;
-        for (User user : users) {
-            try {
-                int userId = Integer.parseInt(user.getUserId().substring(1));
-                if (userId > maxId) {
-                    maxId = userId;
-                }
-            } catch (NumberFormatException e) {
-                // Skip invalid user IDs
+        long id = IdAllocator.next("USER", () -> {
+            List<String> ids = new ArrayList<>();
+            for (User user : getAllUsers()) {
+                ids.add(user.getUserId());
             }
-        }
-        
-        return String.format("U%03d", maxId + 1);
+            return IdAllocator.maxSuffix(ids, "U");
+        });
+        return String.format("U%03d", id);
     }
     
     // Save user to file
@@ -255,17 +245,15 @@ public class User {
             return users;
         }
         
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] data = line.split(",");
-                if (data.length >= 5) {
+        try (RecordReader reader = new RecordReader(file)) {
+            while (reader.next()) {
+                if (reader.fieldCount() >= 5) {
                     User user = new User(
-                        data[0],
-                        data[1],
-                        data[2],
-                        data[3],
-                        data[4]
+                        reader.getString(0),
+                        reader.getString(1),
+                        reader.getString(2),
+                        reader.getString(3),
+                        reader.getString(4)
                     );
                     users.add(user);
                 }
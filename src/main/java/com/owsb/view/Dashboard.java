@@ -21,6 +21,7 @@ public class Dashboard extends JFrame {
     
     // Sidebar buttons
     private Map<String, JButton> sidebarButtons = new HashMap<>();
+    private GlobalSearchBox searchBox;
     
     // Colors - updated to match the exact design from images
     private Color sidebarColor = new Color(28, 37, 44); // Dark sidebar color
@@ -33,8 +34,8 @@ public class Dashboard extends JFrame {
     private Color dangerRed = new Color(211, 47, 47); // Red for alerts
     private Color borderColor = new Color(224, 224, 224); // Light gray border
     
-    private Map<String, JPanel> panels = new HashMap<>();
-    private NotificationPanel notificationPanel;
+    // Content panels, built on first navigation
+    private PanelRegistry panels;
     private javax.swing.Timer notificationTimer;
     
     public Dashboard(User user) {
@@ -83,9 +84,21 @@ public class Dashboard extends JFrame {
         
         mainPanel.add(contentWrapper, BorderLayout.CENTER);
         
-        // Add panels based on user role
+        // Add panels based on user role; only the one shown first is built now
+        panels = new PanelRegistry(contentPanel);
+        panels.setPrefetch(Boolean.getBoolean("owsb.prefetch"));
         addPanels();
         
+        // Only search records the role has a panel for
+        Set<SearchIndex.Type> searchTypes = EnumSet.noneOf(SearchIndex.Type.class);
+        for (SearchIndex.Type type : SearchIndex.Type.values()) {
+            if (panelFor(type) != null) {
+                searchTypes.add(type);
+            }
+        }
+        searchBox.setTypes(searchTypes);
+        searchBox.setVisible(!searchTypes.isEmpty());
+        
         add(mainPanel);
         
         // Show default panel (Dashboard)
@@ -107,8 +120,8 @@ public class Dashboard extends JFrame {
     }
     
     private void updateNotificationBadge() {
-        if (notificationPanel != null && notificationBadge != null) {
-            int unreadCount = notificationPanel.getUnreadNotificationCount();
+        if (notificationBadge != null) {
+            int unreadCount = Notification.getUnreadCountForUser(currentUser.getUserId());
             
             if (unreadCount > 0) {
                 notificationBadge.setText(unreadCount > 9 ? "9+" : String.valueOf(unreadCount));
@@ -116,14 +129,11 @@ public class Dashboard extends JFrame {
             } else {
                 notificationBadge.setVisible(false);
             }
-            
-            // Refresh notification panel if it's currently visible
-            if (panels.get("Notifications") == notificationPanel) {
-                CardLayout cl = (CardLayout) contentPanel.getLayout();
-                if (cl.toString().contains("Notifications")) {
-                    notificationPanel.refreshNotifications();
-                }
-            }
+        }
+        
+        // Refresh notification panel if it's currently visible
+        if ("Notifications".equals(panels.getCurrentName())) {
+            ((NotificationPanel) panels.peek("Notifications")).refreshNotifications();
         }
     }
     
@@ -155,9 +165,16 @@ public class Dashboard extends JFrame {
         systemLabel.setForeground(new Color(160, 170, 180));
         systemLabel.setAlignmentX(0.0f);
         
+        // Search across items, suppliers, PRs and POs; limited to what the role can open once the panels are known
+        searchBox = new GlobalSearchBox(this::openSearchHit);
+        searchBox.setAlignmentX(0.0f);
+        searchBox.setMaximumSize(new Dimension(220, 36));
+        
         headerPanel.add(companyLabel);
         headerPanel.add(Box.createVerticalStrut(5));
         headerPanel.add(systemLabel);
+        headerPanel.add(Box.createVerticalStrut(20));
+        headerPanel.add(searchBox);
         
         sidebar.add(headerPanel);
         
@@ -326,21 +343,15 @@ public class Dashboard extends JFrame {
         selectedButton.setContentAreaFilled(true);
     }
     
+    // Register every panel the role can open; each one is built the first time it is shown
     private void addPanels() {
-        // Create and add all panels
-        JPanel dashboardPanel = new DashboardPanel(currentUser);
-        panels.put("Dashboard", dashboardPanel);
-        contentPanel.add(dashboardPanel, "Dashboard");
+        panels.register("Dashboard", () -> new DashboardPanel(currentUser));
+        panels.pin("Dashboard");
         
-        // Create and add workflow dashboard panel - COMMENTED OUT as panel was deleted
-        // JPanel workflowDashboardPanel = new WorkflowDashboardPanel(currentUser);
-        // panels.put("Workflow Dashboard", workflowDashboardPanel);
-        // contentPanel.add(workflowDashboardPanel, "Workflow Dashboard");
+        // Workflow dashboard panel - COMMENTED OUT as panel was deleted
+        // panels.register("Workflow Dashboard", () -> new WorkflowDashboardPanel(currentUser));
         
-        // Create and add notification panel
-        notificationPanel = new NotificationPanel(currentUser);
-        panels.put("Notifications", notificationPanel);
-        contentPanel.add(notificationPanel, "Notifications");
+        panels.register("Notifications", () -> new NotificationPanel(currentUser));
         
         // Role-specific panels
         String role = currentUser.getRole();
@@ -351,9 +362,7 @@ public class Dashboard extends JFrame {
             role.equals("PURCHASE_MANAGER") || role.equals("PURCHASE_STAFF") ||
             role.equals("INVENTORY_MANAGER") || role.equals("INVENTORY_STAFF")) {
             
-            JPanel itemPanel = new ItemManagementPanel(currentUser);
-            panels.put("Item Management", itemPanel);
-            contentPanel.add(itemPanel, "Item Management");
+            panels.register("Item Management", () -> new ItemManagementPanel(currentUser));
         }
         
         // For all user types except Finance Manager, add Supplier Management panel
@@ -362,18 +371,14 @@ public class Dashboard extends JFrame {
             role.equals("PURCHASE_MANAGER") || role.equals("PURCHASE_STAFF") ||
             role.equals("INVENTORY_MANAGER") || role.equals("INVENTORY_STAFF")) {
             
-            JPanel supplierPanel = new SupplierManagementPanel(currentUser);
-            panels.put("Supplier Management", supplierPanel);
-            contentPanel.add(supplierPanel, "Supplier Management");
+            panels.register("Supplier Management", () -> new SupplierManagementPanel(currentUser));
         }
         
         // For Sales roles, add Sales Data Entry panel
         if (role.equals("ADMIN") ||
             role.equals("SALES_MANAGER") || role.equals("SALES_STAFF")) {
             
-            JPanel salesPanel = new SalesDataEntryPanel(currentUser);
-            panels.put("Sales Data Entry", salesPanel);
-            contentPanel.add(salesPanel, "Sales Data Entry");
+            panels.register("Sales Data Entry", () -> new SalesDataEntryPanel(currentUser));
         }
         
         // For all user types except Inventory, add Purchase Requisition panel
@@ -382,15 +387,14 @@ public class Dashboard extends JFrame {
             role.equals("PURCHASE_MANAGER") || role.equals("PURCHASE_STAFF") ||
             role.equals("FINANCE_MANAGER")) {
             
-            JPanel prPanel = new PurchaseRequisitionPanel(currentUser);
-            panels.put("Purchase Requisition", prPanel);
-            contentPanel.add(prPanel, "Purchase Requisition");
+            panels.register("Purchase Requisition", () -> new PurchaseRequisitionPanel(currentUser));
             
             // Add View Purchase Requisitions panel
-            ViewPurchaseRequisitionsPanel viewPRPanel = new ViewPurchaseRequisitionsPanel(currentUser);
-            viewPRPanel.setParentDashboard(this); // Set parent dashboard reference
-            panels.put("View Purchase Requisitions", viewPRPanel);
-            contentPanel.add(viewPRPanel, "View Purchase Requisitions");
+            panels.register("View Purchase Requisitions", () -> {
+                ViewPurchaseRequisitionsPanel viewPRPanel = new ViewPurchaseRequisitionsPanel(currentUser);
+                viewPRPanel.setParentDashboard(this); // Set parent dashboard reference
+                return viewPRPanel;
+            });
         }
         
         // For Purchase, Finance and Inventory roles, add Purchase Order panel
@@ -399,53 +403,35 @@ public class Dashboard extends JFrame {
             role.equals("FINANCE_MANAGER") ||
             role.equals("INVENTORY_MANAGER") || role.equals("INVENTORY_STAFF")) {
             
-            JPanel poPanel = new PurchaseOrderPanel(currentUser);
-            panels.put("Purchase Order", poPanel);
-            contentPanel.add(poPanel, "Purchase Order");
+            panels.register("Purchase Order", () -> new PurchaseOrderPanel(currentUser));
         }
         
         // Only Admin can access User Management
         if (role.equals("ADMIN")) {
-            JPanel userRegistrationPanel = new UserRegistrationPanel(currentUser);
-            panels.put("User Registration", userRegistrationPanel);
-            contentPanel.add(userRegistrationPanel, "User Registration");
-            
-            JPanel userPanel = new UserManagementPanel(currentUser);
-            panels.put("Manage Users", userPanel);
-            contentPanel.add(userPanel, "Manage Users");
+            panels.register("User Registration", () -> new UserRegistrationPanel(currentUser));
+            panels.register("Manage Users", () -> new UserManagementPanel(currentUser));
         }
         
         // For Inventory roles, add Inventory Management panel
         if (role.equals("ADMIN") ||
             role.equals("INVENTORY_MANAGER") || role.equals("INVENTORY_STAFF")) {
             
-            JPanel inventoryPanel = new InventoryManagementPanel(currentUser);
-            panels.put("Inventory Management", inventoryPanel);
-            contentPanel.add(inventoryPanel, "Inventory Management");
+            panels.register("Inventory Management", () -> new InventoryManagementPanel(currentUser));
         }
         
         // All roles can see Reports
-        JPanel reportsPanel = new ReportsPanel(currentUser);
-        panels.put("Reports", reportsPanel);
-        contentPanel.add(reportsPanel, "Reports");
+        panels.register("Reports", () -> new ReportsPanel(currentUser));
         
         // Add default panels for Finance section
         if (role.equals("ADMIN") || role.equals("FINANCE_MANAGER")) {
-            JPanel paymentPanel = new PaymentProcessingPanel(currentUser);
-            panels.put("Payment Processing", paymentPanel);
-            contentPanel.add(paymentPanel, "Payment Processing");
-            
-            JPanel financialReportsPanel = new FinancialReportsPanel(currentUser);
-            panels.put("Financial Reports", financialReportsPanel);
-            contentPanel.add(financialReportsPanel, "Financial Reports");
+            panels.register("Payment Processing", () -> new PaymentProcessingPanel(currentUser));
+            panels.register("Financial Reports", () -> new FinancialReportsPanel(currentUser));
         }
         
         // Add default panel for options that are not implemented
         for (String buttonText : sidebarButtons.keySet()) {
-            if (!panels.containsKey(buttonText)) {
-                JPanel defaultPanel = createDefaultPanel(buttonText);
-                panels.put(buttonText, defaultPanel);
-                contentPanel.add(defaultPanel, buttonText);
+            if (!panels.isRegistered(buttonText)) {
+                panels.register(buttonText, () -> createDefaultPanel(buttonText));
             }
         }
     }
@@ -465,15 +451,19 @@ public class Dashboard extends JFrame {
     
     // Public method to show a specific panel
     public void showPanel(String panelName) {
-        CardLayout cardLayout = (CardLayout) contentPanel.getLayout();
-        cardLayout.show(contentPanel, panelName);
+        boolean built = panels.peek(panelName) != null;
+        JPanel panel = panels.show(panelName);
         
-        // If showing notifications, refresh them
-        if (panelName.equals("Notifications")) {
-            notificationPanel.refreshNotifications();
+        // If showing notifications, refresh them (a newly built panel has just loaded them)
+        if (panel instanceof NotificationPanel && built) {
             updateNotificationBadge();
         }
         
+        // The dashboard is kept once built, so bring its sales and stock figures up to date
+        if (panel instanceof DashboardPanel && built) {
+            ((DashboardPanel) panel).refreshDashboard();
+        }
+        
         // If showing workflow dashboard, refresh it
         if (panelName.equals("Workflow Dashboard")) {
             // WorkflowDashboardPanel workflowPanel = (WorkflowDashboardPanel) panels.get("Workflow Dashboard");
@@ -481,7 +471,45 @@ public class Dashboard extends JFrame {
         }
     }
     
-    // Add method to get a panel by name
+    // Open the panel that lists a global search hit and bring the record into view there
+    private void openSearchHit(SearchIndex.Hit hit) {
+        String panelName = panelFor(hit.getType());
+        if (panelName != null) {
+            selectButton(sidebarButtons.get(panelName));
+            showPanel(panelName);
+            JPanel panel = panels.peek(panelName);
+            if (panel instanceof RecordListPanel) {
+                ((RecordListPanel) panel).showRecord(hit.getId());
+            }
+        }
+    }
+    
+    // The sidebar panel that lists records of a type, or null if the role has none
+    private String panelFor(SearchIndex.Type type) {
+        String[] candidates;
+        switch (type) {
+            case ITEM:
+                candidates = new String[] {"Item Management", "Inventory Management"};
+                break;
+            case SUPPLIER:
+                candidates = new String[] {"Supplier Management"};
+                break;
+            case PURCHASE_REQUISITION:
+                candidates = new String[] {"View Purchase Requisitions"};
+                break;
+            default:
+                candidates = new String[] {"Purchase Order"};
+                break;
+        }
+        for (String panelName : candidates) {
+            if (sidebarButtons.containsKey(panelName) && panels.isRegistered(panelName)) {
+                return panelName;
+            }
+        }
+        return null;
+    }
+    
+    // Add method to get a panel by name, building it if it has not been shown yet
     public JPanel getPanelByName(String panelName) {
         return panels.get(panelName);
     }
@@ -491,6 +519,7 @@ public class Dashboard extends JFrame {
         if (notificationTimer != null) {
             notificationTimer.stop();
         }
+        panels.stopPrefetch();
         
         dispose();
         new LoginScreen().setVisible(true);
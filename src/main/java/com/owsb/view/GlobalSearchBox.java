@@ -0,0 +1,210 @@
+package com.owsb.view;
+
+import com.owsb.model.SearchIndex;
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.awt.event.*;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Search box that looks through every item, supplier, purchase requisition
+ * and purchase order at once, and lists the best matches in a popup under
+ * the box. Searches run off the event dispatch thread once typing pauses,
+ * and only the results for the text currently in the box are shown.
+ * Only records of the types set with {@link #setTypes} are searched.
+ * Choosing a match (click, or Enter for the first one) passes it to the
+ * handler given to the constructor.
+ */
+final class GlobalSearchBox extends JTextField {
+    private static final long serialVersionUID = 1L;
+
+    private static final String PLACEHOLDER = "Search everything...";
+    private static final int SEARCH_DELAY_MS = 150;
+    private static final int MAX_HITS = 8;
+
+    private static final Color TEXT_COLOR = Color.WHITE;
+    private static final Color PLACEHOLDER_COLOR = new Color(160, 170, 180);
+
+    private final Consumer<SearchIndex.Hit> onOpen;
+    private Set<SearchIndex.Type> types = EnumSet.noneOf(SearchIndex.Type.class);
+    private final JPopupMenu popup = new JPopupMenu();
+    private final javax.swing.Timer searchTimer;
+    private List<SearchIndex.Hit> hits = null;
+    // Bumped by every search; results of an older one are dropped
+    private int generation = 0;
+
+    GlobalSearchBox(Consumer<SearchIndex.Hit> onOpen) {
+        this.onOpen = onOpen;
+
+        setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        setForeground(TEXT_COLOR);
+        setBackground(new Color(42, 55, 66));
+        setCaretColor(TEXT_COLOR);
+        setBorder(BorderFactory.createEmptyBorder(8, 10, 8, 10));
+        popup.setFocusable(false);
+
+        searchTimer = new javax.swing.Timer(SEARCH_DELAY_MS, e -> search());
+        searchTimer.setRepeats(false);
+
+        addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusGained(FocusEvent e) {
+                warmUp();
+            }
+        });
+
+        getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                textChanged();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                textChanged();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                textChanged();
+            }
+        });
+
+        addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (e.getKeyCode() == KeyEvent.VK_ENTER && hits != null && !hits.isEmpty()) {
+                    open(hits.get(0));
+                } else if (e.getKeyCode() == KeyEvent.VK_ESCAPE) {
+                    popup.setVisible(false);
+                }
+            }
+        });
+    }
+
+    // Search only records of these types, e.g. the ones the user can open
+    void setTypes(Set<SearchIndex.Type> types) {
+        this.types = EnumSet.copyOf(types);
+    }
+
+    private void textChanged() {
+        generation++;
+        hits = null;
+        if (query().isEmpty()) {
+            searchTimer.stop();
+            popup.setVisible(false);
+        } else {
+            searchTimer.restart();
+        }
+    }
+
+    private String query() {
+        return getText().trim();
+    }
+
+    // The placeholder is drawn rather than set as text, so it never has to be told apart from a query
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        if (getText().isEmpty()) {
+            Graphics2D g2 = (Graphics2D) g.create();
+            g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g2.setColor(PLACEHOLDER_COLOR);
+            g2.setFont(getFont());
+            Insets insets = getInsets();
+            FontMetrics metrics = g2.getFontMetrics();
+            int y = insets.top + (getHeight() - insets.top - insets.bottom - metrics.getHeight()) / 2 + metrics.getAscent();
+            g2.drawString(PLACEHOLDER, insets.left, y);
+            g2.dispose();
+        }
+    }
+
+    // Build the index in the background as soon as the box is used, so the first search is quick
+    private void warmUp() {
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() {
+                SearchIndex.ensureLoaded();
+                return null;
+            }
+        }.execute();
+    }
+
+    private void search() {
+        String query = query();
+        Set<SearchIndex.Type> searchTypes = types;
+        int searchGeneration = generation;
+        new SwingWorker<List<SearchIndex.Hit>, Void>() {
+            @Override
+            protected List<SearchIndex.Hit> doInBackground() {
+                return SearchIndex.search(query, MAX_HITS, searchTypes);
+            }
+
+            @Override
+            protected void done() {
+                if (searchGeneration != generation) {
+                    return;
+                }
+                try {
+                    showHits(get());
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
+                }
+            }
+        }.execute();
+    }
+
+    private void showHits(List<SearchIndex.Hit> found) {
+        hits = found;
+        popup.setVisible(false);
+        popup.removeAll();
+
+        if (found.isEmpty()) {
+            JMenuItem none = new JMenuItem("No matches for \"" + query() + "\"");
+            none.setEnabled(false);
+            popup.add(none);
+        }
+        for (SearchIndex.Hit hit : found) {
+            JMenuItem item = new JMenuItem("<html><b>" + escape(hit.getTitle()) + "</b><br>"
+                + "<span style='color:#6b7280'>" + typeName(hit.getType()) + ": " + escape(hit.getDetail())
+                + "</span></html>");
+            item.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+            item.addActionListener(e -> open(hit));
+            popup.add(item);
+        }
+
+        popup.setPreferredSize(null);
+        popup.setPopupSize(Math.max(getWidth(), 260), popup.getPreferredSize().height);
+        if (isShowing()) {
+            popup.show(this, 0, getHeight());
+        }
+    }
+
+    private void open(SearchIndex.Hit hit) {
+        popup.setVisible(false);
+        onOpen.accept(hit);
+    }
+
+    static String typeName(SearchIndex.Type type) {
+        switch (type) {
+            case ITEM:
+                return "Item";
+            case SUPPLIER:
+                return "Supplier";
+            case PURCHASE_REQUISITION:
+                return "Purchase Requisition";
+            default:
+                return "Purchase Order";
+        }
+    }
+
+    private static String escape(String text) {
+        return String.valueOf(text).replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
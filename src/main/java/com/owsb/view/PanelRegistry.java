@@ -0,0 +1,162 @@
+package com.owsb.view;
+
+import javax.swing.*;
+import java.awt.*;
+import java.lang.ref.SoftReference;
+import java.util.*;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * The content panels of a CardLayout container, built when they are first
+ * shown instead of all at once.
+ * Each registered name gets an empty placeholder card; the first time a
+ * name is shown its factory builds the real panel into the placeholder.
+ * Only the panel on screen and pinned panels are held strongly. Panels that
+ * are navigated away from are taken out of their placeholder and kept
+ * through a soft reference, so under memory pressure they are dropped and
+ * built again the next time they are shown.
+ * <p>
+ * With prefetch on, the panel most likely to be opened next (the one most
+ * often opened after the current one, or else the next one registered) is
+ * built once the user has been idle on a panel for a moment. Swing
+ * components have to be built on the event dispatch thread, so prefetch
+ * only ever builds one panel per idle period.
+ */
+final class PanelRegistry {
+    // Idle time on a panel before the likely next one is built
+    private static final int PREFETCH_DELAY_MS = 1500;
+
+    private final JPanel container;
+    private final Map<String, Supplier<JPanel>> factories = new LinkedHashMap<>();
+    private final Map<String, JPanel> placeholders = new HashMap<>();
+    private final Map<String, SoftReference<JPanel>> built = new HashMap<>();
+    private final Set<String> pinned = new HashSet<>();
+    // How often each panel was opened straight after another one, this session
+    private final Map<String, Map<String, Integer>> transitions = new HashMap<>();
+    private final javax.swing.Timer prefetchTimer;
+
+    private String current = null;
+    private boolean prefetch = false;
+
+    PanelRegistry(JPanel container) {
+        this.container = container;
+        prefetchTimer = new javax.swing.Timer(PREFETCH_DELAY_MS, e -> prefetchNext());
+        prefetchTimer.setRepeats(false);
+    }
+
+    // Add a panel under a name; it is not built until it is shown
+    void register(String name, Supplier<JPanel> factory) {
+        factories.put(name, factory);
+        JPanel placeholder = new JPanel(new BorderLayout());
+        placeholder.setOpaque(false);
+        placeholders.put(name, placeholder);
+        container.add(placeholder, name);
+    }
+
+    // Keep a panel once built, however short memory gets
+    void pin(String name) {
+        pinned.add(name);
+    }
+
+    boolean isRegistered(String name) {
+        return factories.containsKey(name);
+    }
+
+    void setPrefetch(boolean prefetch) {
+        this.prefetch = prefetch;
+        if (!prefetch) {
+            prefetchTimer.stop();
+        }
+    }
+
+    // Build the panel if needed, put it in its card and show that card; returns null for unknown names
+    JPanel show(String name) {
+        JPanel panel = get(name);
+        if (panel == null) {
+            return null;
+        }
+
+        if (current != null && !current.equals(name)) {
+            transitions.computeIfAbsent(current, k -> new HashMap<>()).merge(name, 1, Integer::sum);
+            release(current);
+        }
+        JPanel placeholder = placeholders.get(name);
+        if (panel.getParent() != placeholder) {
+            placeholder.add(panel, BorderLayout.CENTER);
+            placeholder.revalidate();
+        }
+        current = name;
+        ((CardLayout) container.getLayout()).show(container, name);
+
+        if (prefetch) {
+            prefetchTimer.restart();
+        }
+        return panel;
+    }
+
+    // The panel with this name, built now if it has not been or was dropped; null for unknown names
+    JPanel get(String name) {
+        Supplier<JPanel> factory = factories.get(name);
+        if (factory == null) {
+            return null;
+        }
+        SoftReference<JPanel> reference = built.get(name);
+        JPanel panel = reference != null ? reference.get() : null;
+        if (panel == null) {
+            panel = factory.get();
+            built.put(name, new SoftReference<>(panel));
+            if (pinned.contains(name)) {
+                placeholders.get(name).add(panel, BorderLayout.CENTER);
+            }
+        }
+        return panel;
+    }
+
+    // The panel with this name if it is built and still held, without building it
+    JPanel peek(String name) {
+        SoftReference<JPanel> reference = built.get(name);
+        return reference != null ? reference.get() : null;
+    }
+
+    // Name of the panel on screen, or null before the first show
+    String getCurrentName() {
+        return current;
+    }
+
+    void stopPrefetch() {
+        prefetchTimer.stop();
+    }
+
+    // Take an unpinned panel out of its card so only the soft reference holds it
+    private void release(String name) {
+        if (pinned.contains(name)) {
+            return;
+        }
+        JPanel placeholder = placeholders.get(name);
+        if (placeholder.getComponentCount() > 0) {
+            placeholder.removeAll();
+        }
+    }
+
+    private void prefetchNext() {
+        String next = likelyNext();
+        if (next != null && peek(next) == null) {
+            get(next);
+        }
+    }
+
+    // The panel most often opened after the current one, or else the next one registered
+    private String likelyNext() {
+        if (current == null) {
+            return null;
+        }
+        Map<String, Integer> after = transitions.get(current);
+        if (after != null && !after.isEmpty()) {
+            return Collections.max(after.entrySet(), Map.Entry.comparingByValue()).getKey();
+        }
+        List<String> names = new ArrayList<>(factories.keySet());
+        int index = names.indexOf(current);
+        return index >= 0 && index + 1 < names.size() ? names.get(index + 1) : null;
+    }
+}
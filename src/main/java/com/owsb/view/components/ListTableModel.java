@@ -0,0 +1,135 @@
+package com.owsb.view.components;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.*;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A table model that shows a list of domain objects, one per row, instead
+ * of copying them into rows of values. Each column reads its value from the
+ * row's object when the table asks for it, and values are left in their
+ * own type (numbers stay numbers) for the column's renderer to format, so
+ * only the rows on screen are ever turned into text.
+ * <p>
+ * Setting a new list fires a single fireTableDataChanged, whatever its size.
+ */
+public class ListTableModel<T> extends AbstractTableModel implements TableLoader.Sink<T> {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * A column: its header, the type of its values and how to read a value from a row's object.
+     */
+    public static final class Column<T> {
+        private final String name;
+        private final Class<?> type;
+        private final Function<T, ?> value;
+
+        private Column(String name, Class<?> type, Function<T, ?> value) {
+            this.name = name;
+            this.type = type;
+            this.value = value;
+        }
+    }
+
+    private final List<Column<T>> columns = new ArrayList<>();
+    private final Set<Integer> editableColumns = new HashSet<>();
+    private List<T> rows = new ArrayList<>();
+
+    // Add a column whose values are read by value; returns this model for chaining
+    public <V> ListTableModel<T> addColumn(String name, Class<V> type, Function<T, ? extends V> value) {
+        columns.add(new Column<>(name, type, value));
+        return this;
+    }
+
+    // Add a column with no value, for cells drawn and edited by their renderer and editor alone
+    public ListTableModel<T> addColumn(String name) {
+        return addColumn(name, Object.class, row -> "");
+    }
+
+    // Let the column's editor be used; columns are read-only by default
+    public ListTableModel<T> setEditable(int column) {
+        editableColumns.add(column);
+        return this;
+    }
+
+    // Show rows; the model keeps its own copy of the list, so removeRow and append never change the caller's
+    public void setRows(List<T> rows) {
+        this.rows = rows != null ? new ArrayList<>(rows) : new ArrayList<>();
+        fireTableDataChanged();
+    }
+
+    // The object shown in a row (a model row, not a view row)
+    public T getRow(int row) {
+        return rows.get(row);
+    }
+
+    public List<T> getRows() {
+        return Collections.unmodifiableList(rows);
+    }
+
+    // Index of the first row showing an equal object, or -1
+    public int indexOf(T value) {
+        return rows.indexOf(value);
+    }
+
+    // Redraw a row after its object changed
+    public void rowChanged(int row) {
+        fireTableRowsUpdated(row, row);
+    }
+
+    public void removeRow(int row) {
+        rows.remove(row);
+        fireTableRowsDeleted(row, row);
+    }
+
+    @Override
+    public void clear() {
+        setRows(new ArrayList<>());
+    }
+
+    @Override
+    public void append(List<T> more) {
+        if (more.isEmpty()) {
+            return;
+        }
+        int first = rows.size();
+        rows.addAll(more);
+        fireTableRowsInserted(first, rows.size() - 1);
+    }
+
+    @Override
+    public void replace(List<T> rows) {
+        setRows(rows);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.size();
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columns.get(column).name;
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return columns.get(column).type;
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return editableColumns.contains(column);
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        return columns.get(column).value.apply(rows.get(row));
+    }
+}
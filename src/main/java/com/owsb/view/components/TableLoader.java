@@ -0,0 +1,231 @@
+package com.owsb.view.components;
+
+import javax.swing.*;
+import javax.swing.plaf.LayerUI;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Loads a table's rows off the event dispatch thread.
+ * A load reads its data and turns it into rows on a SwingWorker thread, then
+ * hands the rows to the table CHUNK_SIZE at a time, one event dispatch task
+ * per chunk, so input and painting carry on between chunks however many
+ * rows there are. A ListTableModel only holds references to its rows, so
+ * it gets the whole list in one step. The rows already in the table stay
+ * until the new ones arrive. Starting a load cancels the one in progress,
+ * so only the last filter or refresh ever reaches the table.
+ * <p>
+ * While loading, or after a failed load, a message is drawn over the
+ * component returned by {@link #decorate}.
+ */
+public final class TableLoader<R> {
+    private static final int CHUNK_SIZE = 500;
+
+    private static final Color OVERLAY_COLOR = new Color(255, 255, 255, 200);
+    private static final Color LOADING_COLOR = new Color(107, 114, 128);
+    private static final Color ERROR_COLOR = new Color(220, 53, 69);
+
+    /**
+     * Where loaded rows go: cleared once the data is read, then appended to chunk by chunk.
+     */
+    public interface Sink<R> {
+        void clear();
+
+        void append(List<R> rows);
+
+        // Show exactly these rows in one step; sinks that can do so cheaply load in one chunk
+        default void replace(List<R> rows) {
+            clear();
+            append(rows);
+        }
+    }
+
+    private final Sink<R> sink;
+    private final int chunkSize;
+    private final List<JComponent> overlays = new ArrayList<>();
+
+    // Bumped by every load and cancel; work from an older load is dropped
+    private int generation = 0;
+    private SwingWorker<?, ?> worker = null;
+    private boolean loading = false;
+    private String error = null;
+
+    public TableLoader(Sink<R> sink) {
+        this(sink, CHUNK_SIZE);
+    }
+
+    private TableLoader(Sink<R> sink, int chunkSize) {
+        this.sink = sink;
+        this.chunkSize = chunkSize;
+    }
+
+    // Loader into a ListTableModel: rows are only references, so the whole list is shown in one event
+    public static <T> TableLoader<T> forList(ListTableModel<T> model) {
+        return new TableLoader<>(model, Integer.MAX_VALUE);
+    }
+
+    // Loader of Object[] rows into a DefaultTableModel, one event per chunk
+    public static TableLoader<Object[]> forModel(DefaultTableModel model) {
+        return new TableLoader<>(new Sink<Object[]>() {
+            @Override
+            public void clear() {
+                model.setRowCount(0);
+            }
+
+            @Override
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            public void append(List<Object[]> rows) {
+                if (rows.isEmpty()) {
+                    return;
+                }
+                int first = model.getRowCount();
+                Vector data = model.getDataVector();
+                for (Object[] row : rows) {
+                    Vector<Object> values = new Vector<>(row.length);
+                    values.addAll(Arrays.asList(row));
+                    data.add(values);
+                }
+                model.fireTableRowsInserted(first, model.getRowCount() - 1);
+            }
+        });
+    }
+
+    // Wrap the table's scroll pane so loading and error messages are drawn over it
+    public JComponent decorate(JComponent view) {
+        JLayer<JComponent> layer = new JLayer<>(view, new LayerUI<JComponent>() {
+            @Override
+            public void paint(Graphics g, JComponent c) {
+                super.paint(g, c);
+                String message = error != null ? "Could not load data: " + error : loading ? "Loading..." : null;
+                if (message != null) {
+                    paintMessage(g, c, message, error != null ? ERROR_COLOR : LOADING_COLOR);
+                }
+            }
+        });
+        overlays.add(layer);
+        return layer;
+    }
+
+    // Load rows that need no further work on the event dispatch thread
+    public void load(Callable<List<R>> query) {
+        load(query, Function.identity(), null);
+    }
+
+    /**
+     * Run query off the event dispatch thread, turn its result into rows
+     * there too, and fill the table with them. onLoaded, if not null, gets
+     * the query result on the event dispatch thread once every row is in.
+     */
+    public <T> void load(Callable<T> query, Function<T, List<R>> toRows, Consumer<T> onLoaded) {
+        cancel();
+        int loadGeneration = generation;
+        setState(true, null);
+
+        worker = new SwingWorker<Object[], Void>() {
+            @Override
+            protected Object[] doInBackground() throws Exception {
+                T data = query.call();
+                if (isCancelled()) {
+                    return null;
+                }
+                return new Object[] {data, toRows.apply(data)};
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            protected void done() {
+                if (loadGeneration != generation) {
+                    return;
+                }
+                try {
+                    Object[] result = get();
+                    List<R> rows = (List<R>) result[1];
+                    Runnable finished = () -> {
+                        setState(false, null);
+                        if (onLoaded != null) {
+                            onLoaded.accept((T) result[0]);
+                        }
+                    };
+                    if (rows.size() <= chunkSize) {
+                        worker = null;
+                        sink.replace(rows);
+                        finished.run();
+                    } else {
+                        sink.clear();
+                        feed(rows, 0, loadGeneration, finished);
+                    }
+                } catch (CancellationException | InterruptedException e) {
+                    // Superseded by a newer load
+                } catch (ExecutionException e) {
+                    e.getCause().printStackTrace();
+                    String message = e.getCause().getMessage();
+                    setState(false, message != null ? message : e.getCause().getClass().getSimpleName());
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    // Stop the load in progress; rows already added stay
+    public void cancel() {
+        generation++;
+        if (worker != null) {
+            worker.cancel(false);
+            worker = null;
+        }
+        if (loading) {
+            setState(false, null);
+        }
+    }
+
+    public boolean isLoading() {
+        return loading;
+    }
+
+    // Append one chunk, then queue the next behind any pending input events
+    private void feed(List<R> rows, int from, int loadGeneration, Runnable finished) {
+        if (loadGeneration != generation) {
+            return;
+        }
+        int to = Math.min(rows.size(), from + chunkSize);
+        sink.append(rows.subList(from, to));
+        if (to < rows.size()) {
+            SwingUtilities.invokeLater(() -> feed(rows, to, loadGeneration, finished));
+        } else {
+            worker = null;
+            finished.run();
+        }
+    }
+
+    private void setState(boolean loading, String error) {
+        this.loading = loading;
+        this.error = error;
+        for (JComponent overlay : overlays) {
+            overlay.repaint();
+        }
+    }
+
+    private static void paintMessage(Graphics g, JComponent c, String message, Color color) {
+        Graphics2D g2 = (Graphics2D) g.create();
+        g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g2.setFont(new Font("Segoe UI", Font.BOLD, 14));
+        FontMetrics metrics = g2.getFontMetrics();
+        int width = metrics.stringWidth(message) + 32;
+        int height = metrics.getHeight() + 16;
+        int x = (c.getWidth() - width) / 2;
+        int y = Math.min(c.getHeight() / 2, 120) - height / 2;
+
+        g2.setColor(OVERLAY_COLOR);
+        g2.fillRoundRect(x, y, width, height, 8, 8);
+        g2.setColor(color);
+        g2.drawString(message, x + 16, y + 8 + metrics.getAscent());
+        g2.dispose();
+    }
+}
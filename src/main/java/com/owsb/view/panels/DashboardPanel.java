@@ -1,6 +1,7 @@
 package com.owsb.view.panels;
 
 import com.owsb.model.*;
+import com.owsb.view.components.TableLoader;
 import javax.swing.*;
 import javax.swing.border.*;
 import javax.swing.table.*;
@@ -17,6 +18,7 @@ public class DashboardPanel extends JPanel {
     private JPanel statsPanel;
     private JPanel recentActivitiesPanel;
     private JPanel topSellingPanel;
+    private TableLoader<Object[]> roleTableLoader;
     
     // Colors matching the screenshot
     private Color primaryBlue = new Color(52, 152, 219);
@@ -28,6 +30,10 @@ public class DashboardPanel extends JPanel {
     private Color warningBackground = new Color(255, 243, 205);
     private Color warningBorder = new Color(255, 193, 7);
     
+    // Rows in the role-specific table, and days covered by Top Selling Items
+    private static final int TABLE_ROWS = 5;
+    private static final int TOP_SELLING_DAYS = 30;
+    
     public DashboardPanel(User user) {
         this.currentUser = user;
         setLayout(new BorderLayout());
@@ -358,11 +364,10 @@ public class DashboardPanel extends JPanel {
         headerLabel.setForeground(textPrimary);
         headerLabel.setBorder(BorderFactory.createEmptyBorder(0, 0, 20, 0));
         
-        // Table with role-specific data
-        Object[][] data = getRoleSpecificTableData();
+        // Table with role-specific data, filled by loadDashboardData
         String[] columns = getRoleSpecificTableColumns();
         
-        DefaultTableModel model = new DefaultTableModel(data, columns) {
+        DefaultTableModel model = new DefaultTableModel(columns, 0) {
             @Override
             public boolean isCellEditable(int row, int column) {
                 return false;
@@ -370,6 +375,7 @@ public class DashboardPanel extends JPanel {
         };
         
         JTable table = new JTable(model);
+        roleTableLoader = TableLoader.forModel(model);
         table.setFont(new Font("Segoe UI", Font.PLAIN, 13));
         table.setRowHeight(35);
         table.setShowGrid(false);
@@ -388,7 +394,7 @@ public class DashboardPanel extends JPanel {
         scrollPane.getViewport().setBackground(Color.WHITE);
         
         panel.add(headerLabel, BorderLayout.NORTH);
-        panel.add(scrollPane, BorderLayout.CENTER);
+        panel.add(roleTableLoader.decorate(scrollPane), BorderLayout.CENTER);
         
         return panel;
     }
@@ -399,13 +405,13 @@ public class DashboardPanel extends JPanel {
         if (role.equals("INVENTORY_MANAGER") || role.equals("INVENTORY_STAFF")) {
             return "Critical Stock Items";
         } else if (role.equals("SALES_MANAGER") || role.equals("SALES_STAFF")) {
-            return "Top Selling Items";
+            return "Top Selling Items (Last 30 Days)";
         } else if (role.equals("PURCHASE_MANAGER") || role.equals("PURCHASE_STAFF")) {
             return "Pending Orders";
         } else if (role.equals("FINANCE_MANAGER")) {
             return "Payment Status";
         } else {
-            return "Top Selling Items";
+            return "Top Selling Items (Last 30 Days)";
         }
     }
     
@@ -429,17 +435,9 @@ public class DashboardPanel extends JPanel {
         String role = currentUser.getRole();
         
         if (role.equals("INVENTORY_MANAGER") || role.equals("INVENTORY_STAFF")) {
-            return new Object[][]{
-                {"Sugar (White)", "15 kg", "Low Stock"},
-                {"Oil (Cooking)", "0 ltr", "Out of Stock"},
-                {"Flour (All Purpose)", "25 kg", "Low Stock"}
-            };
+            return getCriticalStockData();
         } else if (role.equals("SALES_MANAGER") || role.equals("SALES_STAFF")) {
-            return new Object[][]{
-                {"Rice (Premium)", "500 kg", "RM 1,750"},
-                {"Sugar (White)", "300 kg", "RM 840"},
-                {"Oil (Cooking)", "200 ltr", "RM 1,200"}
-            };
+            return getTopSellingData();
         } else if (role.equals("PURCHASE_MANAGER") || role.equals("PURCHASE_STAFF")) {
             return new Object[][]{
                 {"ABC Suppliers", "RM 15,000", "Pending"},
@@ -453,16 +451,54 @@ public class DashboardPanel extends JPanel {
                 {"INV-2025-003", "RM 7,100", "Overdue"}
             };
         } else {
-            return new Object[][]{
-                {"Rice (Premium)", "500 kg", "RM 1,750"},
-                {"Sugar (White)", "300 kg", "RM 840"},
-                {"Oil (Cooking)", "200 ltr", "RM 1,200"}
+            return getTopSellingData();
+        }
+    }
+    
+    // Best sellers of the last TOP_SELLING_DAYS days, by revenue
+    private Object[][] getTopSellingData() {
+        Calendar calendar = Calendar.getInstance();
+        Date endDate = calendar.getTime();
+        calendar.add(Calendar.DAY_OF_MONTH, -(TOP_SELLING_DAYS - 1));
+        Date startDate = calendar.getTime();
+        
+        List<Map.Entry<String, SalesRollups.Totals>> top = SalesRollups.topItems(startDate, endDate, TABLE_ROWS);
+        Object[][] data = new Object[top.size()][];
+        for (int i = 0; i < top.size(); i++) {
+            String itemCode = top.get(i).getKey();
+            SalesRollups.Totals totals = top.get(i).getValue();
+            Item item = Item.getItemByCode(itemCode);
+            data[i] = new Object[]{
+                item != null ? item.getItemName() : itemCode,
+                String.valueOf(totals.getQuantity()),
+                String.format("RM %,.2f", totals.getRevenueCents() / 100.0)
             };
         }
+        return data;
+    }
+    
+    // Items at or below their reorder level, most critical first
+    private Object[][] getCriticalStockData() {
+        List<Item> items = Item.getItemsBelowReorderLevel();
+        if (items.size() > TABLE_ROWS) {
+            items = items.subList(0, TABLE_ROWS);
+        }
+        Object[][] data = new Object[items.size()][];
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            String status = item.getCurrentStock() <= 0 ? "Out of Stock" : "Low Stock";
+            data[i] = new Object[]{item.getItemName(), String.valueOf(item.getCurrentStock()), status};
+        }
+        return data;
+    }
+    
+    // Read the latest sales and stock figures again; called each time the dashboard is shown
+    public void refreshDashboard() {
+        loadDashboardData();
     }
     
     private void loadDashboardData() {
-        // Load actual data here if needed
-        // For now, using static data as shown in the screenshot
+        // Sales rollups and the stock index may need reading from disk, so the table is filled off the event dispatch thread
+        roleTableLoader.load(() -> Arrays.asList(getRoleSpecificTableData()));
     }
 } 
\ No newline at end of file
@@ -1,6 +1,8 @@
 package com.owsb.view.panels;
 
 import com.owsb.model.*;
+import com.owsb.view.components.ListTableModel;
+import com.owsb.view.components.TableLoader;
 import javax.swing.*;
 import javax.swing.border.*;
 import javax.swing.table.*;
@@ -11,12 +13,12 @@ import java.util.*;
 import java.util.List;
 import java.text.DecimalFormat;
 
-public class InventoryManagementPanel extends JPanel {
+public class InventoryManagementPanel extends JPanel implements RecordListPanel {
     private User currentUser;
     
     // UI Components
     private JTable stockTable;
-    private DefaultTableModel tableModel;
+    private ListTableModel<Item> tableModel;
     private JTextField searchField;
     private JComboBox<String> categoryFilter;
     private JComboBox<String> stockStatusFilter;
@@ -29,9 +31,17 @@ public class InventoryManagementPanel extends JPanel {
     private JLabel outOfStockLabel;
     private JLabel totalStockValueLabel;
     
-    // List of all items
+    // List of all items and suppliers, as of the last load
     private List<Item> items;
     private List<Supplier> suppliers;
+    private TableLoader<Item> itemLoader;
+    
+    // Search over the loaded items; the table shows the rows it includes
+    private final InventorySearch search = new InventorySearch();
+    private TableRowSorter<ListTableModel<Item>> rowSorter;
+    // Waits for a pause in typing before searching
+    private javax.swing.Timer searchTimer;
+    private static final int SEARCH_DELAY_MS = 100;
     
     // For number formatting
     private DecimalFormat decimalFormat = new DecimalFormat("#,##0.00");
@@ -46,24 +56,35 @@ public class InventoryManagementPanel extends JPanel {
         initializeTable();
         setupUI();
         loadItems();
-        loadSuppliers();
-        updateStatistics();
     }
     
     private void initializeTable() {
-        String[] columnNames = {
-            "Item Code", "Item Name", "Current Stock", "Min Level", 
-            "Max Level", "Last Updated", "Stock Status", "Actions"
-        };
-        
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return column == 7; // Only Actions column is editable
-            }
-        };
+        // Rows are the items themselves; levels are shown with their units as they are drawn
+        tableModel = new ListTableModel<Item>()
+            .addColumn("Item Code", String.class, Item::getItemCode)
+            .addColumn("Item Name", String.class, Item::getItemName)
+            .addColumn("Current Stock", Integer.class, Item::getCurrentStock)
+            .addColumn("Min Level", Integer.class, Item::getReorderLevel)
+            .addColumn("Max Level", Integer.class, item -> 100) // Default max stock
+            .addColumn("Last Updated", String.class, item -> "2025-05-24") // Default date - you may want to add this field to Item model
+            .addColumn("Stock Status", String.class, InventorySearch::statusName)
+            .addColumn("Actions")
+            .setEditable(7); // Only Actions column is editable
+        
+        itemLoader = TableLoader.forList(tableModel);
         
         stockTable = new JTable(tableModel);
+        
+        // Filtering hides rows instead of rebuilding them; columns are not sortable
+        rowSorter = new TableRowSorter<>(tableModel);
+        for (int i = 0; i < tableModel.getColumnCount(); i++) {
+            rowSorter.setSortable(i, false);
+        }
+        rowSorter.setRowFilter(search);
+        stockTable.setRowSorter(rowSorter);
+        
+        searchTimer = new javax.swing.Timer(SEARCH_DELAY_MS, e -> filterItems());
+        searchTimer.setRepeats(false);
         stockTable.setRowHeight(32);
         stockTable.setFont(new Font("Segoe UI", Font.PLAIN, 11));
         stockTable.setShowGrid(true);
@@ -99,31 +120,10 @@ public class InventoryManagementPanel extends JPanel {
         stockTable.getColumnModel().getColumn(7).setCellRenderer(new ActionButtonRenderer());
         stockTable.getColumnModel().getColumn(7).setCellEditor(new ActionButtonEditor());
         
-        // Default cell renderer for other columns
-        DefaultTableCellRenderer defaultRenderer = new DefaultTableCellRenderer() {
-            @Override
-            public Component getTableCellRendererComponent(JTable table, Object value, 
-                    boolean isSelected, boolean hasFocus, int row, int column) {
-                Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
-                
-                setBorder(BorderFactory.createEmptyBorder(6, 10, 6, 10));
-                setFont(new Font("Segoe UI", Font.PLAIN, 11));
-                
-                if (isSelected) {
-                    setBackground(new Color(239, 246, 255));
-                    setForeground(new Color(31, 41, 55));
-                } else {
-                    setBackground(Color.WHITE);
-                    setForeground(new Color(55, 65, 81));
-                }
-                
-                return c;
-            }
-        };
-        
-        // Apply to regular columns (not status or actions)
+        // Default cell renderer for other columns (not status or actions)
         for (int i = 0; i < 6; i++) {
-            stockTable.getColumnModel().getColumn(i).setCellRenderer(defaultRenderer);
+            stockTable.getColumnModel().getColumn(i).setCellRenderer(
+                i >= 2 && i <= 4 ? new CellRenderer(value -> value + " units") : new CellRenderer(String::valueOf));
         }
     }
     
@@ -224,7 +224,7 @@ public class InventoryManagementPanel extends JPanel {
             @Override
             public void keyReleased(KeyEvent e) {
                 if (!searchField.getText().equals("Search items...")) {
-                    filterItems();
+                    searchTimer.restart();
                 }
             }
         });
@@ -290,7 +290,7 @@ public class InventoryManagementPanel extends JPanel {
         scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
         scrollPane.setPreferredSize(new Dimension(1200, 320));
         
-        tableSection.add(scrollPane, BorderLayout.CENTER);
+        tableSection.add(itemLoader.decorate(scrollPane), BorderLayout.CENTER);
         mainPanel.add(tableSection, BorderLayout.CENTER);
         
         return mainPanel;
@@ -328,149 +328,56 @@ public class InventoryManagementPanel extends JPanel {
     }
     
     private void loadItems() {
-        // Clear existing data
-        tableModel.setRowCount(0);
-        
-        // Load items from data source
-        items = Item.getAllItems();
-        
-        // If no items exist, add some sample data for testing
-        if (items == null || items.isEmpty()) {
-            Object[][] sampleData = {
-                {"ITM-001", "Rice (Premium)", "250 kg", "50 kg", "500 kg", "2025-05-24", "Normal"},
-                {"ITM-002", "Sugar (White)", "15 kg", "30 kg", "200 kg", "2025-05-23", "Low Stock"},
-                {"ITM-003", "Oil (Cooking)", "0 ltr", "20 ltr", "100 ltr", "2025-05-22", "Out of Stock"}
-            };
-            
-            for (Object[] row : sampleData) {
-                tableModel.addRow(new Object[]{
-                    row[0], row[1], row[2], row[3], row[4], 
-                    row[5], row[6], ""
-                });
-            }
+        // Read the items and suppliers and work out their search keys off the event dispatch thread,
+        // then show them with the current filters
+        itemLoader.load(() -> new Stock(Item.getAllItems(), Supplier.getAllSuppliers()),
+                        stock -> stock.items,
+                        stock -> {
+                            items = stock.items;
+                            suppliers = stock.suppliers;
+                            search.setIndex(stock.searchIndex);
+                            filterItems();
+                            updateStatistics();
+                        });
+    }
+    
+    private void filterItems() {
+        searchTimer.stop();
+        if (items == null) {
+            // Still loading; the load applies the filters when it finishes
             return;
         }
         
-        for (Item item : items) {
-            // Determine status based on stock levels
-            String status;
-            int currentStock = item.getCurrentStock();
-            int minStock = item.getReorderLevel();
-            
-            if (currentStock == 0) {
-                status = "Out of Stock";
-            } else if (currentStock <= minStock) {
-                status = "Low Stock";
-            } else {
-                status = "Normal";
-            }
-            
-            // Format stock with units
-            String stockDisplay = currentStock + " units";
-            String minStockDisplay = minStock + " units";
-            String maxStockDisplay = "100 units"; // Default max stock
-            
-            // Add row to table
-            Object[] rowData = {
-                item.getItemCode(),
-                item.getItemName(),
-                stockDisplay,
-                minStockDisplay,
-                maxStockDisplay,
-                "2025-05-24", // Default date - you may want to add this field to Item model
-                status,
-                "" // Actions column (handled by custom renderer)
-            };
-            
-            tableModel.addRow(rowData);
+        String searchText = searchField.getText();
+        if (searchText.equals("Search items...")) {
+            searchText = "";
+        }
+        if (search.setQuery(searchText, (String) categoryFilter.getSelectedItem(),
+                            (String) stockStatusFilter.getSelectedItem())) {
+            rowSorter.sort();
         }
     }
     
-    private void loadSuppliers() {
-        suppliers = Supplier.getAllSuppliers();
+    // Filter the table down to one item, clearing the other filters; a load in progress applies it when it finishes
+    @Override
+    public void showRecord(String id) {
+        categoryFilter.setSelectedIndex(0);
+        stockStatusFilter.setSelectedIndex(0);
+        searchField.setText(id);
+        searchField.setForeground(new Color(31, 41, 55));
+        filterItems();
     }
     
-    private void filterItems() {
-        String searchText = searchField.getText().toLowerCase().trim();
-        String selectedCategory = (String) categoryFilter.getSelectedItem();
-        String selectedStatus = (String) stockStatusFilter.getSelectedItem();
-        
-        // Clear table
-        tableModel.setRowCount(0);
-        
-        // If no items loaded, show sample data
-        if (items == null || items.isEmpty()) {
-            Object[][] sampleData = {
-                {"ITM-001", "Rice (Premium)", "250 kg", "50 kg", "500 kg", "2025-05-24", "Normal"},
-                {"ITM-002", "Sugar (White)", "15 kg", "30 kg", "200 kg", "2025-05-23", "Low Stock"},
-                {"ITM-003", "Oil (Cooking)", "0 ltr", "20 ltr", "100 ltr", "2025-05-22", "Out of Stock"}
-            };
-            
-            for (Object[] row : sampleData) {
-                String itemName = row[1].toString().toLowerCase();
-                String itemCode = row[0].toString().toLowerCase();
-                String status = row[6].toString();
-                
-                boolean matchesSearch = searchText.isEmpty() || searchText.equals("search items...") ||
-                    itemName.contains(searchText) || itemCode.contains(searchText);
-                
-                boolean matchesCategory = selectedCategory.equals("All Categories"); // For sample data
-                boolean matchesStatus = selectedStatus.equals("All Stock Status") || status.equals(selectedStatus);
-                
-                if (matchesSearch && matchesCategory && matchesStatus) {
-                    tableModel.addRow(new Object[]{
-                        row[0], row[1], row[2], row[3], row[4], 
-                        row[5], row[6], ""
-                    });
-                }
-            }
-            return;
-        }
-        
-        for (Item item : items) {
-            // Apply filters
-            boolean matchesSearch = searchText.isEmpty() || searchText.equals("search items...") ||
-                item.getItemName().toLowerCase().contains(searchText) ||
-                item.getItemCode().toLowerCase().contains(searchText);
-            
-            boolean matchesCategory = selectedCategory.equals("All Categories") || 
-                item.getCategory().equals(selectedCategory);
-            
-            // Determine status
-            String status;
-            int currentStock = item.getCurrentStock();
-            int minStock = item.getReorderLevel();
-            
-            if (currentStock == 0) {
-                status = "Out of Stock";
-            } else if (currentStock <= minStock) {
-                status = "Low Stock";
-            } else {
-                status = "Normal";
-            }
-            
-            boolean matchesStatus = selectedStatus.equals("All Stock Status") || status.equals(selectedStatus);
-            
-            if (matchesSearch && matchesCategory && matchesStatus) {
-                // Format stock with units
-                String stockDisplay = currentStock + " units";
-                String minStockDisplay = minStock + " units";
-                String maxStockDisplay = "100 units";
-                
-                // Add row to table
-                Object[] rowData = {
-                    item.getItemCode(),
-                    item.getItemName(),
-                    stockDisplay,
-                    minStockDisplay,
-                    maxStockDisplay,
-                    "2025-05-24",
-                    status,
-                    ""
-                };
-                
-                tableModel.addRow(rowData);
-            }
+    // Items and suppliers as read by one load, with the items' search keys
+    private static class Stock {
+        final List<Item> items;
+        final List<Supplier> suppliers;
+        final InventorySearch.Index searchIndex;
+        
+        Stock(List<Item> items, List<Supplier> suppliers) {
+            this.items = items;
+            this.suppliers = suppliers;
+            this.searchIndex = InventorySearch.index(items);
         }
     }
     
@@ -510,6 +417,39 @@ public class InventoryManagementPanel extends JPanel {
         totalStockValueLabel.setText("RM " + numberFormat.format(totalValue));
     }
     
+    // Default renderer for the plain columns, showing each value as format turns it into text
+    class CellRenderer extends DefaultTableCellRenderer {
+        private final java.util.function.Function<Object, String> format;
+        
+        CellRenderer(java.util.function.Function<Object, String> format) {
+            this.format = format;
+        }
+        
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, 
+                boolean isSelected, boolean hasFocus, int row, int column) {
+            Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+            
+            setBorder(BorderFactory.createEmptyBorder(6, 10, 6, 10));
+            setFont(new Font("Segoe UI", Font.PLAIN, 11));
+            
+            if (isSelected) {
+                setBackground(new Color(239, 246, 255));
+                setForeground(new Color(31, 41, 55));
+            } else {
+                setBackground(Color.WHITE);
+                setForeground(new Color(55, 65, 81));
+            }
+            
+            return c;
+        }
+        
+        @Override
+        protected void setValue(Object value) {
+            setText(value == null ? "" : format.apply(value));
+        }
+    }
+    
     // Custom renderer for Status column
     class StatusCellRenderer extends DefaultTableCellRenderer {
         @Override
@@ -647,32 +587,14 @@ public class InventoryManagementPanel extends JPanel {
         }
         
         private void adjustStock(int row) {
-            String itemCode = (String) tableModel.getValueAt(row, 0);
-            String itemName = (String) tableModel.getValueAt(row, 1);
-            
-            // Find the item
-            Item item = null;
-            if (items != null) {
-                for (Item i : items) {
-                    if (i.getItemCode().equals(itemCode)) {
-                        item = i;
-                        break;
-                    }
-                }
-            }
-            
-            if (item != null) {
-                showStockAdjustmentDialog(item);
-            } else {
-                JOptionPane.showMessageDialog(stockTable, "Stock adjustment for " + itemName + " (" + itemCode + ")");
-            }
+            // Rows in the table are filtered, so find the item's row in the model
+            showStockAdjustmentDialog(tableModel.getRow(stockTable.convertRowIndexToModel(row)));
         }
         
         private void showHistory(int row) {
-            String itemCode = (String) tableModel.getValueAt(row, 0);
-            String itemName = (String) tableModel.getValueAt(row, 1);
+            Item item = tableModel.getRow(stockTable.convertRowIndexToModel(row));
             
-            JOptionPane.showMessageDialog(stockTable, "Stock history for " + itemName + " (" + itemCode + ")");
+            JOptionPane.showMessageDialog(stockTable, "Stock history for " + item.getItemName() + " (" + item.getItemCode() + ")");
         }
     }
     
@@ -990,7 +912,6 @@ public class InventoryManagementPanel extends JPanel {
                 
                 adjustmentDialog.dispose();
                 loadItems();
-                updateStatistics();
                 
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(adjustmentDialog, "Please enter a valid quantity", "Validation Error", JOptionPane.WARNING_MESSAGE);
@@ -0,0 +1,167 @@
+package com.owsb.view.panels;
+
+import com.owsb.model.Item;
+import com.owsb.view.components.ListTableModel;
+import javax.swing.RowFilter;
+import java.util.*;
+import java.util.List;
+
+/**
+ * Row filter for the inventory table: search text, category and stock status.
+ * Everything the filter compares is worked out once per load by
+ * {@link #index}: each item's lower-cased name and code, its category as a
+ * number and its stock status bucket. A query then only compares those, and
+ * keeps the rows it matched, so a query that extends the previous one (more
+ * text typed, same category and status) only rechecks the rows that
+ * matched before.
+ * <p>
+ * The table model is left as it is; the table's row sorter asks
+ * {@link #include} which model rows to show.
+ */
+final class InventorySearch extends RowFilter<ListTableModel<Item>, Integer> {
+    static final String ALL_CATEGORIES = "All Categories";
+    static final String ALL_STATUSES = "All Stock Status";
+
+    // Stock status buckets, in the order of STATUS_NAMES
+    private static final byte NORMAL = 0;
+    private static final byte LOW_STOCK = 1;
+    private static final byte OUT_OF_STOCK = 2;
+    private static final String[] STATUS_NAMES = {"Normal", "Low Stock", "Out of Stock"};
+
+    /**
+     * Search keys of one load's items, by model row.
+     */
+    static final class Index {
+        private final List<Item> items;
+        private final String[] keys;         // "name\ncode", lower case
+        private final int[] categories;      // position in categoryNames
+        private final byte[] statuses;
+        private final List<String> categoryNames;
+
+        private Index(List<Item> items, String[] keys, int[] categories, byte[] statuses, List<String> categoryNames) {
+            this.items = items;
+            this.keys = keys;
+            this.categories = categories;
+            this.statuses = statuses;
+            this.categoryNames = categoryNames;
+        }
+    }
+
+    private Index index = null;
+    // The last query and the model rows it matched
+    private String text = "";
+    private int category = -1;
+    private int status = -1;
+    private BitSet matches = null;
+
+    // Work out the search keys of a load's items; can run off the event dispatch thread
+    static Index index(List<Item> items) {
+        int size = items.size();
+        String[] keys = new String[size];
+        int[] categories = new int[size];
+        byte[] statuses = new byte[size];
+        List<String> categoryNames = new ArrayList<>();
+        Map<String, Integer> categoryIds = new HashMap<>();
+
+        for (int row = 0; row < size; row++) {
+            Item item = items.get(row);
+            keys[row] = (item.getItemName() + "\n" + item.getItemCode()).toLowerCase();
+            categories[row] = categoryIds.computeIfAbsent(String.valueOf(item.getCategory()), name -> {
+                categoryNames.add(name);
+                return categoryNames.size() - 1;
+            });
+            statuses[row] = statusOf(item);
+        }
+        return new Index(items, keys, categories, statuses, categoryNames);
+    }
+
+    // Stock status shown for an item
+    static String statusName(Item item) {
+        return STATUS_NAMES[statusOf(item)];
+    }
+
+    // Use the keys of a new load; the query has to be set again before the filter is used
+    void setIndex(Index index) {
+        this.index = index;
+        this.matches = null;
+    }
+
+    /**
+     * Match the rows against a query; text is matched in lower case against
+     * names and codes. Returns false when the query is the one already
+     * applied, so the table does not need filtering again.
+     */
+    boolean setQuery(String text, String categoryName, String statusName) {
+        if (index == null) {
+            return false;
+        }
+        String query = text.toLowerCase().trim();
+        int newCategory = ALL_CATEGORIES.equals(categoryName) ? -1 : categoryId(categoryName);
+        int newStatus = ALL_STATUSES.equals(statusName) ? -1 : Arrays.asList(STATUS_NAMES).indexOf(statusName);
+
+        boolean sameFilters = matches != null && newCategory == category && newStatus == status;
+        if (sameFilters && query.equals(this.text)) {
+            return false;
+        }
+        // A longer query only matches rows the shorter one did
+        BitSet candidates = sameFilters && query.startsWith(this.text) ? matches : null;
+
+        int size = index.keys.length;
+        BitSet found = new BitSet(size);
+        if (candidates != null) {
+            for (int row = candidates.nextSetBit(0); row >= 0; row = candidates.nextSetBit(row + 1)) {
+                if (index.keys[row].contains(query)) {
+                    found.set(row);
+                }
+            }
+        } else {
+            for (int row = 0; row < size; row++) {
+                if ((newCategory < 0 || index.categories[row] == newCategory)
+                        && (newStatus < 0 || index.statuses[row] == newStatus)
+                        && (query.isEmpty() || index.keys[row].contains(query))) {
+                    found.set(row);
+                }
+            }
+        }
+
+        this.text = query;
+        this.category = newCategory;
+        this.status = newStatus;
+        this.matches = found;
+        return true;
+    }
+
+    // Number of rows the query matched
+    int matchCount() {
+        return matches != null ? matches.cardinality() : 0;
+    }
+
+    @Override
+    public boolean include(Entry<? extends ListTableModel<Item>, ? extends Integer> entry) {
+        int row = entry.getIdentifier();
+        if (index == null || matches == null) {
+            return true;
+        }
+        // Rows from a load whose keys are not in yet are shown until they are
+        if (row >= index.items.size() || entry.getModel().getRow(row) != index.items.get(row)) {
+            return true;
+        }
+        return matches.get(row);
+    }
+
+    // A category no item has gets an id that matches nothing
+    private int categoryId(String categoryName) {
+        int id = index.categoryNames.indexOf(categoryName);
+        return id >= 0 ? id : Integer.MAX_VALUE;
+    }
+
+    private static byte statusOf(Item item) {
+        int currentStock = item.getCurrentStock();
+        if (currentStock == 0) {
+            return OUT_OF_STOCK;
+        } else if (currentStock <= item.getReorderLevel()) {
+            return LOW_STOCK;
+        }
+        return NORMAL;
+    }
+}
@@ -1,6 +1,8 @@
 package com.owsb.view.panels;
 
 import com.owsb.model.*;
+import com.owsb.view.components.ListTableModel;
+import com.owsb.view.components.TableLoader;
 import javax.swing.*;
 import javax.swing.border.*;
 import javax.swing.table.*;
@@ -10,12 +12,12 @@ import java.util.*;
 import java.util.List;
 import java.text.DecimalFormat;
 
-public class ItemManagementPanel extends JPanel {
+public class ItemManagementPanel extends JPanel implements RecordListPanel {
     private User currentUser;
     
     // UI Components
     private JTable itemTable;
-    private DefaultTableModel tableModel;
+    private ListTableModel<Item> tableModel;
     private JTextField searchField;
     private JComboBox<String> categoryFilter;
     private JComboBox<String> supplierFilter;
@@ -37,8 +39,11 @@ public class ItemManagementPanel extends JPanel {
     private JTextField minimumStockField;
     private JTextField maximumStockField;
     
-    // List of all items
+    // List of all items and supplier names by id, as of the last load
     private List<Item> items;
+    private Map<String, String> supplierNames;
+    private TableLoader<Item> itemLoader;
+    
     
     // Modern UI Colors - Updated to match the blue theme from screenshots
     private static final Color PRIMARY_BLUE = new Color(52, 144, 220);
@@ -65,18 +70,21 @@ public class ItemManagementPanel extends JPanel {
     }
     
     private void initializeTable() {
-        String[] columnNames = {
-            "Item Code", "Item Name", "Category", "Supplier", 
-            "Unit", "Current Stock", "Min Stock", "Unit Price", 
-            "Status", "Actions"
-        };
-        
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return column == 9; // Only Actions column is editable
-            }
-        };
+        // Rows are the items themselves; status and price are worked out only for rows on screen
+        tableModel = new ListTableModel<Item>()
+            .addColumn("Item Code", String.class, Item::getItemCode)
+            .addColumn("Item Name", String.class, Item::getItemName)
+            .addColumn("Category", String.class, Item::getCategory)
+            .addColumn("Supplier", String.class, this::supplierName)
+            .addColumn("Unit", String.class, item -> "kg") // Default unit - you may want to add this field to Item model
+            .addColumn("Current Stock", Integer.class, Item::getCurrentStock)
+            .addColumn("Min Stock", Integer.class, Item::getReorderLevel)
+            .addColumn("Unit Price", Double.class, Item::getUnitPrice)
+            .addColumn("Status", String.class, ItemManagementPanel::itemStatus)
+            .addColumn("Actions")
+            .setEditable(9); // Only Actions column is editable
+        
+        itemLoader = TableLoader.forList(tableModel);
         
         itemTable = new JTable(tableModel);
         itemTable.setRowHeight(50);
@@ -116,31 +124,10 @@ public class ItemManagementPanel extends JPanel {
         itemTable.getColumnModel().getColumn(9).setCellRenderer(new ActionButtonRenderer());
         itemTable.getColumnModel().getColumn(9).setCellEditor(new ActionButtonEditor());
         
-        // Default cell renderer for other columns
-        DefaultTableCellRenderer defaultRenderer = new DefaultTableCellRenderer() {
-            @Override
-            public Component getTableCellRendererComponent(JTable table, Object value, 
-                    boolean isSelected, boolean hasFocus, int row, int column) {
-                Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
-                
-                setBorder(BorderFactory.createEmptyBorder(6, 10, 6, 10));
-                setFont(new Font("Segoe UI", Font.PLAIN, 11));
-                
-                if (isSelected) {
-                    setBackground(new Color(239, 246, 255));
-                    setForeground(new Color(31, 41, 55));
-                } else {
-                    setBackground(Color.WHITE);
-                    setForeground(new Color(55, 65, 81));
-                }
-                
-                return c;
-            }
-        };
-        
-        // Apply to regular columns (not status or actions)
+        // Default cell renderer for other columns (not status or actions); prices are formatted as they are drawn
         for (int i = 0; i < 8; i++) {
-            itemTable.getColumnModel().getColumn(i).setCellRenderer(defaultRenderer);
+            itemTable.getColumnModel().getColumn(i).setCellRenderer(
+                i == 7 ? new CellRenderer(value -> priceFormat.format(value)) : new CellRenderer(String::valueOf));
         }
         
         // Force table to refresh and show buttons
@@ -264,118 +251,68 @@ public class ItemManagementPanel extends JPanel {
         scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
         scrollPane.setPreferredSize(new Dimension(1200, 320));
         
-        mainContentPanel.add(scrollPane, BorderLayout.CENTER);
+        mainContentPanel.add(itemLoader.decorate(scrollPane), BorderLayout.CENTER);
         contentPanel.add(mainContentPanel, BorderLayout.CENTER);
         
         add(contentPanel, BorderLayout.CENTER);
     }
     
     private void loadItems() {
-        // Clear existing data
-        tableModel.setRowCount(0);
-        
-        // Load items from data source
-        items = Item.getAllItems();
-        
-        // If no items exist, add some sample data for testing
-        if (items == null || items.isEmpty()) {
-            Object[][] sampleData = {
-                {"ITM-001", "Rice (Premium)", "Groceries", "ABC Trading", "kg", "250", "50", "RM 3.50", "Active"},
-                {"ITM-002", "Sugar (White)", "Groceries", "ABC Trading", "kg", "15", "30", "RM 2.80", "Low Stock"},
-                {"ITM-003", "Oil (Cooking)", "Groceries", "XYZ Supplies", "ltr", "0", "20", "RM 6.00", "Out of Stock"},
-                {"ITM-004", "Flour (All Purpose)", "Groceries", "ABC Trading", "kg", "100", "25", "RM 4.20", "Active"},
-                {"ITM-005", "Salt (Table)", "Groceries", "Global Imports", "kg", "80", "15", "RM 1.50", "Active"}
-            };
-            
-            for (Object[] row : sampleData) {
-                tableModel.addRow(new Object[]{
-                    row[0], row[1], row[2], row[3], row[4], 
-                    row[5], row[6], row[7], row[8], ""
-                });
+        // Read the items and supplier names off the event dispatch thread, then show them with the current filters
+        String[] filter = currentFilter();
+        itemLoader.load(() -> {
+            Map<String, String> names = new HashMap<>();
+            for (Supplier supplier : Supplier.getAllSuppliers()) {
+                names.put(supplier.getSupplierId(), supplier.getSupplierName());
             }
-            return;
-        }
-        
-        for (Item item : items) {
-            // Get supplier name
-            Supplier supplier = Supplier.getSupplierById(item.getSupplierId());
-            String supplierName = supplier != null ? supplier.getSupplierName() : "Unknown";
-            
-            // Determine status based on stock levels
-            String status;
-            int currentStock = item.getCurrentStock();
-            int minStock = item.getReorderLevel();
-            
-            if (currentStock == 0) {
-                status = "Out of Stock";
-            } else if (currentStock <= minStock) {
-                status = "Low Stock";
-            } else {
-                status = "Active";
-            }
-            
-            // Add row to table
-            Object[] rowData = {
-                item.getItemCode(),
-                item.getItemName(),
-                item.getCategory(),
-                supplierName,
-                "kg", // Default unit - you may want to add this field to Item model
-                String.valueOf(currentStock),
-                String.valueOf(minStock),
-                priceFormat.format(item.getUnitPrice()),
-                status,
-                "" // Actions column (handled by custom renderer)
-            };
-            
-            tableModel.addRow(rowData);
-        }
+            return new Catalog(Item.getAllItems(), names);
+        }, catalog -> matchingItems(catalog, filter), catalog -> {
+            items = catalog.items;
+            supplierNames = catalog.supplierNames;
+        });
     }
     
     private void filterItems() {
-        String searchText = searchField.getText().toLowerCase().trim();
-        String selectedCategory = (String) categoryFilter.getSelectedItem();
-        String selectedSupplier = (String) supplierFilter.getSelectedItem();
-        
-        // Clear table
-        tableModel.setRowCount(0);
-        
-        // If no items loaded, show sample data
-        if (items == null || items.isEmpty()) {
-            Object[][] sampleData = {
-                {"ITM-001", "Rice (Premium)", "Groceries", "ABC Trading", "kg", "250", "50", "RM 3.50", "Active"},
-                {"ITM-002", "Sugar (White)", "Groceries", "ABC Trading", "kg", "15", "30", "RM 2.80", "Low Stock"},
-                {"ITM-003", "Oil (Cooking)", "Groceries", "XYZ Supplies", "ltr", "0", "20", "RM 6.00", "Out of Stock"},
-                {"ITM-004", "Flour (All Purpose)", "Groceries", "ABC Trading", "kg", "100", "25", "RM 4.20", "Active"},
-                {"ITM-005", "Salt (Table)", "Groceries", "Global Imports", "kg", "80", "15", "RM 1.50", "Active"}
-            };
-            
-            for (Object[] row : sampleData) {
-                String itemName = row[1].toString().toLowerCase();
-                String itemCode = row[0].toString().toLowerCase();
-                String category = row[2].toString();
-                String supplier = row[3].toString();
-                
-                boolean matchesSearch = searchText.isEmpty() || searchText.equals("search items...") ||
-                    itemName.contains(searchText) || itemCode.contains(searchText);
-                
-                boolean matchesCategory = selectedCategory.equals("All Categories") || category.equals(selectedCategory);
-                boolean matchesSupplier = selectedSupplier.equals("All Suppliers") || supplier.equals(selectedSupplier);
-                
-                if (matchesSearch && matchesCategory && matchesSupplier) {
-                    tableModel.addRow(new Object[]{
-                        row[0], row[1], row[2], row[3], row[4], 
-                        row[5], row[6], row[7], row[8], ""
-                    });
-                }
-            }
+        if (items == null) {
+            // Still loading; the load applies the filters when it finishes
+            loadItems();
             return;
         }
         
-        for (Item item : items) {
+        String[] filter = currentFilter();
+        Catalog catalog = new Catalog(items, supplierNames);
+        itemLoader.load(() -> matchingItems(catalog, filter));
+    }
+    
+    // Filter the table down to one item, clearing the other filters
+    @Override
+    public void showRecord(String id) {
+        categoryFilter.setSelectedIndex(0);
+        supplierFilter.setSelectedIndex(0);
+        searchField.setText(id);
+        searchField.setForeground(new Color(31, 41, 55));
+        filterItems();
+    }
+    
+    // Search text (lower case), category and supplier as currently selected
+    private String[] currentFilter() {
+        return new String[] {
+            searchField.getText().toLowerCase().trim(),
+            (String) categoryFilter.getSelectedItem(),
+            (String) supplierFilter.getSelectedItem()
+        };
+    }
+    
+    // The items that match a filter; runs off the event dispatch thread
+    private static List<Item> matchingItems(Catalog catalog, String[] filter) {
+        String searchText = filter[0];
+        String selectedCategory = filter[1];
+        String selectedSupplier = filter[2];
+        List<Item> matches = new ArrayList<>();
+        
+        for (Item item : catalog.items) {
             // Get supplier name
-            Supplier supplier = Supplier.getSupplierById(item.getSupplierId());
-            String supplierName = supplier != null ? supplier.getSupplierName() : "Unknown";
+            String supplierName = catalog.supplierNames.getOrDefault(item.getSupplierId(), "Unknown");
             
             // Apply filters
             boolean matchesSearch = searchText.isEmpty() || searchText.equals("search items...") ||
@@ -389,35 +326,70 @@ public class ItemManagementPanel extends JPanel {
                 supplierName.equals(selectedSupplier);
             
             if (matchesSearch && matchesCategory && matchesSupplier) {
-                // Determine status
-                String status;
-                int currentStock = item.getCurrentStock();
-                int minStock = item.getReorderLevel();
-                
-                if (currentStock == 0) {
-                    status = "Out of Stock";
-                } else if (currentStock <= minStock) {
-                    status = "Low Stock";
-                } else {
-                    status = "Active";
-                }
-                
-                // Add row to table
-                Object[] rowData = {
-                    item.getItemCode(),
-                    item.getItemName(),
-                    item.getCategory(),
-                    supplierName,
-                    "kg",
-                    String.valueOf(currentStock),
-                    String.valueOf(minStock),
-                    priceFormat.format(item.getUnitPrice()),
-                    status,
-                    ""
-                };
-                
-                tableModel.addRow(rowData);
+                matches.add(item);
+            }
+        }
+        return matches;
+    }
+    
+    private String supplierName(Item item) {
+        String name = supplierNames != null ? supplierNames.get(item.getSupplierId()) : null;
+        return name != null ? name : "Unknown";
+    }
+    
+    // Determine status based on stock levels
+    private static String itemStatus(Item item) {
+        int currentStock = item.getCurrentStock();
+        if (currentStock == 0) {
+            return "Out of Stock";
+        } else if (currentStock <= item.getReorderLevel()) {
+            return "Low Stock";
+        } else {
+            return "Active";
+        }
+    }
+    
+    // Items and supplier names as read by one load
+    private static class Catalog {
+        final List<Item> items;
+        final Map<String, String> supplierNames;
+        
+        Catalog(List<Item> items, Map<String, String> supplierNames) {
+            this.items = items;
+            this.supplierNames = supplierNames;
+        }
+    }
+    
+    // Default renderer for the plain columns, showing each value as format turns it into text
+    class CellRenderer extends DefaultTableCellRenderer {
+        private final java.util.function.Function<Object, String> format;
+        
+        CellRenderer(java.util.function.Function<Object, String> format) {
+            this.format = format;
+        }
+        
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, 
+                boolean isSelected, boolean hasFocus, int row, int column) {
+            Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+            
+            setBorder(BorderFactory.createEmptyBorder(6, 10, 6, 10));
+            setFont(new Font("Segoe UI", Font.PLAIN, 11));
+            
+            if (isSelected) {
+                setBackground(new Color(239, 246, 255));
+                setForeground(new Color(31, 41, 55));
+            } else {
+                setBackground(Color.WHITE);
+                setForeground(new Color(55, 65, 81));
             }
+            
+            return c;
+        }
+        
+        @Override
+        protected void setValue(Object value) {
+            setText(value == null ? "" : format.apply(value));
         }
     }
     
@@ -574,7 +546,7 @@ public class ItemManagementPanel extends JPanel {
             if (item != null) {
                 showItemDetailsDialog(item);
             } else {
-                // Show sample data details
+                // No longer in the catalog: show what the table has
                 StringBuilder info = new StringBuilder();
                 info.append("Item Details:\n\n");
                 for (int i = 0; i < itemTable.getColumnCount() - 1; i++) {
@@ -614,7 +586,7 @@ public class ItemManagementPanel extends JPanel {
                     JOptionPane.showMessageDialog(itemTable, "Item deleted successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
                     loadItems();
                 } else {
-                    // For sample data, just remove from table
+                    // No longer in the catalog, just remove from table
                     tableModel.removeRow(row);
                 }
             }
@@ -207,18 +207,16 @@ public class NotificationPanel extends JPanel {
     }
     
     private void markAllNotificationsAsRead() {
-        List<Notification> notifications = Notification.getNotificationsForUser(currentUser.getUserId());
+        List<Notification> notifications = Notification.getUnreadNotificationsForUser(currentUser.getUserId());
         for (Notification notification : notifications) {
-            if (!notification.isRead()) {
-                notification.markAsRead();
-            }
+            notification.markAsRead();
         }
         loadNotifications();
     }
     
     private void updateNotificationCount() {
-        List<Notification> unreadNotifications = Notification.getUnreadNotificationsForUser(currentUser.getUserId());
-        notificationCountLabel.setText(unreadNotifications.size() + " unread notifications");
+        int unreadCount = Notification.getUnreadCountForUser(currentUser.getUserId());
+        notificationCountLabel.setText(unreadCount + " unread notifications");
     }
     
     // Refresh the notifications panel
@@ -228,6 +226,6 @@ public class NotificationPanel extends JPanel {
     
     // Get the number of unread notifications
     public int getUnreadNotificationCount() {
-        return Notification.getUnreadNotificationsForUser(currentUser.getUserId()).size();
+        return Notification.getUnreadCountForUser(currentUser.getUserId());
     }
 } 
\ No newline at end of file
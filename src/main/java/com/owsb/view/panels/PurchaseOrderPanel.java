@@ -15,7 +15,7 @@ import java.util.List;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 
-public class PurchaseOrderPanel extends JPanel {
+public class PurchaseOrderPanel extends JPanel implements RecordListPanel {
     private User currentUser;
     private Dashboard parentDashboard;
     
@@ -478,6 +478,12 @@ public class PurchaseOrderPanel extends JPanel {
         }
     }
     
+    // Select one PO's row, if the table lists it
+    @Override
+    public void showRecord(String id) {
+        RecordListPanel.selectRow(poTable, 0, id);
+    }
+    
     private JButton createStyledButton(String text, Color bgColor, Color textColor) {
         JButton button = new JButton(text);
         button.setFont(new Font("Inter", Font.BOLD, 14));
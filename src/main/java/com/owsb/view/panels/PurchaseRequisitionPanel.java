@@ -1,5 +1,6 @@
 package com.owsb.view.panels;
 
+import com.owsb.analytics.DemandForecaster;
 import com.owsb.model.*;
 import javax.swing.*;
 import javax.swing.border.*;
@@ -8,6 +9,7 @@ import java.awt.event.*;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 public class PurchaseRequisitionPanel extends JPanel {
     private User currentUser;
@@ -26,62 +28,13 @@ public class PurchaseRequisitionPanel extends JPanel {
     private JComboBox<String> unitCombo;
     private DefaultListModel<PRItem> selectedItemsModel;
     private JList<PRItem> selectedItemsList;
+    private JLabel forecastLabel;
     
-    // Sample items database (in real app, this would come from database)
-    private String[] allItems = {
-        "ITM-001 - Rice (Premium Basmati)",
-        "ITM-002 - Rice (Jasmine Long Grain)",
-        "ITM-003 - Rice (Brown Organic)",
-        "ITM-004 - Sugar (White Granulated)",
-        "ITM-005 - Sugar (Brown Raw)",
-        "ITM-006 - Sugar (Powdered)",
-        "ITM-007 - Oil (Olive Extra Virgin)",
-        "ITM-008 - Oil (Coconut Organic)",
-        "ITM-009 - Oil (Sunflower)",
-        "ITM-010 - Oil (Vegetable)",
-        "ITM-011 - Flour (All Purpose)",
-        "ITM-012 - Flour (Whole Wheat)",
-        "ITM-013 - Flour (Almond)",
-        "ITM-014 - Salt (Table Fine)",
-        "ITM-015 - Salt (Sea Coarse)",
-        "ITM-016 - Salt (Himalayan Pink)",
-        "ITM-017 - Pepper (Black Ground)",
-        "ITM-018 - Pepper (White Whole)",
-        "ITM-019 - Pasta (Spaghetti)",
-        "ITM-020 - Pasta (Penne)",
-        "ITM-021 - Pasta (Fusilli)",
-        "ITM-022 - Beans (Black Dried)",
-        "ITM-023 - Beans (Kidney Red)",
-        "ITM-024 - Beans (Chickpeas)",
-        "ITM-025 - Lentils (Red Split)",
-        "ITM-026 - Lentils (Green Whole)",
-        "ITM-027 - Quinoa (White Organic)",
-        "ITM-028 - Quinoa (Red)",
-        "ITM-029 - Oats (Rolled Old Fashioned)",
-        "ITM-030 - Oats (Steel Cut)",
-        "ITM-031 - Milk (Whole 3.25%)",
-        "ITM-032 - Milk (Skim 0%)",
-        "ITM-033 - Milk (Almond Unsweetened)",
-        "ITM-034 - Cheese (Cheddar Sharp)",
-        "ITM-035 - Cheese (Mozzarella Fresh)",
-        "ITM-036 - Cheese (Parmesan Aged)",
-        "ITM-037 - Butter (Unsalted)",
-        "ITM-038 - Butter (Salted)",
-        "ITM-039 - Eggs (Large Grade A)",
-        "ITM-040 - Eggs (Organic Free Range)",
-        "ITM-041 - Chicken (Breast Boneless)",
-        "ITM-042 - Chicken (Thighs Bone-in)",
-        "ITM-043 - Beef (Ground 80/20)",
-        "ITM-044 - Beef (Sirloin Steak)",
-        "ITM-045 - Fish (Salmon Atlantic)",
-        "ITM-046 - Fish (Tuna Yellowfin)",
-        "ITM-047 - Shrimp (Large Peeled)",
-        "ITM-048 - Tomatoes (Roma Fresh)",
-        "ITM-049 - Tomatoes (Cherry Organic)",
-        "ITM-050 - Onions (Yellow Medium)"
-        // In real application, this would be loaded from database
-    };
+    // Catalog items as "code - name", for the item search
+    private String[] allItems = new String[0];
     private String selectedItemCode = "";
+    // Bumped by every forecast request and reset; results of an older request are dropped
+    private int forecastGeneration = 0;
     
     // Modern UI Colors
     private static final Color PRIMARY_BLUE = new Color(37, 99, 235);
@@ -107,6 +60,13 @@ public class PurchaseRequisitionPanel extends JPanel {
     }
     
     private void initializeComponents() {
+        // Load the item catalog for the search field
+        List<Item> items = Item.getAllItems();
+        allItems = new String[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            allItems[i] = items.get(i).getItemCode() + " - " + items.get(i).getItemName();
+        }
+        
         // Initialize form fields
         prIdField = new JTextField();
         requiredDateField = new JTextField();
@@ -142,6 +102,11 @@ public class PurchaseRequisitionPanel extends JPanel {
         quantityField = new JTextField();
         unitCombo = new JComboBox<>(new String[]{"Select Unit", "kg", "pcs", "box", "liter", "meter", "pack"});
         
+        // Forecast hint shown when an item is selected
+        forecastLabel = new JLabel(" ");
+        forecastLabel.setFont(new Font("Inter", Font.PLAIN, 13));
+        forecastLabel.setForeground(GRAY_600);
+        
         // Initialize selected items list
         selectedItemsModel = new DefaultListModel<>();
         selectedItemsList = new JList<>(selectedItemsModel);
@@ -326,6 +291,8 @@ public class PurchaseRequisitionPanel extends JPanel {
         formPanel.add(addButton, gbc);
         
         content.add(formPanel, BorderLayout.CENTER);
+        forecastLabel.setBorder(BorderFactory.createEmptyBorder(4, 8, 0, 8));
+        content.add(forecastLabel, BorderLayout.SOUTH);
         card.add(content, BorderLayout.CENTER);
         return card;
     }
@@ -351,6 +318,10 @@ public class PurchaseRequisitionPanel extends JPanel {
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
         buttonPanel.setBackground(Color.WHITE);
         
+        JButton suggestButton = createStyledButton("Add Suggested Items", PRIMARY_BLUE, Color.WHITE);
+        suggestButton.addActionListener(e -> addSuggestedItems(suggestButton));
+        buttonPanel.add(suggestButton);
+        
         JButton removeButton = createStyledButton("Remove Selected", DANGER_RED, Color.WHITE);
         removeButton.addActionListener(e -> removeSelectedItem());
         buttonPanel.add(removeButton);
@@ -555,10 +526,102 @@ public class PurchaseRequisitionPanel extends JPanel {
         itemSearchField.setForeground(GRAY_600);
         quantityField.setText("1");
         unitCombo.setSelectedIndex(0);
+        clearForecast();
         
         JOptionPane.showMessageDialog(this, "Item added successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
     }
     
+    // Add every item whose stock is at or below its forecast reorder point, with the suggested quantity
+    private void addSuggestedItems(JButton suggestButton) {
+        Map<String, String> labels = new HashMap<>();
+        for (String item : allItems) {
+            labels.put(item.substring(0, item.indexOf(" - ")), item);
+        }
+        
+        // The first forecast reads the sales history and fits every item, so it runs off the event dispatch thread
+        suggestButton.setEnabled(false);
+        new SwingWorker<List<DemandForecaster.Suggestion>, Void>() {
+            @Override
+            protected List<DemandForecaster.Suggestion> doInBackground() {
+                List<DemandForecaster.Suggestion> due = new ArrayList<>();
+                for (DemandForecaster.Suggestion suggestion : DemandForecaster.suggestAll()) {
+                    Item item = Item.getItemByCode(suggestion.getItemCode());
+                    if (item != null && suggestion.getOrderQuantity() > 0
+                            && item.getCurrentStock() <= suggestion.getReorderPoint()) {
+                        due.add(suggestion);
+                    }
+                }
+                return due;
+            }
+            
+            @Override
+            protected void done() {
+                suggestButton.setEnabled(true);
+                List<DemandForecaster.Suggestion> due;
+                try {
+                    due = get();
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
+                    return;
+                }
+                
+                for (DemandForecaster.Suggestion suggestion : due) {
+                    String itemCode = suggestion.getItemCode();
+                    selectedItemsModel.addElement(new PRItem(labels.getOrDefault(itemCode, itemCode),
+                                                             String.valueOf(suggestion.getOrderQuantity()), "pcs"));
+                }
+                if (due.isEmpty()) {
+                    JOptionPane.showMessageDialog(PurchaseRequisitionPanel.this,
+                                                  "No items are at or below their forecast reorder point.",
+                                                  "No Suggestions", JOptionPane.INFORMATION_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+    
+    // Show the forecast for the selected item and prefill the suggested quantity, once it is worked out
+    private void showForecast(String itemCode) {
+        int generation = ++forecastGeneration;
+        forecastLabel.setText("Calculating forecast...");
+        new SwingWorker<DemandForecaster.Suggestion, Void>() {
+            @Override
+            protected DemandForecaster.Suggestion doInBackground() {
+                return DemandForecaster.suggest(itemCode);
+            }
+            
+            @Override
+            protected void done() {
+                if (generation != forecastGeneration) {
+                    return;
+                }
+                DemandForecaster.Suggestion suggestion;
+                try {
+                    suggestion = get();
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
+                    suggestion = null;
+                }
+                if (suggestion == null) {
+                    forecastLabel.setText(" ");
+                    return;
+                }
+                forecastLabel.setText(String.format(
+                    "Forecast %.1f/day over a %d-day lead time, reorder point %d, suggested order %d",
+                    suggestion.getDailyDemand(), suggestion.getLeadTimeDays(),
+                    suggestion.getReorderPoint(), suggestion.getOrderQuantity()));
+                if (suggestion.getOrderQuantity() > 0) {
+                    quantityField.setText(String.valueOf(suggestion.getOrderQuantity()));
+                }
+            }
+        }.execute();
+    }
+    
+    // Clear the forecast line, dropping any forecast still being worked out
+    private void clearForecast() {
+        forecastGeneration++;
+        forecastLabel.setText(" ");
+    }
+    
     private void removeSelectedItem() {
         int selectedIndex = selectedItemsList.getSelectedIndex();
         if (selectedIndex != -1) {
@@ -600,6 +663,7 @@ public class PurchaseRequisitionPanel extends JPanel {
         itemSearchField.setForeground(GRAY_600);
         quantityField.setText("1");
         unitCombo.setSelectedIndex(0);
+        clearForecast();
         selectedItemsModel.clear();
     }
     
@@ -828,8 +892,9 @@ public class PurchaseRequisitionPanel extends JPanel {
     private void selectItem(String item) {
         itemSearchField.setText(item);
         itemSearchField.setForeground(GRAY_900);
-        selectedItemCode = item;
+        selectedItemCode = item.substring(0, item.indexOf(" - "));
         itemSuggestionsPopup.setVisible(false);
+        showForecast(selectedItemCode);
         quantityField.requestFocus();
     }
 } 
\ No newline at end of file
@@ -0,0 +1,32 @@
+package com.owsb.view.panels;
+
+import javax.swing.JTable;
+import javax.swing.table.TableModel;
+
+/**
+ * A panel that lists records and can bring one of them into view, for
+ * example when it is picked from the global search. The panel either
+ * filters its table down to the record or selects its row, once its rows
+ * are loaded.
+ */
+public interface RecordListPanel {
+    // Show the record with this id (item code, supplier id, PR or PO id)
+    void showRecord(String id);
+
+    // Select and scroll to the first row whose value in a model column equals id; false if no row has it
+    static boolean selectRow(JTable table, int column, String id) {
+        TableModel model = table.getModel();
+        for (int row = 0; row < model.getRowCount(); row++) {
+            if (id.equals(String.valueOf(model.getValueAt(row, column)))) {
+                int viewRow = table.convertRowIndexToView(row);
+                if (viewRow < 0) {
+                    return false; // Filtered out
+                }
+                table.setRowSelectionInterval(viewRow, viewRow);
+                table.scrollRectToVisible(table.getCellRect(viewRow, 0, true));
+                return true;
+            }
+        }
+        return false;
+    }
+}
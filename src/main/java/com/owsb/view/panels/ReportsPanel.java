@@ -1,12 +1,16 @@
 package com.owsb.view.panels;
 
+import com.owsb.analytics.AdjustmentAnalytics;
+import com.owsb.analytics.SalesAnalytics;
 import com.owsb.model.*;
 import javax.swing.*;
 import javax.swing.border.*;
 import javax.swing.table.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.math.BigDecimal;
 import java.text.DecimalFormat;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.List;
@@ -31,9 +35,13 @@ public class ReportsPanel extends JPanel {
     private JLabel itemsSoldLabel;
     private JLabel transactionsLabel;
     private JLabel avgTransactionLabel;
+    private JLabel breakdownLabel;
     
     // Data
     private List<SalesReportEntry> salesData;
+    private SalesRollups.Totals reportTotals = new SalesRollups.Totals();
+    private String[] chartMonths = new String[0];
+    private double[] chartSales = new double[0];
     private DecimalFormat decimalFormat = new DecimalFormat("#,##0.00");
     private DecimalFormat numberFormat = new DecimalFormat("#,##0");
     private SimpleDateFormat dateFormat = new SimpleDateFormat("MM/dd/yyyy");
@@ -52,35 +60,35 @@ public class ReportsPanel extends JPanel {
     private static final Color GRAY_900 = new Color(17, 24, 39);
     private static final Color GRAY_300 = new Color(204, 204, 204);
     
-    // Inner class for sales report entry
+    // Inner class for sales report entry (one item's totals over the report period)
     private static class SalesReportEntry {
-        private String date;
         private String itemCode;
         private String itemName;
+        private String category;
         private String quantitySold;
-        private String unitPrice;
+        private String transactions;
+        private String averagePrice;
         private String totalAmount;
-        private String salesPerson;
         
-        public SalesReportEntry(String date, String itemCode, String itemName, 
-                               String quantitySold, String unitPrice, String totalAmount, String salesPerson) {
-            this.date = date;
+        public SalesReportEntry(String itemCode, String itemName, String category, String quantitySold,
+                               String transactions, String averagePrice, String totalAmount) {
             this.itemCode = itemCode;
             this.itemName = itemName;
+            this.category = category;
             this.quantitySold = quantitySold;
-            this.unitPrice = unitPrice;
+            this.transactions = transactions;
+            this.averagePrice = averagePrice;
             this.totalAmount = totalAmount;
-            this.salesPerson = salesPerson;
         }
         
         // Getters
-        public String getDate() { return date; }
         public String getItemCode() { return itemCode; }
         public String getItemName() { return itemName; }
+        public String getCategory() { return category; }
         public String getQuantitySold() { return quantitySold; }
-        public String getUnitPrice() { return unitPrice; }
+        public String getTransactions() { return transactions; }
+        public String getAveragePrice() { return averagePrice; }
         public String getTotalAmount() { return totalAmount; }
-        public String getSalesPerson() { return salesPerson; }
     }
     
     public ReportsPanel(User user) {
@@ -93,8 +101,8 @@ public class ReportsPanel extends JPanel {
         
         initializeTable();
         setupUI();
-        loadSampleData();
-        updateStatistics();
+        applyReportType();
+        loadReport();
     }
     
     private void setupUI() {
@@ -184,6 +192,8 @@ public class ReportsPanel extends JPanel {
             BorderFactory.createEmptyBorder(2, 12, 2, 12)
         ));
         reportTypeCombo.setBackground(Color.WHITE);
+        reportTypeCombo.setSelectedItem("Monthly Sales");
+        reportTypeCombo.addActionListener(e -> applyReportType());
         
         reportTypePanel.add(reportTypeLabel);
         reportTypePanel.add(Box.createVerticalStrut(8));
@@ -198,7 +208,7 @@ public class ReportsPanel extends JPanel {
         fromDateLabel.setFont(new Font("Segoe UI", Font.PLAIN, 14));
         fromDateLabel.setForeground(GRAY_700);
         
-        fromDateField = new JTextField("05/01/2025");
+        fromDateField = new JTextField();
         fromDateField.setFont(new Font("Segoe UI", Font.PLAIN, 14));
         fromDateField.setPreferredSize(new Dimension(140, 44));
         fromDateField.setBorder(BorderFactory.createCompoundBorder(
@@ -219,7 +229,7 @@ public class ReportsPanel extends JPanel {
         toDateLabel.setFont(new Font("Segoe UI", Font.PLAIN, 14));
         toDateLabel.setForeground(GRAY_700);
         
-        toDateField = new JTextField("05/25/2025");
+        toDateField = new JTextField();
         toDateField.setFont(new Font("Segoe UI", Font.PLAIN, 14));
         toDateField.setPreferredSize(new Dimension(140, 44));
         toDateField.setBorder(BorderFactory.createCompoundBorder(
@@ -268,22 +278,22 @@ public class ReportsPanel extends JPanel {
         statsPanel.setBorder(BorderFactory.createEmptyBorder(0, 0, 30, 0));
         
         // Total Sales Card
-        JPanel totalSalesCard = createStatCard("RM 125,450", "Total Sales (This Month)", PRIMARY_BLUE);
+        JPanel totalSalesCard = createStatCard("RM 0.00", "Total Sales", PRIMARY_BLUE);
         totalSalesLabel = (JLabel) ((JPanel) totalSalesCard.getComponent(0)).getComponent(0);
         statsPanel.add(totalSalesCard);
         
         // Items Sold Card
-        JPanel itemsSoldCard = createStatCard("2,890", "Items Sold", INFO_CYAN);
+        JPanel itemsSoldCard = createStatCard("0", "Items Sold", INFO_CYAN);
         itemsSoldLabel = (JLabel) ((JPanel) itemsSoldCard.getComponent(0)).getComponent(0);
         statsPanel.add(itemsSoldCard);
         
         // Transactions Card
-        JPanel transactionsCard = createStatCard("245", "Transactions", WARNING_ORANGE);
+        JPanel transactionsCard = createStatCard("0", "Transactions", WARNING_ORANGE);
         transactionsLabel = (JLabel) ((JPanel) transactionsCard.getComponent(0)).getComponent(0);
         statsPanel.add(transactionsCard);
         
         // Average Transaction Card
-        JPanel avgTransactionCard = createStatCard("RM 512", "Average Transaction", SUCCESS_GREEN);
+        JPanel avgTransactionCard = createStatCard("RM 0.00", "Average Transaction", SUCCESS_GREEN);
         avgTransactionLabel = (JLabel) ((JPanel) avgTransactionCard.getComponent(0)).getComponent(0);
         statsPanel.add(avgTransactionCard);
         
@@ -379,9 +389,13 @@ public class ReportsPanel extends JPanel {
         int width = getWidth();
         int height = getHeight();
         
-        // Chart data (sample monthly sales data)
-        String[] months = {"Jan", "Feb", "Mar", "Apr", "May"};
-        double[] sales = {85000, 92000, 78000, 105000, 125000}; // Sample data
+        // Chart data (monthly sales up to the end of the report period)
+        String[] months = chartMonths;
+        double[] sales = chartSales;
+        if (months.length == 0) {
+            g2d.dispose();
+            return;
+        }
         
         // Chart dimensions
         int chartWidth = width - 100;
@@ -394,7 +408,7 @@ public class ReportsPanel extends JPanel {
         for (double sale : sales) {
             maxSales = Math.max(maxSales, sale);
         }
-        maxSales = Math.ceil(maxSales / 10000) * 10000; // Round up to nearest 10k
+        maxSales = Math.max(10000, Math.ceil(maxSales / 10000) * 10000); // Round up to nearest 10k
         
         // Draw background grid
         g2d.setColor(new Color(240, 240, 240));
@@ -485,6 +499,13 @@ public class ReportsPanel extends JPanel {
         
         tablePanel.add(scrollPane, BorderLayout.CENTER);
         
+        // Breakdown of the period by category, recorder, day and stock adjustments
+        breakdownLabel = new JLabel(" ");
+        breakdownLabel.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        breakdownLabel.setForeground(GRAY_700);
+        breakdownLabel.setBorder(BorderFactory.createEmptyBorder(12, 0, 0, 0));
+        tablePanel.add(breakdownLabel, BorderLayout.SOUTH);
+        
         return tablePanel;
     }
     
@@ -521,7 +542,7 @@ public class ReportsPanel extends JPanel {
     
     private void initializeTable() {
         String[] columnNames = {
-            "Date", "Item Code", "Item Name", "Quantity Sold", "Unit Price", "Total Amount", "Sales Person"
+            "Item Code", "Item Name", "Category", "Quantity Sold", "Transactions", "Avg. Unit Price", "Total Amount"
         };
         
         tableModel = new DefaultTableModel(columnNames, 0) {
@@ -542,13 +563,13 @@ public class ReportsPanel extends JPanel {
         salesTable.setBackground(Color.WHITE);
         
         // Set column widths
-        salesTable.getColumnModel().getColumn(0).setPreferredWidth(100); // Date
-        salesTable.getColumnModel().getColumn(1).setPreferredWidth(100); // Item Code
-        salesTable.getColumnModel().getColumn(2).setPreferredWidth(150); // Item Name
+        salesTable.getColumnModel().getColumn(0).setPreferredWidth(100); // Item Code
+        salesTable.getColumnModel().getColumn(1).setPreferredWidth(150); // Item Name
+        salesTable.getColumnModel().getColumn(2).setPreferredWidth(120); // Category
         salesTable.getColumnModel().getColumn(3).setPreferredWidth(120); // Quantity Sold
-        salesTable.getColumnModel().getColumn(4).setPreferredWidth(100); // Unit Price
-        salesTable.getColumnModel().getColumn(5).setPreferredWidth(120); // Total Amount
-        salesTable.getColumnModel().getColumn(6).setPreferredWidth(120); // Sales Person
+        salesTable.getColumnModel().getColumn(4).setPreferredWidth(100); // Transactions
+        salesTable.getColumnModel().getColumn(5).setPreferredWidth(120); // Avg. Unit Price
+        salesTable.getColumnModel().getColumn(6).setPreferredWidth(120); // Total Amount
         
         // Header styling
         JTableHeader header = salesTable.getTableHeader();
@@ -587,13 +608,151 @@ public class ReportsPanel extends JPanel {
         }
     }
     
-    private void loadSampleData() {
-        // Add sample sales data
-        salesData.add(new SalesReportEntry("2025-05-25", "ITM-001", "Rice (Premium)", "50 kg", "RM 3.50", "RM 175.00", "John Doe"));
-        salesData.add(new SalesReportEntry("2025-05-25", "ITM-002", "Sugar (White)", "30 kg", "RM 2.80", "RM 84.00", "John Doe"));
-        salesData.add(new SalesReportEntry("2025-05-24", "ITM-003", "Oil (Cooking)", "25 ltr", "RM 6.00", "RM 150.00", "Jane Smith"));
+    // Fill the date fields with the period of the selected report type, ending today
+    private void applyReportType() {
+        String reportType = (String) reportTypeCombo.getSelectedItem();
+        Calendar calendar = Calendar.getInstance();
+        Date today = calendar.getTime();
+        
+        if ("Daily Sales".equals(reportType)) {
+            // From today
+        } else if ("Weekly Sales".equals(reportType)) {
+            calendar.add(Calendar.DAY_OF_MONTH, -6);
+        } else if ("Monthly Sales".equals(reportType)) {
+            calendar.set(Calendar.DAY_OF_MONTH, 1);
+        } else {
+            return; // Custom Range: keep whatever dates were entered
+        }
+        fromDateField.setText(dateFormat.format(calendar.getTime()));
+        toDateField.setText(dateFormat.format(today));
+    }
+    
+    // Load the report for the dates in the fields from the sales rollups
+    private boolean loadReport() {
+        Date fromDate;
+        Date toDate;
+        try {
+            dateFormat.setLenient(false);
+            fromDate = dateFormat.parse(fromDateField.getText().trim());
+            toDate = dateFormat.parse(toDateField.getText().trim());
+        } catch (ParseException e) {
+            JOptionPane.showMessageDialog(this,
+                "Please enter dates in the format MM/dd/yyyy.",
+                "Invalid Date", JOptionPane.ERROR_MESSAGE);
+            return false;
+        }
+        if (fromDate.after(toDate)) {
+            JOptionPane.showMessageDialog(this,
+                "From Date must not be after To Date.",
+                "Invalid Date Range", JOptionPane.ERROR_MESSAGE);
+            return false;
+        }
         
+        // One row per item sold in the period
+        salesData.clear();
+        reportTotals = SalesRollups.total(fromDate, toDate);
+        for (Map.Entry<String, SalesRollups.Totals> entry : SalesRollups.totalsByItem(fromDate, toDate).entrySet()) {
+            SalesRollups.Totals totals = entry.getValue();
+            Item item = Item.getItemByCode(entry.getKey());
+            String averagePrice = totals.getQuantity() != 0
+                ? "RM " + decimalFormat.format(totals.getRevenueCents() / 100.0 / totals.getQuantity())
+                : "-";
+            salesData.add(new SalesReportEntry(
+                entry.getKey(),
+                item != null ? item.getItemName() : "(Deleted item)",
+                item != null ? item.getCategory() : "",
+                numberFormat.format(totals.getQuantity()),
+                numberFormat.format(totals.getTransactions()),
+                averagePrice,
+                "RM " + formatCents(totals.getRevenueCents())
+            ));
+        }
+        
+        // Trend of the five months up to the end of the period
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(toDate);
+        calendar.set(Calendar.DAY_OF_MONTH, 1);
+        calendar.add(Calendar.MONTH, -4);
+        Map<String, SalesRollups.Totals> byMonth = SalesRollups.totalsByMonth(calendar.getTime(), toDate);
+        SimpleDateFormat monthFormat = new SimpleDateFormat("MMM");
+        chartMonths = new String[byMonth.size()];
+        chartSales = new double[byMonth.size()];
+        int i = 0;
+        for (SalesRollups.Totals totals : byMonth.values()) {
+            chartMonths[i] = monthFormat.format(calendar.getTime());
+            chartSales[i] = totals.getRevenueCents() / 100.0;
+            calendar.add(Calendar.MONTH, 1);
+            i++;
+        }
+        
+        updateBreakdown(fromDate, toDate);
         refreshTable();
+        updateStatistics();
+        repaint();
+        return true;
+    }
+    
+    // Category, recorder and daily revenue and net stock adjustments of the period, aggregated in parallel
+    private void updateBreakdown(Date fromDate, Date toDate) {
+        if (breakdownLabel == null) {
+            return;
+        }
+        
+        String bestDay = "-";
+        long[] byDay = SalesAnalytics.revenueCentsByDay(fromDate, toDate);
+        int best = -1;
+        for (int day = 0; day < byDay.length; day++) {
+            if (byDay[day] > 0 && (best < 0 || byDay[day] > byDay[best])) {
+                best = day;
+            }
+        }
+        if (best >= 0) {
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTime(fromDate);
+            calendar.add(Calendar.DAY_OF_MONTH, best);
+            bestDay = dateFormat.format(calendar.getTime()) + " (RM " + formatCents(byDay[best]) + ")";
+        }
+        
+        long added = 0;
+        long removed = 0;
+        Map<String, Long> adjustments = AdjustmentAnalytics.netQuantityByItem(fromDate, toDate);
+        for (long quantity : adjustments.values()) {
+            if (quantity > 0) {
+                added += quantity;
+            } else {
+                removed -= quantity;
+            }
+        }
+        
+        breakdownLabel.setText("<html>"
+            + "<b>By category:</b> " + topEntries(SalesAnalytics.revenueCentsByCategory(fromDate, toDate)) + "<br>"
+            + "<b>By recorder:</b> " + topEntries(SalesAnalytics.revenueCentsByRecorder(fromDate, toDate)) + "<br>"
+            + "<b>Best day:</b> " + bestDay + "<br>"
+            + "<b>Stock adjustments:</b> " + adjustments.size() + " items, +" + numberFormat.format(added)
+            + " / -" + numberFormat.format(removed) + " units net"
+            + "</html>");
+    }
+    
+    // The three largest amounts of a breakdown, e.g. "Stationery RM 120.00, Snacks RM 80.00"
+    private String topEntries(Map<String, Long> amountsCents) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(amountsCents.entrySet());
+        if (entries.isEmpty()) {
+            return "-";
+        }
+        entries.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < Math.min(3, entries.size()); i++) {
+            if (i > 0) {
+                text.append(", ");
+            }
+            text.append(entries.get(i).getKey().replace("&", "&amp;").replace("<", "&lt;"))
+                .append(" RM ").append(formatCents(entries.get(i).getValue()));
+        }
+        return text.toString();
+    }
+    
+    private String formatCents(long cents) {
+        return decimalFormat.format(BigDecimal.valueOf(cents, 2));
     }
     
     private void refreshTable() {
@@ -601,13 +760,13 @@ public class ReportsPanel extends JPanel {
         
         for (SalesReportEntry entry : salesData) {
             Object[] rowData = {
-                entry.getDate(),
                 entry.getItemCode(),
                 entry.getItemName(),
+                entry.getCategory(),
                 entry.getQuantitySold(),
-                entry.getUnitPrice(),
-                entry.getTotalAmount(),
-                entry.getSalesPerson()
+                entry.getTransactions(),
+                entry.getAveragePrice(),
+                entry.getTotalAmount()
             };
             
             tableModel.addRow(rowData);
@@ -620,14 +779,14 @@ public class ReportsPanel extends JPanel {
     }
     
     private void updateStatistics() {
-        // Calculate statistics from sample data
-        double totalSales = 409.00; // Sum of sample data
-        int itemsSold = 105; // Sum of quantities
-        int transactions = 3; // Number of entries
-        double avgTransaction = totalSales / transactions;
+        // Statistics of the report period
+        long totalSalesCents = reportTotals.getRevenueCents();
+        long itemsSold = reportTotals.getQuantity();
+        int transactions = reportTotals.getTransactions();
+        double avgTransaction = transactions > 0 ? totalSalesCents / 100.0 / transactions : 0;
         
         if (totalSalesLabel != null) {
-            totalSalesLabel.setText("RM " + decimalFormat.format(totalSales));
+            totalSalesLabel.setText("RM " + formatCents(totalSalesCents));
         }
         if (itemsSoldLabel != null) {
             itemsSoldLabel.setText(numberFormat.format(itemsSold));
@@ -641,20 +800,7 @@ public class ReportsPanel extends JPanel {
     }
     
     private void generateReport() {
-        String reportType = (String) reportTypeCombo.getSelectedItem();
-        String fromDate = fromDateField.getText();
-        String toDate = toDateField.getText();
-        
-        JOptionPane.showMessageDialog(this, 
-            "Generating " + reportType + " report\n" +
-            "From: " + fromDate + "\n" +
-            "To: " + toDate, 
-            "Generate Report", JOptionPane.INFORMATION_MESSAGE);
-        
-        // Here you would implement the actual report generation logic
-        // For now, just refresh the existing data
-        refreshTable();
-        updateStatistics();
+        loadReport();
     }
     
     private void exportToExcel() {
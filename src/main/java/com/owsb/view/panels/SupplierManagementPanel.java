@@ -1,6 +1,8 @@
 package com.owsb.view.panels;
 
 import com.owsb.model.*;
+import com.owsb.view.components.ListTableModel;
+import com.owsb.view.components.TableLoader;
 import javax.swing.*;
 import javax.swing.border.*;
 import javax.swing.table.*;
@@ -9,12 +11,13 @@ import java.awt.event.*;
 import java.util.*;
 import java.util.List;
 
-public class SupplierManagementPanel extends JPanel {
+public class SupplierManagementPanel extends JPanel implements RecordListPanel {
     private User currentUser;
     
     // UI Components
     private JTable supplierTable;
-    private DefaultTableModel tableModel;
+    private ListTableModel<Supplier> tableModel;
+    private TableLoader<Supplier> supplierLoader;
     private JTextField searchField;
     private JComboBox<String> statusFilter;
     private JComboBox<String> locationFilter;
@@ -33,6 +36,8 @@ public class SupplierManagementPanel extends JPanel {
     
     // List of all suppliers
     private List<Supplier> suppliers;
+    // Supplier to select once the rows being loaded are in, or null
+    private String pendingRecordId = null;
     
     public SupplierManagementPanel(User user) {
         this.currentUser = user;
@@ -46,17 +51,20 @@ public class SupplierManagementPanel extends JPanel {
     }
     
     private void initializeTable() {
-        String[] columnNames = {
-            "Supplier Code", "Company Name", "Contact Person", "Phone", 
-            "Email", "Location", "Items Supplied", "Status", "Actions"
-        };
-        
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return column == 8; // Only Actions column is editable
-            }
-        };
+        // Rows are the suppliers themselves
+        tableModel = new ListTableModel<Supplier>()
+            .addColumn("Supplier Code", String.class, Supplier::getSupplierId)
+            .addColumn("Company Name", String.class, Supplier::getSupplierName)
+            .addColumn("Contact Person", String.class, Supplier::getContactPerson)
+            .addColumn("Phone", String.class, Supplier::getPhoneNumber)
+            .addColumn("Email", String.class, Supplier::getEmail)
+            .addColumn("Location", String.class, Supplier::getAddress) // Using address as location for now
+            .addColumn("Items Supplied", Integer.class, SupplierManagementPanel::itemCount)
+            .addColumn("Status", String.class, supplier -> "Active") // Default status - you may want to add this field to Supplier model
+            .addColumn("Actions")
+            .setEditable(8); // Only Actions column is editable
+        
+        supplierLoader = TableLoader.forList(tableModel);
         
         supplierTable = new JTable(tableModel);
         supplierTable.setRowHeight(32);
@@ -95,31 +103,10 @@ public class SupplierManagementPanel extends JPanel {
         supplierTable.getColumnModel().getColumn(8).setCellRenderer(new ActionButtonRenderer());
         supplierTable.getColumnModel().getColumn(8).setCellEditor(new ActionButtonEditor());
         
-        // Default cell renderer for other columns
-        DefaultTableCellRenderer defaultRenderer = new DefaultTableCellRenderer() {
-            @Override
-            public Component getTableCellRendererComponent(JTable table, Object value, 
-                    boolean isSelected, boolean hasFocus, int row, int column) {
-                Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
-                
-                setBorder(BorderFactory.createEmptyBorder(6, 10, 6, 10));
-                setFont(new Font("Segoe UI", Font.PLAIN, 11));
-                
-                if (isSelected) {
-                    setBackground(new Color(239, 246, 255));
-                    setForeground(new Color(31, 41, 55));
-                } else {
-                    setBackground(Color.WHITE);
-                    setForeground(new Color(55, 65, 81));
-                }
-                
-                return c;
-            }
-        };
-        
-        // Apply to regular columns (not status or actions)
+        // Default cell renderer for other columns (not status or actions)
         for (int i = 0; i < 7; i++) {
-            supplierTable.getColumnModel().getColumn(i).setCellRenderer(defaultRenderer);
+            supplierTable.getColumnModel().getColumn(i).setCellRenderer(
+                i == 6 ? new CellRenderer(value -> value + " items") : new CellRenderer(String::valueOf));
         }
     }
     
@@ -237,99 +224,63 @@ public class SupplierManagementPanel extends JPanel {
         scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
         scrollPane.setPreferredSize(new Dimension(1200, 320));
         
-        mainContentPanel.add(scrollPane, BorderLayout.CENTER);
+        mainContentPanel.add(supplierLoader.decorate(scrollPane), BorderLayout.CENTER);
         contentPanel.add(mainContentPanel, BorderLayout.CENTER);
         
         add(contentPanel, BorderLayout.CENTER);
     }
     
     private void loadSuppliers() {
-        // Clear existing data
-        tableModel.setRowCount(0);
-        
-        // Load suppliers from data source
-        suppliers = Supplier.getAllSuppliers();
-        
-        // If no suppliers exist, add some sample data for testing
-        if (suppliers == null || suppliers.isEmpty()) {
-            Object[][] sampleData = {
-                {"SUP-001", "ABC Trading Sdn Bhd", "Ahmad Rahman", "03-1234-5678", "ahmad@abctrading.com", "Kuala Lumpur", "15 items", "Active"},
-                {"SUP-002", "XYZ Supplies Ltd", "Lim Wei Ming", "03-2345-6789", "wm.lim@xyzsupplies.com", "Petaling Jaya", "8 items", "Active"},
-                {"SUP-003", "Global Foods Enterprise", "Raj Kumar", "03-3456-7890", "raj@globalfoods.com", "Shah Alam", "22 items", "Inactive"}
-            };
-            
-            for (Object[] row : sampleData) {
-                tableModel.addRow(new Object[]{
-                    row[0], row[1], row[2], row[3], row[4], 
-                    row[5], row[6], row[7], ""
-                });
-            }
+        // Load suppliers from data source off the event dispatch thread and show them all
+        supplierLoader.load(Supplier::getAllSuppliers, loaded -> loaded, loaded -> {
+            suppliers = loaded;
+            selectPendingRecord();
+        });
+    }
+    
+    private void filterSuppliers() {
+        if (suppliers == null) {
+            // Still loading
             return;
         }
         
-        for (Supplier supplier : suppliers) {
-            // Determine status (you may want to add this field to Supplier model)
-            String status = "Active"; // Default status
-            
-            // Count items supplied
-            int itemCount = supplier.getItemsCodes() != null ? supplier.getItemsCodes().size() : 0;
-            String itemsSupplied = itemCount + " items";
-            
-            // Add row to table
-            Object[] rowData = {
-                supplier.getSupplierId(),
-                supplier.getSupplierName(),
-                supplier.getContactPerson(),
-                supplier.getPhoneNumber(),
-                supplier.getEmail(),
-                supplier.getAddress(), // Using address as location for now
-                itemsSupplied,
-                status,
-                "" // Actions column (handled by custom renderer)
-            };
-            
-            tableModel.addRow(rowData);
+        String[] filter = currentFilter();
+        List<Supplier> loadedSuppliers = suppliers;
+        supplierLoader.load(() -> matchingSuppliers(loadedSuppliers, filter), matches -> matches,
+                            matches -> selectPendingRecord());
+    }
+    
+    // Select one supplier's row, once the suppliers are loaded
+    @Override
+    public void showRecord(String id) {
+        pendingRecordId = id;
+        if (!supplierLoader.isLoading()) {
+            selectPendingRecord();
         }
     }
     
-    private void filterSuppliers() {
-        String searchText = searchField.getText().toLowerCase().trim();
-        String selectedStatus = (String) statusFilter.getSelectedItem();
-        String selectedLocation = (String) locationFilter.getSelectedItem();
-        
-        // Clear table
-        tableModel.setRowCount(0);
-        
-        // If no suppliers loaded, show sample data
-        if (suppliers == null || suppliers.isEmpty()) {
-            Object[][] sampleData = {
-                {"SUP-001", "ABC Trading Sdn Bhd", "Ahmad Rahman", "03-1234-5678", "ahmad@abctrading.com", "Kuala Lumpur", "15 items", "Active"},
-                {"SUP-002", "XYZ Supplies Ltd", "Lim Wei Ming", "03-2345-6789", "wm.lim@xyzsupplies.com", "Petaling Jaya", "8 items", "Active"},
-                {"SUP-003", "Global Foods Enterprise", "Raj Kumar", "03-3456-7890", "raj@globalfoods.com", "Shah Alam", "22 items", "Inactive"}
-            };
-            
-            for (Object[] row : sampleData) {
-                String supplierName = row[1].toString().toLowerCase();
-                String supplierCode = row[0].toString().toLowerCase();
-                String contactPerson = row[2].toString().toLowerCase();
-                String status = row[7].toString();
-                String location = row[5].toString();
-                
-                boolean matchesSearch = searchText.isEmpty() || searchText.equals("search suppliers...") ||
-                    supplierName.contains(searchText) || supplierCode.contains(searchText) || contactPerson.contains(searchText);
-                
-                boolean matchesStatus = selectedStatus.equals("All Status") || status.equals(selectedStatus);
-                boolean matchesLocation = selectedLocation == null || location.contains(selectedLocation);
-                
-                if (matchesSearch && matchesStatus && matchesLocation) {
-                    tableModel.addRow(new Object[]{
-                        row[0], row[1], row[2], row[3], row[4], 
-                        row[5], row[6], row[7], ""
-                    });
-                }
-            }
-            return;
+    private void selectPendingRecord() {
+        if (pendingRecordId != null) {
+            RecordListPanel.selectRow(supplierTable, 0, pendingRecordId);
+            pendingRecordId = null;
         }
+    }
+    
+    // Search text (lower case), status and location as currently selected
+    private String[] currentFilter() {
+        return new String[] {
+            searchField.getText().toLowerCase().trim(),
+            (String) statusFilter.getSelectedItem(),
+            (String) locationFilter.getSelectedItem()
+        };
+    }
+    
+    // The suppliers that match a filter; runs off the event dispatch thread
+    private static List<Supplier> matchingSuppliers(List<Supplier> suppliers, String[] filter) {
+        String searchText = filter[0];
+        String selectedStatus = filter[1];
+        String selectedLocation = filter[2];
+        List<Supplier> matches = new ArrayList<>();
         
         for (Supplier supplier : suppliers) {
             // Apply filters
@@ -343,28 +294,47 @@ public class SupplierManagementPanel extends JPanel {
                 supplier.getAddress().contains(selectedLocation);
             
             if (matchesSearch && matchesStatus && matchesLocation) {
-                // Determine status
-                String status = "Active"; // Default status
-                
-                // Count items supplied
-                int itemCount = supplier.getItemsCodes() != null ? supplier.getItemsCodes().size() : 0;
-                String itemsSupplied = itemCount + " items";
-                
-                // Add row to table
-                Object[] rowData = {
-                    supplier.getSupplierId(),
-                    supplier.getSupplierName(),
-                    supplier.getContactPerson(),
-                    supplier.getPhoneNumber(),
-                    supplier.getEmail(),
-                    supplier.getAddress(),
-                    itemsSupplied,
-                    status,
-                    ""
-                };
-                
-                tableModel.addRow(rowData);
+                matches.add(supplier);
+            }
+        }
+        return matches;
+    }
+    
+    // Count items supplied
+    private static int itemCount(Supplier supplier) {
+        return supplier.getItemsCodes() != null ? supplier.getItemsCodes().size() : 0;
+    }
+    
+    // Default renderer for the plain columns, showing each value as format turns it into text
+    class CellRenderer extends DefaultTableCellRenderer {
+        private final java.util.function.Function<Object, String> format;
+        
+        CellRenderer(java.util.function.Function<Object, String> format) {
+            this.format = format;
+        }
+        
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, 
+                boolean isSelected, boolean hasFocus, int row, int column) {
+            Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+            
+            setBorder(BorderFactory.createEmptyBorder(6, 10, 6, 10));
+            setFont(new Font("Segoe UI", Font.PLAIN, 11));
+            
+            if (isSelected) {
+                setBackground(new Color(239, 246, 255));
+                setForeground(new Color(31, 41, 55));
+            } else {
+                setBackground(Color.WHITE);
+                setForeground(new Color(55, 65, 81));
             }
+            
+            return c;
+        }
+        
+        @Override
+        protected void setValue(Object value) {
+            setText(value == null ? "" : format.apply(value));
         }
     }
     
@@ -546,7 +516,7 @@ public class SupplierManagementPanel extends JPanel {
             if (supplier != null) {
                 showSupplierDetailsDialog(supplier);
             } else {
-                // Show sample data details
+                // No longer in the data file: show what the table has
                 StringBuilder info = new StringBuilder();
                 info.append("Supplier Details:\n\n");
                 for (int i = 0; i < supplierTable.getColumnCount() - 1; i++) {
@@ -585,7 +555,7 @@ public class SupplierManagementPanel extends JPanel {
                     JOptionPane.showMessageDialog(supplierTable, "Supplier deleted successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
                     loadSuppliers();
                 } else {
-                    // For sample data, just remove from table
+                    // No longer in the data file, just remove from table
                     tableModel.removeRow(row);
                 }
             }
@@ -605,7 +575,7 @@ public class SupplierManagementPanel extends JPanel {
             
             if (result == JOptionPane.YES_OPTION) {
                 // Update status in table
-                tableModel.setValueAt("Active", row, 7);
+                tableModel.rowChanged(row);
                 JOptionPane.showMessageDialog(supplierTable, "Supplier activated successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
             }
         }
@@ -614,7 +584,7 @@ public class SupplierManagementPanel extends JPanel {
     private void showSupplierDetailsDialog(Supplier supplier) {
         JDialog detailsDialog = new JDialog();
         detailsDialog.setTitle("Supplier Details - " + supplier.getSupplierName());
-        detailsDialog.setSize(500, 400);
+        detailsDialog.setSize(500, 580);
         detailsDialog.setLocationRelativeTo(this);
         detailsDialog.setModal(true);
         
@@ -640,6 +610,24 @@ public class SupplierManagementPanel extends JPanel {
         int itemCount = supplier.getItemsCodes() != null ? supplier.getItemsCodes().size() : 0;
         addDetailRow(detailsPanel, gbc, 6, "Items Supplied:", itemCount + " items");
         
+        // Delivery performance from purchase order history
+        SupplierPerformance.Stats stats = SupplierPerformance.getStats(supplier.getSupplierId());
+        if (stats != null && stats.getOrdersReceived() > 0) {
+            addDetailRow(detailsPanel, gbc, 7, "Orders Received:",
+                         stats.getOrdersReceived() + " of " + stats.getOrdersApproved() + " approved");
+            addDetailRow(detailsPanel, gbc, 8, "On-Time Rate:",
+                         String.format("%.0f%%", stats.getOnTimeRate() * 100));
+            addDetailRow(detailsPanel, gbc, 9, "Lead Time:",
+                         String.format("%.0f days median, %.0f days at 90%%",
+                                       stats.getLeadTimeDays(0.5), stats.getLeadTimeDays(0.9)));
+            addDetailRow(detailsPanel, gbc, 10, "Median Order Value:",
+                         String.format("RM %,.2f", stats.getOrderValue(0.5)));
+            addDetailRow(detailsPanel, gbc, 11, "Total Received Value:",
+                         String.format("RM %,.2f", stats.getTotalValue()));
+        } else {
+            addDetailRow(detailsPanel, gbc, 7, "Delivery Performance:", "No received orders yet");
+        }
+        
         mainPanel.add(detailsPanel, BorderLayout.CENTER);
         
         // Close button
@@ -1,6 +1,7 @@
 package com.owsb.view.panels;
 
 import com.owsb.model.*;
+import com.owsb.view.components.TableLoader;
 import javax.swing.*;
 import javax.swing.border.*;
 import javax.swing.table.*;
@@ -36,8 +37,9 @@ public class UserManagementPanel extends JPanel {
     private static final Color GRAY_700 = new Color(55, 65, 81);
     private static final Color GRAY_900 = new Color(17, 24, 39);
     
-    // List of all users
+    // List of all users, as of the last load
     private List<User> users;
+    private TableLoader<Object[]> userLoader;
     
     public UserManagementPanel(User user) {
         this.currentUser = user;
@@ -75,6 +77,8 @@ public class UserManagementPanel extends JPanel {
             }
         };
         
+        userLoader = TableLoader.forModel(tableModel);
+        
         userTable = new JTable(tableModel);
         setupTable();
     }
@@ -206,7 +210,7 @@ public class UserManagementPanel extends JPanel {
         scrollPane.setBorder(BorderFactory.createLineBorder(GRAY_200, 1));
         scrollPane.setBackground(Color.WHITE);
         
-        panel.add(scrollPane, BorderLayout.CENTER);
+        panel.add(userLoader.decorate(scrollPane), BorderLayout.CENTER);
         return panel;
     }
     
@@ -287,23 +291,49 @@ public class UserManagementPanel extends JPanel {
     }
     
     private void filterUsers() {
+        if (users == null) {
+            // Still loading; the load applies the filters when it finishes
+            loadUsers();
+            return;
+        }
+        
+        String[] filter = currentFilter();
+        List<User> loadedUsers = users;
+        userLoader.load(() -> userRows(loadedUsers, filter));
+    }
+    
+    private void loadUsers() {
+        // Load users from model off the event dispatch thread, then show them with the current filters
+        String[] filter = currentFilter();
+        userLoader.load(User::getAllUsers, loaded -> userRows(loaded, filter), loaded -> users = loaded);
+    }
+    
+    // Search text, user type and status as currently selected
+    private String[] currentFilter() {
         String searchText = searchField.getText().trim();
         if (searchText.equals("Search users...")) {
             searchText = "";
         }
-        
-        String selectedUserType = (String) userTypeFilter.getSelectedItem();
-        String selectedStatus = (String) statusFilter.getSelectedItem();
-        
-        // Clear existing data
-        tableModel.setRowCount(0);
+        return new String[] {
+            searchText.toLowerCase(),
+            (String) userTypeFilter.getSelectedItem(),
+            (String) statusFilter.getSelectedItem()
+        };
+    }
+    
+    // Table rows of the users that match a filter; runs off the event dispatch thread
+    private List<Object[]> userRows(List<User> users, String[] filter) {
+        String searchText = filter[0];
+        String selectedUserType = filter[1];
+        String selectedStatus = filter[2];
+        List<Object[]> rows = new ArrayList<>();
         
         // Filter and add users
         for (User user : users) {
             boolean matchesSearch = searchText.isEmpty() || 
-                user.getUserId().toLowerCase().contains(searchText.toLowerCase()) ||
-                user.getName().toLowerCase().contains(searchText.toLowerCase()) ||
-                user.getUsername().toLowerCase().contains(searchText.toLowerCase());
+                user.getUserId().toLowerCase().contains(searchText) ||
+                user.getName().toLowerCase().contains(searchText) ||
+                user.getUsername().toLowerCase().contains(searchText);
             
             boolean matchesUserType = selectedUserType.equals("All User Types") || 
                 user.getRole().equals(selectedUserType);
@@ -313,7 +343,7 @@ public class UserManagementPanel extends JPanel {
                 selectedStatus.equals("Active");
             
             if (matchesSearch && matchesUserType && matchesStatus) {
-                Object[] row = {
+                rows.add(new Object[]{
                     user.getUserId(),
                     user.getName(),
                     user.getUsername() + "@owsb.com", // Generate email
@@ -322,33 +352,10 @@ public class UserManagementPanel extends JPanel {
                     "2025-05-20", // Demo date
                     "Active", // Demo status
                     "" // Actions column
-                };
-                tableModel.addRow(row);
+                });
             }
         }
-    }
-    
-    private void loadUsers() {
-        // Load users from model
-        users = User.getAllUsers();
-        
-        // Clear table
-        tableModel.setRowCount(0);
-        
-        // Add users to table
-        for (User user : users) {
-            Object[] row = {
-                user.getUserId(),
-                user.getName(),
-                user.getUsername() + "@owsb.com", // Generate email for demo
-                formatUserType(user.getRole()),
-                getDepartmentFromRole(user.getRole()),
-                "2025-05-20", // Demo created date
-                "Active", // Demo status
-                "" // Actions column
-            };
-            tableModel.addRow(row);
-        }
+        return rows;
     }
     
     private String formatUserType(String role) {
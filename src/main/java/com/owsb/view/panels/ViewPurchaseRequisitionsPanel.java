@@ -2,6 +2,8 @@ package com.owsb.view.panels;
 
 import com.owsb.model.*;
 import com.owsb.view.Dashboard;
+import com.owsb.view.components.ListTableModel;
+import com.owsb.view.components.TableLoader;
 import javax.swing.*;
 import javax.swing.border.*;
 import javax.swing.table.*;
@@ -11,7 +13,7 @@ import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.List;
 
-public class ViewPurchaseRequisitionsPanel extends JPanel {
+public class ViewPurchaseRequisitionsPanel extends JPanel implements RecordListPanel {
     private User currentUser;
     private Dashboard parentDashboard;
     
@@ -20,7 +22,16 @@ public class ViewPurchaseRequisitionsPanel extends JPanel {
     private JComboBox<String> statusFilter;
     private JComboBox<String> departmentFilter;
     private JTable prTable;
-    private DefaultTableModel tableModel;
+    private ListTableModel<PurchaseRequisition> tableModel;
+    private TableLoader<PurchaseRequisition> prLoader;
+    // Requestors of the PRs shown, by user ID; read with the PRs
+    private Map<String, User> requestorsById = new HashMap<>();
+    // Line item counts of the PRs shown, by PR ID; read with the PRs
+    private Map<String, Integer> itemCountsByPR = new HashMap<>();
+    // PR to select once the rows being loaded are in, or null
+    private String pendingRecordId = null;
+    // Only used on the event dispatch thread, by the date columns
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
     
     // Create form components
     private JTextField requiredDateField;
@@ -66,14 +77,19 @@ public class ViewPurchaseRequisitionsPanel extends JPanel {
         departmentFilter = new JComboBox<>(new String[]{"All Departments", "Sales", "Marketing", "Operations", "Finance", "IT"});
         
         // Table
-        String[] columnNames = {"PR ID", "Created By", "Department", "Date Created", "Required Date", "Items Count", "Priority", "Status", "Actions"};
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return column == 8; // Only Actions column
-            }
-        };
+        tableModel = new ListTableModel<PurchaseRequisition>()
+            .addColumn("PR ID", String.class, PurchaseRequisition::getPrId)
+            .addColumn("Created By", String.class, this::requestorName)
+            .addColumn("Department", String.class, this::requestorDepartment)
+            .addColumn("Date Created", String.class, pr -> formatDate(pr.getPrDate()))
+            .addColumn("Required Date", String.class, pr -> formatDate(pr.getRequiredDate()))
+            .addColumn("Items Count", Integer.class, pr -> itemCountsByPR.getOrDefault(pr.getPrId(), 0))
+            .addColumn("Priority", String.class, pr -> determinePriority(pr.getRequiredDate()))
+            .addColumn("Status", String.class, pr -> formatStatusForDisplay(pr.getStatus()))
+            .addColumn("Actions")
+            .setEditable(8); // Only Actions column
         prTable = new JTable(tableModel);
+        prLoader = TableLoader.forList(tableModel);
         
         // Create form components
         requiredDateField = new JTextField();
@@ -178,7 +194,7 @@ public class ViewPurchaseRequisitionsPanel extends JPanel {
         JScrollPane tableScroll = new JScrollPane(prTable);
         tableScroll.setBorder(BorderFactory.createLineBorder(GRAY_200, 1));
         tableScroll.setBackground(Color.WHITE);
-        contentPanel.add(tableScroll, BorderLayout.CENTER);
+        contentPanel.add(prLoader.decorate(tableScroll), BorderLayout.CENTER);
         
         panel.add(contentPanel, BorderLayout.CENTER);
         
@@ -534,65 +550,71 @@ public class ViewPurchaseRequisitionsPanel extends JPanel {
     }
     
     private void loadSampleData() {
-        // Clear existing data
-        tableModel.setRowCount(0);
-        
-        // Load actual data from backend
-        List<PurchaseRequisition> prList = PurchaseRequisition.getAllPRs();
+        // Load actual data from backend, off the event dispatch thread
+        prLoader.load(Requisitions::read, requisitions -> requisitions.prs, requisitions -> {
+            requestorsById = requisitions.requestorsById;
+            itemCountsByPR = requisitions.itemCountsByPR;
+            selectPendingRecord();
+        });
+    }
+    
+    // Select one PR's row, once the PRs are loaded
+    @Override
+    public void showRecord(String id) {
+        pendingRecordId = id;
+        if (!prLoader.isLoading()) {
+            selectPendingRecord();
+        }
+    }
+    
+    private void selectPendingRecord() {
+        if (pendingRecordId != null) {
+            RecordListPanel.selectRow(prTable, 0, pendingRecordId);
+            pendingRecordId = null;
+        }
+    }
+    
+    // Every PR with the users who requested them and its item count, read together off the event dispatch thread
+    private static final class Requisitions {
+        final List<PurchaseRequisition> prs;
+        final Map<String, User> requestorsById;
+        final Map<String, Integer> itemCountsByPR;
+        
+        private Requisitions(List<PurchaseRequisition> prs, Map<String, User> requestorsById,
+                             Map<String, Integer> itemCountsByPR) {
+            this.prs = prs;
+            this.requestorsById = requestorsById;
+            this.itemCountsByPR = itemCountsByPR;
+        }
         
-        if (prList != null && !prList.isEmpty()) {
-            // Use actual backend data
-            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-            
-            for (PurchaseRequisition pr : prList) {
-                // Get user details for the requestor
-                User requestor = User.getUserById(pr.getRequestedBy());
-                String requestorName = requestor != null ? requestor.getName() : pr.getRequestedBy();
-                
-                // Determine department based on user role or default
-                String department = requestor != null ? getDepartmentFromRole(requestor.getRole()) : "General";
-                
-                // Format dates
-                String dateCreated = dateFormat.format(pr.getPrDate());
-                String requiredDate = dateFormat.format(pr.getRequiredDate());
-                
-                // Get items count
-                int itemsCount = pr.getItems() != null ? pr.getItems().size() : 0;
-                
-                // Determine priority based on required date (sample logic)
-                String priority = determinePriority(pr.getRequiredDate());
-                
-                // Format status for display
-                String displayStatus = formatStatusForDisplay(pr.getStatus());
-                
-                Object[] row = {
-                    pr.getPrId(),
-                    requestorName,
-                    department,
-                    dateCreated,
-                    requiredDate,
-                    String.valueOf(itemsCount),
-                    priority,
-                    displayStatus,
-                    "" // Actions column
-                };
-                
-                tableModel.addRow(row);
-            }
-        } else {
-            // Fallback to sample data if no backend data available
-            Object[][] sampleData = {
-                {"PR-2025-001", "John Doe", "Sales", "2025-05-24", "2025-05-30", "3", "High", "Pending", ""},
-                {"PR-2025-002", "Jane Smith", "Marketing", "2025-05-23", "2025-05-28", "5", "Medium", "Approved", ""},
-                {"PR-2025-003", "Mike Johnson", "Operations", "2025-05-22", "2025-05-25", "2", "Urgent", "Rejected", ""}
-            };
-            
-            for (Object[] row : sampleData) {
-                tableModel.addRow(row);
+        static Requisitions read() {
+            List<PurchaseRequisition> prs = PurchaseRequisition.getAllPRs();
+            // Read the users once rather than once per PR
+            Map<String, User> usersById = new HashMap<>();
+            for (User user : User.getAllUsers()) {
+                usersById.put(user.getUserId(), user);
             }
+            return new Requisitions(prs != null ? prs : new ArrayList<>(), usersById,
+                                    PurchaseRequisition.getItemCountsByPR());
         }
     }
     
+    // Name of the requestor, or their user ID if they are not found
+    private String requestorName(PurchaseRequisition pr) {
+        User requestor = requestorsById.get(pr.getRequestedBy());
+        return requestor != null ? requestor.getName() : pr.getRequestedBy();
+    }
+    
+    // Determine department based on user role or default
+    private String requestorDepartment(PurchaseRequisition pr) {
+        User requestor = requestorsById.get(pr.getRequestedBy());
+        return requestor != null ? getDepartmentFromRole(requestor.getRole()) : "General";
+    }
+    
+    private String formatDate(Date date) {
+        return date != null ? dateFormat.format(date) : "";
+    }
+    
     private String getDepartmentFromRole(String role) {
         switch (role.toUpperCase()) {
             case "SALES_MANAGER":